@@ -21,6 +21,8 @@ import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP_PREFIX;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffColorFilter;
 import android.graphics.Rect;
@@ -44,6 +46,11 @@ public class SeslRoundedCorner {
 
     private static final int RADIUS = 26;
 
+    // Distance of the control points of the corner arc from the corner, relative to the radius,
+    // matching the path of the sesl_*_round drawables.
+    private static final float ARC_CONTROL = 34.922f / 78f;
+    private static final int CORNER_COUNT = 4;
+
     public static final int ROUNDED_CORNER_NONE = 0;
     public static final int ROUNDED_CORNER_ALL = 15;
     public static final int ROUNDED_CORNER_TOP_LEFT = 1;
@@ -76,6 +83,15 @@ public class SeslRoundedCorner {
     int mX;
     int mY;
 
+    // Corners collected between startBatch() and finishBatch(), one path per corner color.
+    // mBatchPathIndex maps each corner to the first corner of the same color, whose path it uses.
+    private boolean mBatching;
+    private Path[] mBatchPaths;
+    private Paint[] mBatchPaints;
+    private final int[] mBatchPathIndex = new int[CORNER_COUNT];
+    private float mBatchOffsetX;
+    private float mBatchOffsetY;
+
     public SeslRoundedCorner(Context context) {
         mContext = context;
         mRes = context.getResources();
@@ -92,9 +108,6 @@ public class SeslRoundedCorner {
     public void setRoundedCorners(int corners) {
         if ((corners & (-16)) == 0) {
             mRoundedCornerMode = corners;
-            if (mTopLeftRound == null || mTopRightRound == null || mBottomLeftRound == null || mBottomRightRound == null) {
-                initRoundedCorner();
-            }
         } else {
             throw new IllegalArgumentException("Use wrong rounded corners to the param, corners = " + corners);
         }
@@ -108,26 +121,20 @@ public class SeslRoundedCorner {
         if (corners == ROUNDED_CORNER_NONE) {
             throw new IllegalArgumentException("There is no rounded corner on = " + this);
         } else if ((corners & (-16)) == 0) {
-            if (mTopLeftRound == null || mTopRightRound == null || mBottomLeftRound == null || mBottomRightRound == null) {
-                initRoundedCorner();
-            }
-
-            PorterDuffColorFilter pdcf = new PorterDuffColorFilter(color, PorterDuff.Mode.SRC_IN);
             if ((corners & ROUNDED_CORNER_TOP_LEFT) != 0) {
                 mTopLeftRoundColor = color;
-                mTopLeftRound.setColorFilter(pdcf);
             }
             if ((corners & ROUNDED_CORNER_TOP_RIGHT) != 0) {
                 mTopRightRoundColor = color;
-                mTopRightRound.setColorFilter(pdcf);
             }
             if ((corners & ROUNDED_CORNER_BOTTOM_LEFT) != 0) {
                 mBottomLeftRoundColor = color;
-                mBottomLeftRound.setColorFilter(pdcf);
             }
             if ((corners & ROUNDED_CORNER_BOTTOM_RIGHT) != 0) {
                 mBottomRightRoundColor = color;
-                mBottomRightRound.setColorFilter(pdcf);
+            }
+            if (mTopLeftRound != null) {
+                applyCornerColors();
             }
         } else {
             throw new IllegalArgumentException("Use wrong rounded corners to the param, corners = " + corners);
@@ -161,20 +168,6 @@ public class SeslRoundedCorner {
         mRoundRadius = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, RADIUS, mRes.getDisplayMetrics());
 
         final boolean darkTheme = !SeslMisc.isLightTheme(mContext);
-        final Resources.Theme theme = mContext.getTheme();
-
-        if (mIsMutate) {
-            mTopLeftRound = mRes.getDrawable(R.drawable.sesl_top_left_round, theme).mutate();
-            mTopRightRound = mRes.getDrawable(R.drawable.sesl_top_right_round, theme).mutate();
-            mBottomLeftRound = mRes.getDrawable(R.drawable.sesl_bottom_left_round, theme).mutate();
-            mBottomRightRound = mRes.getDrawable(R.drawable.sesl_bottom_right_round, theme).mutate();
-        } else {
-            mTopLeftRound = mRes.getDrawable(R.drawable.sesl_top_left_round, theme);
-            mTopRightRound = mRes.getDrawable(R.drawable.sesl_top_right_round, theme);
-            mBottomLeftRound = mRes.getDrawable(R.drawable.sesl_bottom_left_round, theme);
-            mBottomRightRound = mRes.getDrawable(R.drawable.sesl_bottom_right_round, theme);
-        }
-
         if (darkTheme) {
             final int roundColor = mRes.getColor(R.color.sesl_round_and_bgcolor_dark);
             mBottomRightRoundColor = roundColor;
@@ -188,12 +181,41 @@ public class SeslRoundedCorner {
             mTopRightRoundColor = roundColor;
             mTopLeftRoundColor = roundColor;
         }
+    }
+
+    /**
+     * Inflates the corner drawables. They are only needed when drawing outside of a batch, so
+     * instances that always draw in batches never inflate them.
+     */
+    private void ensureCornerDrawables() {
+        if (mTopLeftRound != null) {
+            return;
+        }
+        final Resources.Theme theme = mContext.getTheme();
+
+        if (mIsMutate) {
+            mTopLeftRound = mRes.getDrawable(R.drawable.sesl_top_left_round, theme).mutate();
+            mTopRightRound = mRes.getDrawable(R.drawable.sesl_top_right_round, theme).mutate();
+            mBottomLeftRound = mRes.getDrawable(R.drawable.sesl_bottom_left_round, theme).mutate();
+            mBottomRightRound = mRes.getDrawable(R.drawable.sesl_bottom_right_round, theme).mutate();
+        } else {
+            mTopLeftRound = mRes.getDrawable(R.drawable.sesl_top_left_round, theme);
+            mTopRightRound = mRes.getDrawable(R.drawable.sesl_top_right_round, theme);
+            mBottomLeftRound = mRes.getDrawable(R.drawable.sesl_bottom_left_round, theme);
+            mBottomRightRound = mRes.getDrawable(R.drawable.sesl_bottom_right_round, theme);
+        }
+        applyCornerColors();
+    }
 
-        PorterDuffColorFilter pdcf = new PorterDuffColorFilter(mTopLeftRoundColor, PorterDuff.Mode.SRC_IN);
-        mTopLeftRound.setColorFilter(pdcf);
-        mTopRightRound.setColorFilter(pdcf);
-        mBottomLeftRound.setColorFilter(pdcf);
-        mBottomRightRound.setColorFilter(pdcf);
+    private void applyCornerColors() {
+        mTopLeftRound.setColorFilter(
+                new PorterDuffColorFilter(mTopLeftRoundColor, PorterDuff.Mode.SRC_IN));
+        mTopRightRound.setColorFilter(
+                new PorterDuffColorFilter(mTopRightRoundColor, PorterDuff.Mode.SRC_IN));
+        mBottomLeftRound.setColorFilter(
+                new PorterDuffColorFilter(mBottomLeftRoundColor, PorterDuff.Mode.SRC_IN));
+        mBottomRightRound.setColorFilter(
+                new PorterDuffColorFilter(mBottomRightRoundColor, PorterDuff.Mode.SRC_IN));
     }
 
     @RestrictTo(LIBRARY_GROUP_PREFIX)
@@ -210,7 +232,13 @@ public class SeslRoundedCorner {
         if (view.getTranslationY() != 0.0f) {
             mX = Math.round(view.getX());
             mY = Math.round(view.getY());
-            canvas.translate(view.getX() - mX + 0.5f, view.getY() - mY + 0.5f);
+            if (mBatching) {
+                // the batch is drawn later, so the offset can't be applied to the canvas
+                mBatchOffsetX = view.getX() - mX + 0.5f;
+                mBatchOffsetY = view.getY() - mY + 0.5f;
+            } else {
+                canvas.translate(view.getX() - mX + 0.5f, view.getY() - mY + 0.5f);
+            }
         } else {
             mX = view.getLeft();
             mY = view.getTop();
@@ -218,6 +246,134 @@ public class SeslRoundedCorner {
 
         mRoundedCornerBounds.set(mX, mY, view.getWidth() + mX, mY + view.getHeight());
         drawRoundedCornerInternal(canvas);
+        mBatchOffsetX = mBatchOffsetY = 0f;
+    }
+
+    /**
+     * Starts a batch: the corners of the following drawRoundedCorner calls are collected instead
+     * of drawn, and then drawn together by {@link #finishBatch(Canvas)}, as one path per corner
+     * color. Item decorations that draw the corners of every child should use this, so each
+     * frame costs a single draw call rather than one per corner.
+     */
+    @RestrictTo(LIBRARY_GROUP_PREFIX)
+    public void startBatch() {
+        if (mBatchPaths == null) {
+            mBatchPaths = new Path[CORNER_COUNT];
+            mBatchPaints = new Paint[CORNER_COUNT];
+            for (int i = 0; i < CORNER_COUNT; i++) {
+                mBatchPaths[i] = new Path();
+                mBatchPaints[i] = new Paint(Paint.ANTI_ALIAS_FLAG);
+            }
+        }
+        for (int i = 0; i < CORNER_COUNT; i++) {
+            final int color = getCornerColorAt(i);
+            int index = i;
+            for (int j = 0; j < i; j++) {
+                if (getCornerColorAt(j) == color) {
+                    index = j;
+                    break;
+                }
+            }
+            mBatchPathIndex[i] = index;
+            mBatchPaths[i].rewind();
+            mBatchPaints[i].setColor(color);
+        }
+        mBatching = true;
+    }
+
+    /**
+     * Draws the corners collected since {@link #startBatch()} and ends the batch.
+     */
+    @RestrictTo(LIBRARY_GROUP_PREFIX)
+    public void finishBatch(Canvas canvas) {
+        if (!mBatching) {
+            return;
+        }
+        mBatching = false;
+        for (int i = 0; i < CORNER_COUNT; i++) {
+            if (mBatchPathIndex[i] == i && !mBatchPaths[i].isEmpty()) {
+                canvas.drawPath(mBatchPaths[i], mBatchPaints[i]);
+            }
+        }
+    }
+
+    @ColorInt
+    private int getCornerColorAt(int index) {
+        switch (index) {
+            case 0:
+                return mTopLeftRoundColor;
+            case 1:
+                return mTopRightRoundColor;
+            case 2:
+                return mBottomLeftRoundColor;
+            default:
+                return mBottomRightRoundColor;
+        }
+    }
+
+    /**
+     * Draws one corner, or adds it to the current batch.
+     *
+     * @param left Left of the square holding the corner.
+     * @param top Top of the square holding the corner.
+     */
+    void drawCorner(Canvas canvas, int corner, int left, int top) {
+        final int radius = mRoundRadius;
+        if (!mBatching) {
+            ensureCornerDrawables();
+            final Drawable drawable;
+            if (corner == ROUNDED_CORNER_TOP_LEFT) {
+                drawable = mTopLeftRound;
+            } else if (corner == ROUNDED_CORNER_TOP_RIGHT) {
+                drawable = mTopRightRound;
+            } else if (corner == ROUNDED_CORNER_BOTTOM_LEFT) {
+                drawable = mBottomLeftRound;
+            } else {
+                drawable = mBottomRightRound;
+            }
+            drawable.setBounds(left, top, left + radius, top + radius);
+            drawable.draw(canvas);
+            return;
+        }
+
+        final float x = left + mBatchOffsetX;
+        final float y = top + mBatchOffsetY;
+        final Path path;
+        // the corner point, and the direction from it towards the inside of the square
+        final float cornerX;
+        final float cornerY;
+        final float dx;
+        final float dy;
+        if (corner == ROUNDED_CORNER_TOP_LEFT) {
+            path = mBatchPaths[mBatchPathIndex[0]];
+            cornerX = x;
+            cornerY = y;
+            dx = radius;
+            dy = radius;
+        } else if (corner == ROUNDED_CORNER_TOP_RIGHT) {
+            path = mBatchPaths[mBatchPathIndex[1]];
+            cornerX = x + radius;
+            cornerY = y;
+            dx = -radius;
+            dy = radius;
+        } else if (corner == ROUNDED_CORNER_BOTTOM_LEFT) {
+            path = mBatchPaths[mBatchPathIndex[2]];
+            cornerX = x;
+            cornerY = y + radius;
+            dx = radius;
+            dy = -radius;
+        } else {
+            path = mBatchPaths[mBatchPathIndex[3]];
+            cornerX = x + radius;
+            cornerY = y + radius;
+            dx = -radius;
+            dy = -radius;
+        }
+        path.moveTo(cornerX, cornerY);
+        path.lineTo(cornerX + dx, cornerY);
+        path.cubicTo(cornerX + dx * ARC_CONTROL, cornerY, cornerX, cornerY + dy * ARC_CONTROL,
+                cornerX, cornerY + dy);
+        path.close();
     }
 
     private void drawRoundedCornerInternal(Canvas canvas) {
@@ -227,23 +383,20 @@ public class SeslRoundedCorner {
         final int bottom = mRoundedCornerBounds.bottom;
 
         if ((mRoundedCornerMode & ROUNDED_CORNER_TOP_LEFT) != 0) {
-            mTopLeftRound.setBounds(left, top, left + mRoundRadius, mRoundRadius + top);
-            mTopLeftRound.draw(canvas);
+            drawCorner(canvas, ROUNDED_CORNER_TOP_LEFT, left, top);
         }
 
         if ((mRoundedCornerMode & ROUNDED_CORNER_TOP_RIGHT) != 0) {
-            mTopRightRound.setBounds(right - mRoundRadius, top, right, mRoundRadius + top);
-            mTopRightRound.draw(canvas);
+            drawCorner(canvas, ROUNDED_CORNER_TOP_RIGHT, right - mRoundRadius, top);
         }
 
         if ((mRoundedCornerMode & ROUNDED_CORNER_BOTTOM_LEFT) != 0) {
-            mBottomLeftRound.setBounds(left, bottom - mRoundRadius, mRoundRadius + left, bottom);
-            mBottomLeftRound.draw(canvas);
+            drawCorner(canvas, ROUNDED_CORNER_BOTTOM_LEFT, left, bottom - mRoundRadius);
         }
 
         if ((mRoundedCornerMode & ROUNDED_CORNER_BOTTOM_RIGHT) != 0) {
-            mBottomRightRound.setBounds(right - mRoundRadius, bottom - mRoundRadius, right, bottom);
-            mBottomRightRound.draw(canvas);
+            drawCorner(canvas, ROUNDED_CORNER_BOTTOM_RIGHT, right - mRoundRadius,
+                    bottom - mRoundRadius);
         }
     }
 }
@@ -65,23 +65,20 @@ public class SeslSubheaderRoundedCorner extends SeslRoundedCorner {
         final int bottom = mRoundedCornerBounds.bottom;
 
         if ((mRoundedCornerMode & ROUNDED_CORNER_TOP_LEFT) != 0) {
-            mTopLeftRound.setBounds(left, bottom, mRoundRadius + left, mRoundRadius + bottom);
-            mTopLeftRound.draw(canvas);
+            drawCorner(canvas, ROUNDED_CORNER_TOP_LEFT, left, bottom);
         }
 
         if ((mRoundedCornerMode & ROUNDED_CORNER_TOP_RIGHT) != 0) {
-            mTopRightRound.setBounds(right - mRoundRadius, bottom, right, mRoundRadius + bottom);
-            mTopRightRound.draw(canvas);
+            drawCorner(canvas, ROUNDED_CORNER_TOP_RIGHT, right - mRoundRadius, bottom);
         }
 
         if ((mRoundedCornerMode & ROUNDED_CORNER_BOTTOM_LEFT) != 0) {
-            mBottomLeftRound.setBounds(left, top - mRoundRadius, mRoundRadius + left, top);
-            mBottomLeftRound.draw(canvas);
+            drawCorner(canvas, ROUNDED_CORNER_BOTTOM_LEFT, left, top - mRoundRadius);
         }
 
         if ((mRoundedCornerMode & ROUNDED_CORNER_BOTTOM_RIGHT) != 0) {
-            mBottomRightRound.setBounds(right - mRoundRadius, top - mRoundRadius, right, top);
-            mBottomRightRound.draw(canvas);
+            drawCorner(canvas, ROUNDED_CORNER_BOTTOM_RIGHT, right - mRoundRadius,
+                    top - mRoundRadius);
         }
     }
 }
@@ -434,12 +434,14 @@ public class AppPickerView extends RecyclerView
         @Override
         public void seslOnDispatchDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
             super.seslOnDispatchDraw(c, parent, state);
+            mRoundedCorner.startBatch();
             for (int i = 0; i < parent.getChildCount(); i++) {
                 View child = parent.getChildAt(i);
                 if (parent.getChildViewHolder(child) instanceof SeparatorViewHolder) {
                     mRoundedCorner.drawRoundedCorner(child, c);
                 }
             }
+            mRoundedCorner.finishBatch(c);
         }
     }
 
@@ -516,12 +518,14 @@ public class AppPickerView extends RecyclerView
         @Override
         public void seslOnDispatchDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
             super.seslOnDispatchDraw(c, parent, state);
+            mRoundedCorner.startBatch();
             for (int i = 0; i < parent.getChildCount(); i++) {
                 View child = parent.getChildAt(i);
                 if (parent.getChildViewHolder(child) instanceof SeparatorViewHolder) {
                     mRoundedCorner.drawRoundedCorner(child, c);
                 }
             }
+            mRoundedCorner.finishBatch(c);
         }
     }
 
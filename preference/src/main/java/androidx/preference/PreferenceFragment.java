@@ -900,6 +900,11 @@ public abstract class PreferenceFragment extends android.app.Fragment implements
 
             final int childCount = parent.getChildCount();
             final int width = parent.getWidth();
+            if (mIsRoundedCorner) {
+                // the corners of all children are drawn together after the dividers
+                mRoundedCorner.startBatch();
+                mSubheaderRoundedCorner.startBatch();
+            }
             for (int i = 0; i < childCount; i++) {
                 final View view = parent.getChildAt(i);
                 final RecyclerView.ViewHolder holder = parent.getChildViewHolder(view);
@@ -926,6 +931,8 @@ public abstract class PreferenceFragment extends android.app.Fragment implements
             }
 
             if (mIsRoundedCorner) {
+                mRoundedCorner.finishBatch(c);
+                mSubheaderRoundedCorner.finishBatch(c);
                 mListRoundedCorner.drawRoundedCorner(c);
             }
         }
@@ -866,6 +866,11 @@ public abstract class PreferenceFragmentCompat extends Fragment implements
 
             final int childCount = parent.getChildCount();
             final int width = parent.getWidth();
+            if (mIsRoundedCorner) {
+                // the corners of all children are drawn together after the dividers
+                mRoundedCorner.startBatch();
+                mSubheaderRoundedCorner.startBatch();
+            }
             for (int i = 0; i < childCount; i++) {
                 final View view = parent.getChildAt(i);
                 final RecyclerView.ViewHolder holder = parent.getChildViewHolder(view);
@@ -892,6 +897,8 @@ public abstract class PreferenceFragmentCompat extends Fragment implements
             }
 
             if (mIsRoundedCorner) {
+                mRoundedCorner.finishBatch(c);
+                mSubheaderRoundedCorner.finishBatch(c);
                 mListRoundedCorner.drawRoundedCorner(c);
             }
         }
@@ -41,6 +41,11 @@ import java.util.List;
  * <p>
  * Although operations may be forwarded to LayoutManager in different orders, resulting data set
  * is guaranteed to be the consistent.
+ * <p>
+ * Consecutive UpdateOps are coalesced when the second one only extends or cancels the first, both
+ * when they are enqueued and again after reordering, so that adapters notifying one item at a
+ * time (e.g. while streaming items in) are processed as a single ranged operation. Coalescing only
+ * ever replaces two ops with an equivalent one, so the resulting data set is the same.
  */
 final class AdapterHelper implements OpReorderer.Callback {
 
@@ -52,6 +57,12 @@ final class AdapterHelper implements OpReorderer.Callback {
 
     private static final String TAG = "AHT";
 
+    private static final int COALESCE_NONE = 0;
+
+    private static final int COALESCE_MERGED = 1;
+
+    private static final int COALESCE_CANCELLED = 2;
+
     private Pools.Pool<UpdateOp> mUpdateOpPool = new Pools.SimplePool<UpdateOp>(UpdateOp.POOL_SIZE);
 
     final ArrayList<UpdateOp> mPendingUpdates = new ArrayList<UpdateOp>();
@@ -91,6 +102,7 @@ final class AdapterHelper implements OpReorderer.Callback {
 
     void preProcess() {
         mOpReorderer.reorderOps(mPendingUpdates);
+        compactPendingUpdates();
         final int count = mPendingUpdates.size();
         for (int i = 0; i < count; i++) {
             UpdateOp op = mPendingUpdates.get(i);
@@ -456,6 +468,124 @@ final class AdapterHelper implements OpReorderer.Callback {
         }
     }
 
+    /**
+     * Coalesces consecutive pending ops, which may have become neighbours after reordering.
+     */
+    private void compactPendingUpdates() {
+        final int size = mPendingUpdates.size();
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            final UpdateOp op = mPendingUpdates.get(i);
+            if (count > 0) {
+                final UpdateOp last = mPendingUpdates.get(count - 1);
+                final int result = coalesce(last, op.cmd, op.positionStart, op.itemCount,
+                        op.payload);
+                if (result != COALESCE_NONE) {
+                    recycleUpdateOp(op);
+                    if (result == COALESCE_CANCELLED) {
+                        recycleUpdateOp(last);
+                        count--;
+                    }
+                    continue;
+                }
+            }
+            mPendingUpdates.set(count++, op);
+        }
+        mPendingUpdates.subList(count, size).clear();
+    }
+
+    /**
+     * Adds an op to the pending updates, coalescing it with the last pending op if possible.
+     *
+     * @return True if updates should be processed.
+     */
+    private boolean addPendingUpdate(int cmd, int positionStart, int itemCount, Object payload) {
+        mExistingUpdateTypes |= cmd;
+        final int size = mPendingUpdates.size();
+        if (size > 0) {
+            final UpdateOp last = mPendingUpdates.get(size - 1);
+            final int result = coalesce(last, cmd, positionStart, itemCount, payload);
+            if (result == COALESCE_CANCELLED) {
+                mPendingUpdates.remove(size - 1);
+                recycleUpdateOp(last);
+            }
+            if (result != COALESCE_NONE) {
+                // processing was already triggered by the first pending op
+                return false;
+            }
+        }
+        mPendingUpdates.add(obtainUpdateOp(cmd, positionStart, itemCount, payload));
+        return mPendingUpdates.size() == 1;
+    }
+
+    /**
+     * Tries to replace {@code last} followed by the given op with a single equivalent op, by
+     * updating {@code last} in place.
+     *
+     * @return {@link #COALESCE_MERGED} if {@code last} now also covers the given op,
+     * {@link #COALESCE_CANCELLED} if the two ops cancel each other out and {@code last} should
+     * be dropped too, or {@link #COALESCE_NONE} if they can't be coalesced.
+     */
+    private static int coalesce(UpdateOp last, int cmd, int positionStart, int itemCount,
+            Object payload) {
+        final int lastEnd = last.positionStart + last.itemCount;
+        switch (last.cmd) {
+            case UpdateOp.ADD:
+                if (cmd == UpdateOp.ADD) {
+                    // inserted into or right next to the inserted range
+                    if (positionStart >= last.positionStart && positionStart <= lastEnd) {
+                        last.itemCount += itemCount;
+                        return COALESCE_MERGED;
+                    }
+                } else if ((cmd == UpdateOp.REMOVE || cmd == UpdateOp.UPDATE)
+                        && positionStart >= last.positionStart
+                        && positionStart + itemCount <= lastEnd) {
+                    // new items are bound from scratch anyway, and removing some of them is the
+                    // same as never adding them
+                    if (cmd == UpdateOp.REMOVE) {
+                        last.itemCount -= itemCount;
+                        return last.itemCount == 0 ? COALESCE_CANCELLED : COALESCE_MERGED;
+                    }
+                    return COALESCE_MERGED;
+                }
+                break;
+            case UpdateOp.REMOVE:
+                if (cmd == UpdateOp.REMOVE && last.positionStart >= positionStart
+                        && last.positionStart <= positionStart + itemCount) {
+                    last.positionStart = positionStart;
+                    last.itemCount += itemCount;
+                    return COALESCE_MERGED;
+                }
+                break;
+            case UpdateOp.UPDATE:
+                if (cmd == UpdateOp.UPDATE && payload == last.payload) {
+                    final int end = positionStart + itemCount;
+                    final boolean adjacent = positionStart == lastEnd || end == last.positionStart;
+                    // an item updated twice receives the payload twice, so overlapping ranges
+                    // are only merged for full updates
+                    final boolean overlapping = payload == null && positionStart < lastEnd
+                            && end > last.positionStart;
+                    if (adjacent || overlapping) {
+                        last.positionStart = Math.min(last.positionStart, positionStart);
+                        last.itemCount = Math.max(lastEnd, end) - last.positionStart;
+                        return COALESCE_MERGED;
+                    }
+                }
+                break;
+            case UpdateOp.MOVE:
+                // the same item moved again; itemCount holds the target position of a MOVE
+                if (cmd == UpdateOp.MOVE && positionStart == last.itemCount) {
+                    if (itemCount == last.positionStart) {
+                        return COALESCE_CANCELLED;
+                    }
+                    last.itemCount = itemCount;
+                    return COALESCE_MERGED;
+                }
+                break;
+        }
+        return COALESCE_NONE;
+    }
+
     boolean hasPendingUpdates() {
         return mPendingUpdates.size() > 0;
     }
@@ -504,9 +634,7 @@ final class AdapterHelper implements OpReorderer.Callback {
         if (itemCount < 1) {
             return false;
         }
-        mPendingUpdates.add(obtainUpdateOp(UpdateOp.UPDATE, positionStart, itemCount, payload));
-        mExistingUpdateTypes |= UpdateOp.UPDATE;
-        return mPendingUpdates.size() == 1;
+        return addPendingUpdate(UpdateOp.UPDATE, positionStart, itemCount, payload);
     }
 
     /**
@@ -516,9 +644,7 @@ final class AdapterHelper implements OpReorderer.Callback {
         if (itemCount < 1) {
             return false;
         }
-        mPendingUpdates.add(obtainUpdateOp(UpdateOp.ADD, positionStart, itemCount, null));
-        mExistingUpdateTypes |= UpdateOp.ADD;
-        return mPendingUpdates.size() == 1;
+        return addPendingUpdate(UpdateOp.ADD, positionStart, itemCount, null);
     }
 
     /**
@@ -528,9 +654,7 @@ final class AdapterHelper implements OpReorderer.Callback {
         if (itemCount < 1) {
             return false;
         }
-        mPendingUpdates.add(obtainUpdateOp(UpdateOp.REMOVE, positionStart, itemCount, null));
-        mExistingUpdateTypes |= UpdateOp.REMOVE;
-        return mPendingUpdates.size() == 1;
+        return addPendingUpdate(UpdateOp.REMOVE, positionStart, itemCount, null);
     }
 
     /**
@@ -543,9 +667,7 @@ final class AdapterHelper implements OpReorderer.Callback {
         if (itemCount != 1) {
             throw new IllegalArgumentException("Moving more than 1 item is not supported yet");
         }
-        mPendingUpdates.add(obtainUpdateOp(UpdateOp.MOVE, from, to, null));
-        mExistingUpdateTypes |= UpdateOp.MOVE;
-        return mPendingUpdates.size() == 1;
+        return addPendingUpdate(UpdateOp.MOVE, from, to, null);
     }
 
     /**
@@ -25,6 +25,9 @@ import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
 import androidx.annotation.WorkerThread;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 /**
  * A utility class that supports asynchronous content loading.
  * <p>
@@ -39,8 +42,10 @@ import androidx.annotation.WorkerThread;
  * {@link ViewCallback} when the data is loaded. It may load some extra items for smoother
  * scrolling.
  * <p>
- * Note that this class uses a single thread to load the data, so it suitable to load data from
- * secondary storage such as disk, but not from network.
+ * Note that by default this class uses a single thread to load the data, so it suitable to load
+ * data from secondary storage such as disk, but not from network. Data sources that can serve
+ * several reads at once can be loaded on more threads with
+ * {@link #AsyncListUtil(Class, int, DataCallback, ViewCallback, int)}.
  * <p>
  * This class is designed to work with {@link RecyclerView}, but it does
  * not depend on it and can be used with other list views.
@@ -53,7 +58,12 @@ public class AsyncListUtil<T> {
 
     final Class<T> mTClass;
     final int mTileSize;
+    // Exactly one of mDataCallback and mRowDataCallback is set, the latter if tiles hold rows
+    // instead of items.
+    @Nullable
     final DataCallback<T> mDataCallback;
+    @Nullable
+    final RowDataCallback<T> mRowDataCallback;
     final ViewCallback mViewCallback;
 
     final TileList<T> mTileList;
@@ -89,20 +99,103 @@ public class AsyncListUtil<T> {
      */
     public AsyncListUtil(@NonNull Class<T> klass, int tileSize,
             @NonNull DataCallback<T> dataCallback, @NonNull ViewCallback viewCallback) {
+        this(klass, tileSize, dataCallback, null, viewCallback, new MessageThreadUtil<T>());
+    }
+
+    /**
+     * Creates an AsyncListUtil that loads tiles on up to the given number of threads.
+     * <p>
+     * Pending tiles are loaded nearest to the visible range first, tiles ahead of it in the scroll
+     * direction before the ones behind it. Pending tiles that leave the range returned by
+     * {@link ViewCallback#extendRangeInto} are not loaded.
+     * <p>
+     * With more than one thread, {@link DataCallback#fillData} and
+     * {@link DataCallback#recycleData} may be called concurrently for different tiles, and must be
+     * thread safe. {@link DataCallback#refreshData()} is never called while either of them runs.
+     *
+     * @param klass Class of the data item.
+     * @param tileSize Number of item per chunk loaded at once.
+     * @param dataCallback Data access callback.
+     * @param viewCallback Callback for querying visible item range and update notifications.
+     * @param loaderThreadCount Maximum number of tiles loaded at once, at least 1.
+     */
+    public AsyncListUtil(@NonNull Class<T> klass, int tileSize,
+            @NonNull DataCallback<T> dataCallback, @NonNull ViewCallback viewCallback,
+            int loaderThreadCount) {
+        this(klass, tileSize, dataCallback, null, viewCallback,
+                new ConcurrentThreadUtil<T>(tileSize, loaderThreadCount));
+    }
+
+    /**
+     * Creates an AsyncListUtil whose tiles hold serialized rows instead of item objects.
+     *
+     * @param klass Class of the data item.
+     * @param tileSize Number of item per chunk loaded at once.
+     * @param rowDataCallback Row access callback.
+     * @param viewCallback Callback for querying visible item range and update notifications.
+     */
+    public AsyncListUtil(@NonNull Class<T> klass, int tileSize,
+            @NonNull RowDataCallback<T> rowDataCallback, @NonNull ViewCallback viewCallback) {
+        this(klass, tileSize, null, rowDataCallback, viewCallback, new MessageThreadUtil<T>());
+    }
+
+    /**
+     * Creates an AsyncListUtil whose tiles hold serialized rows instead of item objects, and that
+     * loads them on up to the given number of threads.
+     * <p>
+     * Tiles are loaded in the same order as with
+     * {@link #AsyncListUtil(Class, int, DataCallback, ViewCallback, int)}. With more than one
+     * thread, {@link RowDataCallback#fillRows} may be called concurrently for different tiles, and
+     * must be thread safe.
+     *
+     * @param klass Class of the data item.
+     * @param tileSize Number of item per chunk loaded at once.
+     * @param rowDataCallback Row access callback.
+     * @param viewCallback Callback for querying visible item range and update notifications.
+     * @param loaderThreadCount Maximum number of tiles loaded at once, at least 1.
+     */
+    public AsyncListUtil(@NonNull Class<T> klass, int tileSize,
+            @NonNull RowDataCallback<T> rowDataCallback, @NonNull ViewCallback viewCallback,
+            int loaderThreadCount) {
+        this(klass, tileSize, null, rowDataCallback, viewCallback,
+                new ConcurrentThreadUtil<T>(tileSize, loaderThreadCount));
+    }
+
+    private AsyncListUtil(@NonNull Class<T> klass, int tileSize,
+            @Nullable DataCallback<T> dataCallback, @Nullable RowDataCallback<T> rowDataCallback,
+            @NonNull ViewCallback viewCallback, @NonNull ThreadUtil<T> threadUtil) {
         mTClass = klass;
         mTileSize = tileSize;
         mDataCallback = dataCallback;
+        mRowDataCallback = rowDataCallback;
         mViewCallback = viewCallback;
 
         mTileList = new TileList<T>(mTileSize);
 
-        ThreadUtil<T> threadUtil = new MessageThreadUtil<T>();
         mMainThreadProxy = threadUtil.getMainThreadProxy(mMainThreadCallback);
         mBackgroundProxy = threadUtil.getBackgroundProxy(mBackgroundCallback);
 
         refresh();
     }
 
+    @WorkerThread
+    int refreshData() {
+        return mRowDataCallback == null
+                ? mDataCallback.refreshData() : mRowDataCallback.refreshData();
+    }
+
+    @WorkerThread
+    int getMaxCachedTiles() {
+        return mRowDataCallback == null
+                ? mDataCallback.getMaxCachedTiles() : mRowDataCallback.getMaxCachedTiles();
+    }
+
+    @WorkerThread
+    long getMaxCachedBytes() {
+        return mRowDataCallback == null
+                ? mDataCallback.getMaxCachedBytes() : mRowDataCallback.getMaxCachedBytes();
+    }
+
     private boolean isRefreshPending() {
         return mRequestedGeneration != mDisplayedGeneration;
     }
@@ -155,7 +248,14 @@ public class AsyncListUtil<T> {
         if (position < 0 || position >= mItemCount) {
             throw new IndexOutOfBoundsException(position + " is not within 0 and " + mItemCount);
         }
-        T item = mTileList.getItemAt(position);
+        final T item;
+        if (mRowDataCallback == null) {
+            item = mTileList.getItemAt(position);
+        } else {
+            final TileList.Tile<T> tile = mTileList.getTileAt(position);
+            item = tile == null ? null : mRowDataCallback.decodeRow(
+                    tile.mRows.getRow(position - tile.mStartPosition), position);
+        }
         if (item == null && !isRefreshPending()) {
             mMissingPositions.put(position, 0);
         }
@@ -293,9 +393,20 @@ public class AsyncListUtil<T> {
     private final ThreadUtil.BackgroundCallback<T>
             mBackgroundCallback = new ThreadUtil.BackgroundCallback<T>() {
 
+        // Loads may run on several threads, see ConcurrentThreadUtil. They hold the read lock
+        // while they run, and mLock while they touch the state below. Refreshes hold the write
+        // lock, every other call runs on one thread at a time.
+        private final ReentrantReadWriteLock mRefreshLock = new ReentrantReadWriteLock();
+        private final Object mLock = new Object();
+
         private TileList.Tile<T> mRecycledRoot;
+        private long mRecycledBytes;
 
-        final SparseBooleanArray mLoadedTiles = new SparseBooleanArray();
+        // Size in bytes of each loaded tile, keyed by start position.
+        final SparseIntArray mLoadedTiles = new SparseIntArray();
+        private long mLoadedBytes;
+        // Tiles being filled, keyed by start position.
+        final SparseBooleanArray mLoadingTiles = new SparseBooleanArray();
 
         private int mGeneration;
         private int mItemCount;
@@ -305,10 +416,17 @@ public class AsyncListUtil<T> {
 
         @Override
         public void refresh(int generation) {
-            mGeneration = generation;
-            mLoadedTiles.clear();
-            mItemCount = mDataCallback.refreshData();
-            mMainThreadProxy.updateItemCount(mGeneration, mItemCount);
+            mRefreshLock.writeLock().lock();
+            try {
+                mGeneration = generation;
+                mLoadedTiles.clear();
+                mLoadedBytes = 0;
+                mLoadingTiles.clear();
+                mItemCount = refreshData();
+                mMainThreadProxy.updateItemCount(mGeneration, mItemCount);
+            } finally {
+                mRefreshLock.writeLock().unlock();
+            }
         }
 
         @Override
@@ -326,8 +444,10 @@ public class AsyncListUtil<T> {
             final int firstVisibleTileStart = getTileStart(rangeStart);
             final int lastVisibleTileStart = getTileStart(rangeEnd);
 
-            mFirstRequiredTileStart = getTileStart(extRangeStart);
-            mLastRequiredTileStart = getTileStart(extRangeEnd);
+            synchronized (mLock) {
+                mFirstRequiredTileStart = getTileStart(extRangeStart);
+                mLastRequiredTileStart = getTileStart(extRangeEnd);
+            }
             if (DEBUG) {
                 log("requesting tile range: %d..%d",
                         mFirstRequiredTileStart, mLastRequiredTileStart);
@@ -363,18 +483,34 @@ public class AsyncListUtil<T> {
 
         @Override
         public void loadTile(int position, int scrollHint) {
-            if (isTileLoaded(position)) {
-                if (DEBUG) {
-                    log("already loaded tile @%d", position);
+            mRefreshLock.readLock().lock();
+            try {
+                final TileList.Tile<T> tile;
+                synchronized (mLock) {
+                    if (position >= mItemCount) {
+                        // requested before a refresh that shrunk the data set
+                        return;
+                    }
+                    if (isTileLoaded(position) || mLoadingTiles.get(position)) {
+                        if (DEBUG) {
+                            log("already loaded tile @%d", position);
+                        }
+                        return;
+                    }
+                    mLoadingTiles.put(position, true);
+                    tile = acquireTile();
                 }
-                return;
+                tile.mStartPosition = position;
+                tile.mItemCount = Math.min(mTileSize, mItemCount - tile.mStartPosition);
+                fillTile(tile);
+                synchronized (mLock) {
+                    mLoadingTiles.delete(position);
+                    flushTileCache(scrollHint, tile.mSizeInBytes);
+                    addTile(tile);
+                }
+            } finally {
+                mRefreshLock.readLock().unlock();
             }
-            TileList.Tile<T> tile = acquireTile();
-            tile.mStartPosition = position;
-            tile.mItemCount = Math.min(mTileSize, mItemCount - tile.mStartPosition);
-            mDataCallback.fillData(tile.mItems, tile.mStartPosition, tile.mItemCount);
-            flushTileCache(scrollHint);
-            addTile(tile);
         }
 
         @Override
@@ -382,27 +518,59 @@ public class AsyncListUtil<T> {
             if (DEBUG) {
                 log("recycling tile @%d", tile.mStartPosition);
             }
-            mDataCallback.recycleData(tile.mItems, tile.mItemCount);
+            if (mRowDataCallback == null) {
+                mDataCallback.recycleData(tile.mItems, tile.mItemCount);
+            }
 
-            tile.mNext = mRecycledRoot;
-            mRecycledRoot = tile;
+            synchronized (mLock) {
+                final long maxBytes = getMaxCachedBytes();
+                if (maxBytes > 0 && mLoadedBytes + mRecycledBytes + tile.mSizeInBytes > maxBytes) {
+                    // the pool counts towards the limit too, leave this one to the GC
+                    return;
+                }
+                tile.mNext = mRecycledRoot;
+                mRecycledRoot = tile;
+                mRecycledBytes += tile.mSizeInBytes;
+            }
         }
 
         private TileList.Tile<T> acquireTile() {
             if (mRecycledRoot != null) {
                 TileList.Tile<T> result = mRecycledRoot;
                 mRecycledRoot = mRecycledRoot.mNext;
+                mRecycledBytes -= result.mSizeInBytes;
                 return result;
             }
+            if (mRowDataCallback != null) {
+                final TileList.Tile<T> tile = new TileList.Tile<T>(mTClass, 0);
+                tile.mRows = new RowBuffer();
+                return tile;
+            }
             return new TileList.Tile<T>(mTClass, mTileSize);
         }
 
+        private void fillTile(TileList.Tile<T> tile) {
+            if (mRowDataCallback == null) {
+                mDataCallback.fillData(tile.mItems, tile.mStartPosition, tile.mItemCount);
+                tile.mSizeInBytes = mDataCallback.getTileSizeInBytes(tile.mItems, tile.mItemCount);
+                return;
+            }
+            tile.mRows.clear();
+            mRowDataCallback.fillRows(tile.mRows, tile.mStartPosition, tile.mItemCount);
+            if (tile.mRows.getRowCount() != tile.mItemCount) {
+                throw new IllegalStateException("fillRows ended " + tile.mRows.getRowCount()
+                        + " rows, expected " + tile.mItemCount);
+            }
+            tile.mSizeInBytes = tile.mRows.getCapacity();
+        }
+
         private boolean isTileLoaded(int position) {
-            return mLoadedTiles.get(position);
+            return mLoadedTiles.indexOfKey(position) >= 0;
         }
 
         private void addTile(TileList.Tile<T> tile) {
-            mLoadedTiles.put(tile.mStartPosition, true);
+            mLoadedTiles.put(tile.mStartPosition, tile.mSizeInBytes);
+            mLoadedBytes += tile.mSizeInBytes;
             mMainThreadProxy.addTile(mGeneration, tile);
             if (DEBUG) {
                 log("loaded tile @%d, total tiles: %d", tile.mStartPosition, mLoadedTiles.size());
@@ -410,6 +578,7 @@ public class AsyncListUtil<T> {
         }
 
         private void removeTile(int position) {
+            mLoadedBytes -= mLoadedTiles.get(position);
             mLoadedTiles.delete(position);
             mMainThreadProxy.removeTile(mGeneration, position);
             if (DEBUG) {
@@ -417,9 +586,12 @@ public class AsyncListUtil<T> {
             }
         }
 
-        private void flushTileCache(int scrollHint) {
-            final int cacheSizeLimit = mDataCallback.getMaxCachedTiles();
-            while (mLoadedTiles.size() >= cacheSizeLimit) {
+        private void flushTileCache(int scrollHint, int incomingBytes) {
+            final int cacheSizeLimit = getMaxCachedTiles();
+            final long cacheBytesLimit = getMaxCachedBytes();
+            // a single tile may exceed the byte limit, stop once there is nothing left to evict
+            while (mLoadedTiles.size() > 0 && (mLoadedTiles.size() >= cacheSizeLimit
+                    || (cacheBytesLimit > 0 && mLoadedBytes + incomingBytes > cacheBytesLimit))) {
                 int firstLoadedTileStart = mLoadedTiles.keyAt(0);
                 int lastLoadedTileStart = mLoadedTiles.keyAt(mLoadedTiles.size() - 1);
                 int startMargin = mFirstRequiredTileStart - firstLoadedTileStart;
@@ -510,6 +682,208 @@ public class AsyncListUtil<T> {
         public int getMaxCachedTiles() {
             return 10;
         }
+
+        /**
+         * Returns tile cache size limit in bytes, or 0 for no limit.
+         *
+         * <p>
+         * Tiles are evicted while either this limit or {@link #getMaxCachedTiles()} is exceeded,
+         * so return {@link Integer#MAX_VALUE} from {@link #getMaxCachedTiles()} to bound the cache
+         * by its size in bytes only. Recycled tiles kept for reuse count towards this limit too. As
+         * with {@link #getMaxCachedTiles()}, tiles covering the range returned by
+         * {@link ViewCallback#extendRangeInto(int[], int[], int)} are never evicted.
+         * <p>
+         * The size of a tile is given by {@link #getTileSizeInBytes}.
+         * <p>
+         * The default implementation returns 0.
+         *
+         * @return Maximum cache size in bytes.
+         */
+        @WorkerThread
+        public long getMaxCachedBytes() {
+            return 0;
+        }
+
+        /**
+         * Returns the size in bytes of a tile just filled by {@link #fillData}, for
+         * {@link #getMaxCachedBytes()}.
+         *
+         * <p>
+         * The default implementation returns 0.
+         *
+         * @param data Array of data items. Should not be accessed beyond <code>itemCount</code>.
+         * @param itemCount The data item count.
+         * @return Size of the tile in bytes.
+         */
+        @WorkerThread
+        public int getTileSizeInBytes(@NonNull T[] data, int itemCount) {
+            return 0;
+        }
+    }
+
+    /**
+     * The callback that provides data access for an {@link AsyncListUtil} whose tiles hold
+     * serialized rows instead of item objects.
+     *
+     * <p>
+     * The rows of a tile are written back to back into a direct {@link ByteBuffer}, which is kept
+     * with the tile and reused when the tile is recycled, so cached tiles hold no per item objects.
+     * Items are decoded from their row by {@link #decodeRow} each time {@link #getItem} is called,
+     * which usually is when they are bound.
+     * <p>
+     * Except for {@link #decodeRow}, all methods are called on the background thread.
+     */
+    public static abstract class RowDataCallback<T> {
+
+        /**
+         * Refresh the data set and return the new data item count.
+         *
+         * @return Data item count.
+         * @see DataCallback#refreshData()
+         */
+        @WorkerThread
+        public abstract int refreshData();
+
+        /**
+         * Write the rows of the given items.
+         *
+         * <p>
+         * For each item, write its row into the buffer returned by
+         * {@link RowBuffer#ensureRemaining(int)} with relative puts, then call
+         * {@link RowBuffer#endRow()}.
+         *
+         * @param rows The rows of the tile, empty.
+         * @param startPosition The start position in the list.
+         * @param itemCount The data item count.
+         */
+        @WorkerThread
+        public abstract void fillRows(@NonNull RowBuffer rows, int startPosition, int itemCount);
+
+        /**
+         * Decode the item at the given position from its row.
+         *
+         * @param row The row, from its position to its limit. Only valid during this call.
+         * @param position Item position.
+         * @return The data item.
+         */
+        @UiThread
+        @NonNull
+        public abstract T decodeRow(@NonNull ByteBuffer row, int position);
+
+        /**
+         * Returns tile cache size limit (in tiles).
+         *
+         * <p>
+         * The default implementation returns 10.
+         *
+         * @return Maximum cache size.
+         * @see DataCallback#getMaxCachedTiles()
+         */
+        @WorkerThread
+        public int getMaxCachedTiles() {
+            return 10;
+        }
+
+        /**
+         * Returns tile cache size limit in bytes, or 0 for no limit.
+         *
+         * <p>
+         * The size of a tile is the capacity of its {@link RowBuffer}.
+         * <p>
+         * The default implementation returns 0.
+         *
+         * @return Maximum cache size in bytes.
+         * @see DataCallback#getMaxCachedBytes()
+         */
+        @WorkerThread
+        public long getMaxCachedBytes() {
+            return 0;
+        }
+    }
+
+    /**
+     * The rows of a tile loaded by a {@link RowDataCallback}.
+     */
+    public static final class RowBuffer {
+        private static final int INITIAL_CAPACITY = 4096;
+        // Zero capacity, so its position and limit can't be changed by the callers.
+        private static final ByteBuffer EMPTY_ROW = ByteBuffer.allocate(0);
+
+        private ByteBuffer mBuffer;
+        // Duplicate of mBuffer for reading rows on the main thread.
+        private ByteBuffer mReadView;
+        private int[] mRowEnds = new int[16];
+        private int mRowCount;
+
+        RowBuffer() {
+        }
+
+        /**
+         * Returns the buffer to write the current row into, with at least the given number of
+         * bytes remaining. The buffer may be replaced by a larger one, so call this again rather
+         * than keeping the result across rows.
+         *
+         * @param byteCount Number of bytes about to be written.
+         * @return The buffer, positioned at the end of the rows written so far.
+         */
+        @NonNull
+        public ByteBuffer ensureRemaining(int byteCount) {
+            if (mBuffer == null) {
+                mBuffer = ByteBuffer.allocateDirect(Math.max(INITIAL_CAPACITY, byteCount));
+            } else if (mBuffer.remaining() < byteCount) {
+                final int capacity = Math.max(mBuffer.capacity() * 2,
+                        mBuffer.position() + byteCount);
+                final ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+                grown.order(mBuffer.order());
+                mBuffer.flip();
+                grown.put(mBuffer);
+                mBuffer = grown;
+                mReadView = null;
+            }
+            return mBuffer;
+        }
+
+        /**
+         * Ends the row written since the previous call.
+         */
+        public void endRow() {
+            if (mRowCount == mRowEnds.length) {
+                final int[] rowEnds = new int[mRowEnds.length * 2];
+                System.arraycopy(mRowEnds, 0, rowEnds, 0, mRowCount);
+                mRowEnds = rowEnds;
+            }
+            mRowEnds[mRowCount++] = mBuffer == null ? 0 : mBuffer.position();
+        }
+
+        int getRowCount() {
+            return mRowCount;
+        }
+
+        int getCapacity() {
+            return mBuffer == null ? 0 : mBuffer.capacity();
+        }
+
+        void clear() {
+            mRowCount = 0;
+            if (mBuffer != null) {
+                mBuffer.clear();
+            }
+        }
+
+        ByteBuffer getRow(int index) {
+            if (mBuffer == null) {
+                // no bytes were written, every row is empty
+                return EMPTY_ROW;
+            }
+            if (mReadView == null) {
+                mReadView = ensureRemaining(0).duplicate();
+                mReadView.order(mBuffer.order());
+            }
+            mReadView.clear();
+            mReadView.limit(mRowEnds[index]);
+            mReadView.position(index == 0 ? 0 : mRowEnds[index - 1]);
+            return mReadView;
+        }
     }
 
     /**
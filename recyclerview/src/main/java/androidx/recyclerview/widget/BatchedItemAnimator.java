@@ -0,0 +1,533 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.recyclerview.widget;
+
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
+import android.os.Build;
+import android.provider.Settings;
+import android.view.View;
+import android.view.ViewParent;
+import android.view.animation.AnimationUtils;
+import android.view.animation.Interpolator;
+import android.view.animation.LinearInterpolator;
+import android.view.animation.PathInterpolator;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link RecyclerView.ItemAnimator} that runs the same animations as
+ * {@link DefaultItemAnimator}, but drives all of them from a single {@link ValueAnimator}, for
+ * bulk changes such as filtering a dense grid.
+ * <p>
+ * DefaultItemAnimator starts a {@link android.view.ViewPropertyAnimator} and a listener per
+ * animated view. Here every pending animation becomes an entry with its start time, duration and
+ * the start and end values of its properties, and on each frame the entries that have started are
+ * interpolated and applied to their views. Entries are pooled, so a batch allocates nothing once
+ * the pool has grown to its size.
+ * <p>
+ * Durations and delays are scaled by the animator duration scale of the system, and with a scale
+ * of 0, or animators disabled, all animations finish right away, as ViewPropertyAnimators do.
+ * <p>
+ * Animations of views that are outside of the RecyclerView both before and after the animation
+ * are finished right away instead of being run, since nothing of them would be visible.
+ *
+ * @see RecyclerView#setItemAnimator(RecyclerView.ItemAnimator)
+ */
+public class BatchedItemAnimator extends SimpleItemAnimator {
+    private static final Interpolator ITEM_MOVE_INTERPOLATOR = new PathInterpolator(
+            0.4f, 0.6f, 0.0f, 1.0f);
+    private static final TimeInterpolator LINEAR_INTERPOLATOR = new LinearInterpolator();
+    // The interpolator of ValueAnimator, used by DefaultItemAnimator for removals and additions
+    private static TimeInterpolator sDefaultInterpolator;
+
+    private static final long DURATION_ADD = 200;
+    private static final long DURATION_CHANGE = 400;
+    private static final long DURATION_MOVE = 400;
+    private static final long DURATION_REMOVE = 100;
+
+    private static final long DELAY_ADD_START = 100;
+
+    private static final int TYPE_REMOVE = 0;
+    private static final int TYPE_MOVE = 1;
+    private static final int TYPE_CHANGE_OLD = 2;
+    private static final int TYPE_CHANGE_NEW = 3;
+    private static final int TYPE_ADD = 4;
+
+    private static final int MAX_POOL_SIZE = 256;
+
+    private static final class Entry {
+        // null once finished, the entry is pooled when removed from its list
+        RecyclerView.ViewHolder mHolder;
+        int mType;
+        long mStartTime;
+        long mDuration;
+        TimeInterpolator mInterpolator;
+        float mFromTranslationX;
+        float mFromTranslationY;
+        float mFromAlpha;
+        float mToTranslationX;
+        float mToTranslationY;
+        float mToAlpha;
+        boolean mStarted;
+
+        void set(RecyclerView.ViewHolder holder, int type, float toTranslationX,
+                float toTranslationY, float toAlpha) {
+            final View view = holder.itemView;
+            mHolder = holder;
+            mType = type;
+            mFromTranslationX = view.getTranslationX();
+            mFromTranslationY = view.getTranslationY();
+            mFromAlpha = view.getAlpha();
+            mToTranslationX = toTranslationX;
+            mToTranslationY = toTranslationY;
+            mToAlpha = toAlpha;
+            mStarted = false;
+        }
+
+        void apply(float fraction) {
+            final View view = mHolder.itemView;
+            final float value = mInterpolator.getInterpolation(fraction);
+            view.setTranslationX(mFromTranslationX + (mToTranslationX - mFromTranslationX) * value);
+            view.setTranslationY(mFromTranslationY + (mToTranslationY - mFromTranslationY) * value);
+            view.setAlpha(mFromAlpha + (mToAlpha - mFromAlpha) * value);
+        }
+    }
+
+    // Recorded by animateXXX, started by runPendingAnimations. Finished entries stay in their
+    // list until the next compaction, so that finishing one doesn't search or shift the list.
+    private final ArrayList<Entry> mPending = new ArrayList<>();
+    private final ArrayList<Entry> mRunning = new ArrayList<>();
+    private final ArrayList<Entry> mPool = new ArrayList<>();
+    // Entries in mPending and mRunning that are not finished.
+    private int mActiveCount = 0;
+    // Compaction is deferred while onFrame walks mRunning.
+    private boolean mInFrame = false;
+
+    private final ValueAnimator mFrameAnimator = ValueAnimator.ofFloat(0f, 1f);
+    private boolean mRemoveDelayEnabled = false;
+
+    public BatchedItemAnimator() {
+        if (sDefaultInterpolator == null) {
+            sDefaultInterpolator = new ValueAnimator().getInterpolator();
+        }
+        setAddDuration(DURATION_ADD);
+        setChangeDuration(DURATION_CHANGE);
+        setMoveDuration(DURATION_MOVE);
+        setRemoveDuration(DURATION_REMOVE);
+        // only the frame callbacks are used, the entries keep their own time
+        mFrameAnimator.setDuration(1000);
+        mFrameAnimator.setRepeatCount(ValueAnimator.INFINITE);
+        mFrameAnimator.setInterpolator(LINEAR_INTERPOLATOR);
+        mFrameAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                onFrame(AnimationUtils.currentAnimationTimeMillis());
+            }
+        });
+    }
+
+    /**
+     * Sets whether move and change animations wait for remove animations to finish, see
+     * {@link DefaultItemAnimator#enableRemoveDelay(boolean)}.
+     */
+    public void setRemoveDelayEnabled(boolean enabled) {
+        mRemoveDelayEnabled = enabled;
+    }
+
+    public boolean isRemoveDelayEnabled() {
+        return mRemoveDelayEnabled;
+    }
+
+    @Override
+    public boolean animateRemove(RecyclerView.ViewHolder holder) {
+        endAnimation(holder);
+        addPending(holder, TYPE_REMOVE, 0, 0, 0);
+        return true;
+    }
+
+    @Override
+    public boolean animateAdd(RecyclerView.ViewHolder holder) {
+        endAnimation(holder);
+        holder.itemView.setAlpha(0);
+        addPending(holder, TYPE_ADD, 0, 0, 1);
+        return true;
+    }
+
+    @Override
+    public boolean animateMove(RecyclerView.ViewHolder holder, int fromX, int fromY,
+            int toX, int toY) {
+        final View view = holder.itemView;
+        fromX += (int) view.getTranslationX();
+        fromY += (int) view.getTranslationY();
+        endAnimation(holder);
+        final int deltaX = toX - fromX;
+        final int deltaY = toY - fromY;
+        if (deltaX == 0 && deltaY == 0) {
+            dispatchMoveFinished(holder);
+            return false;
+        }
+        view.setTranslationX(-deltaX);
+        view.setTranslationY(-deltaY);
+        addPending(holder, TYPE_MOVE, 0, 0, view.getAlpha());
+        return true;
+    }
+
+    @Override
+    public boolean animateChange(RecyclerView.ViewHolder oldHolder,
+            RecyclerView.ViewHolder newHolder, int fromLeft, int fromTop, int toLeft, int toTop) {
+        if (oldHolder == newHolder) {
+            // Don't know how to run change animations when the same view holder is re-used.
+            // run a move animation to handle position changes.
+            return animateMove(oldHolder, fromLeft, fromTop, toLeft, toTop);
+        }
+        final View oldView = oldHolder.itemView;
+        final float prevTranslationX = oldView.getTranslationX();
+        final float prevTranslationY = oldView.getTranslationY();
+        final float prevAlpha = oldView.getAlpha();
+        endAnimation(oldHolder);
+        final int deltaX = (int) (toLeft - fromLeft - prevTranslationX);
+        final int deltaY = (int) (toTop - fromTop - prevTranslationY);
+        // recover prev translation state after ending animation
+        oldView.setTranslationX(prevTranslationX);
+        oldView.setTranslationY(prevTranslationY);
+        oldView.setAlpha(prevAlpha);
+        addPending(oldHolder, TYPE_CHANGE_OLD, toLeft - fromLeft, toTop - fromTop, 0);
+        if (newHolder != null) {
+            // carry over translation values
+            endAnimation(newHolder);
+            newHolder.itemView.setTranslationX(-deltaX);
+            newHolder.itemView.setTranslationY(-deltaY);
+            newHolder.itemView.setAlpha(0);
+            addPending(newHolder, TYPE_CHANGE_NEW, 0, 0, 1);
+        }
+        return true;
+    }
+
+    @Override
+    public void runPendingAnimations() {
+        if (mPending.isEmpty()) {
+            return;
+        }
+        boolean removalsPending = false;
+        boolean othersPending = false;
+        for (int i = 0; i < mPending.size(); i++) {
+            final Entry entry = mPending.get(i);
+            if (entry.mHolder == null) {
+                continue;
+            }
+            final int type = entry.mType;
+            removalsPending |= type == TYPE_REMOVE;
+            othersPending |= type == TYPE_MOVE || type == TYPE_CHANGE_OLD
+                    || type == TYPE_CHANGE_NEW;
+        }
+        final long now = AnimationUtils.currentAnimationTimeMillis();
+        final float scale = getDurationScale();
+        final long removeDuration = scale(getRemoveDuration(), scale);
+        final long moveDelay = removalsPending && mRemoveDelayEnabled ? removeDuration : 0;
+        final long addDelay = removalsPending || othersPending ? scale(DELAY_ADD_START, scale) : 0;
+        final RecyclerView recyclerView = getHostView() instanceof RecyclerView
+                ? (RecyclerView) getHostView() : null;
+        for (int i = 0; i < mPending.size(); i++) {
+            final Entry entry = mPending.get(i);
+            if (entry.mHolder == null) {
+                recycle(entry);
+                continue;
+            }
+            final boolean preferenceCategory = isPreferenceCategory(entry.mHolder.itemView);
+            switch (entry.mType) {
+                case TYPE_REMOVE:
+                    entry.mStartTime = now;
+                    entry.mDuration = preferenceCategory ? 0 : removeDuration;
+                    entry.mInterpolator = sDefaultInterpolator;
+                    break;
+                case TYPE_MOVE:
+                case TYPE_CHANGE_OLD:
+                case TYPE_CHANGE_NEW:
+                    entry.mStartTime = now + moveDelay;
+                    entry.mDuration = scale(entry.mType == TYPE_MOVE
+                            ? getMoveDuration() : getChangeDuration(), scale);
+                    entry.mInterpolator = ITEM_MOVE_INTERPOLATOR;
+                    break;
+                default:
+                    entry.mStartTime = preferenceCategory ? now : now + addDelay;
+                    entry.mDuration = preferenceCategory ? 0 : scale(getAddDuration(), scale);
+                    entry.mInterpolator = sDefaultInterpolator;
+                    break;
+            }
+            if (scale == 0 || (recyclerView != null && isOffScreen(recyclerView, entry))) {
+                entry.mStartTime = now;
+                entry.mDuration = 0;
+            }
+            mRunning.add(entry);
+        }
+        mPending.clear();
+        if (scale != 0 && !mFrameAnimator.isStarted()) {
+            mFrameAnimator.start();
+        }
+        // entries without duration that are due now don't have to wait for the next frame
+        onFrame(now);
+    }
+
+    private void onFrame(long frameTime) {
+        final boolean wasInFrame = mInFrame;
+        mInFrame = true;
+        // finish() may end other entries through the callbacks, so the size is read every time
+        for (int i = 0; i < mRunning.size(); i++) {
+            final Entry entry = mRunning.get(i);
+            if (entry.mHolder == null || frameTime < entry.mStartTime) {
+                continue;
+            }
+            if (!entry.mStarted) {
+                entry.mStarted = true;
+                dispatchStarting(entry);
+                if (entry.mHolder == null) {
+                    continue;
+                }
+            }
+            final long elapsed = frameTime - entry.mStartTime;
+            if (elapsed >= entry.mDuration) {
+                finish(entry);
+            } else {
+                entry.apply((float) elapsed / entry.mDuration);
+            }
+        }
+        mInFrame = wasInFrame;
+        compact(mRunning);
+        if (getHostView() instanceof RecyclerView
+                && ((RecyclerView) getHostView()).mBlackTop != -1) {
+            getHostView().invalidate();
+        }
+        dispatchFinishedWhenDone();
+    }
+
+    @Override
+    public void endAnimation(RecyclerView.ViewHolder item) {
+        boolean ended = false;
+        for (int i = mPending.size() - 1; i >= 0; i--) {
+            final Entry entry = mPending.get(i);
+            if (entry.mHolder == item) {
+                finish(entry);
+                ended = true;
+            }
+        }
+        for (int i = mRunning.size() - 1; i >= 0; i--) {
+            final Entry entry = i < mRunning.size() ? mRunning.get(i) : null;
+            if (entry != null && entry.mHolder == item) {
+                finish(entry);
+                ended = true;
+            }
+        }
+        if (ended) {
+            compact(mPending);
+            compact(mRunning);
+            dispatchFinishedWhenDone();
+        }
+    }
+
+    @Override
+    public void endAnimations() {
+        for (int i = 0; i < mPending.size(); i++) {
+            final Entry entry = mPending.get(i);
+            if (entry.mHolder != null) {
+                finish(entry);
+            }
+        }
+        for (int i = 0; i < mRunning.size(); i++) {
+            final Entry entry = mRunning.get(i);
+            if (entry.mHolder != null) {
+                finish(entry);
+            }
+        }
+        compact(mPending);
+        compact(mRunning);
+        dispatchFinishedWhenDone();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return mActiveCount > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the payload list is not empty, BatchedItemAnimator returns <code>true</code>, in which
+     * case a move animation is run instead of a change animation, as in
+     * {@link DefaultItemAnimator}.
+     */
+    @Override
+    public boolean canReuseUpdatedViewHolder(@NonNull RecyclerView.ViewHolder viewHolder,
+            @NonNull List<Object> payloads) {
+        return !payloads.isEmpty() || super.canReuseUpdatedViewHolder(viewHolder, payloads);
+    }
+
+    private void addPending(RecyclerView.ViewHolder holder, int type, float toTranslationX,
+            float toTranslationY, float toAlpha) {
+        final Entry entry = mPool.isEmpty() ? new Entry() : mPool.remove(mPool.size() - 1);
+        entry.set(holder, type, toTranslationX, toTranslationY, toAlpha);
+        mPending.add(entry);
+        mActiveCount++;
+    }
+
+    /**
+     * Resets the view of the entry and notifies that its animation finished. The entry stays in
+     * its list until {@link #compact(ArrayList)}.
+     */
+    private void finish(Entry entry) {
+        final RecyclerView.ViewHolder holder = entry.mHolder;
+        entry.mHolder = null;
+        mActiveCount--;
+        final View view = holder.itemView;
+        // only reset what the entry animates, as DefaultItemAnimator does
+        if (entry.mType != TYPE_MOVE) {
+            view.setAlpha(1);
+        }
+        if (entry.mType != TYPE_REMOVE && entry.mType != TYPE_ADD) {
+            view.setTranslationX(0);
+            view.setTranslationY(0);
+        }
+        switch (entry.mType) {
+            case TYPE_REMOVE:
+                dispatchRemoveFinished(holder);
+                break;
+            case TYPE_MOVE:
+                dispatchMoveFinished(holder);
+                break;
+            case TYPE_CHANGE_OLD:
+                dispatchChangeFinished(holder, true);
+                break;
+            case TYPE_CHANGE_NEW:
+                dispatchChangeFinished(holder, false);
+                break;
+            default:
+                dispatchAddFinished(holder);
+                break;
+        }
+    }
+
+    /**
+     * Removes the finished entries of the list in place, keeping the order of the others, and
+     * recycles them.
+     */
+    private void compact(ArrayList<Entry> entries) {
+        if (mInFrame) {
+            return;
+        }
+        final int size = entries.size();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            final Entry entry = entries.get(i);
+            if (entry.mHolder == null) {
+                recycle(entry);
+            } else {
+                if (kept != i) {
+                    entries.set(kept, entry);
+                }
+                kept++;
+            }
+        }
+        if (kept < size) {
+            entries.subList(kept, size).clear();
+        }
+    }
+
+    private void recycle(Entry entry) {
+        entry.mInterpolator = null;
+        if (mPool.size() < MAX_POOL_SIZE) {
+            mPool.add(entry);
+        }
+    }
+
+    /**
+     * Returns the animator duration scale of the system, 0 if animators are disabled.
+     */
+    private float getDurationScale() {
+        if (Build.VERSION.SDK_INT >= 26 && !ValueAnimator.areAnimatorsEnabled()) {
+            return 0;
+        }
+        final View host = getHostView();
+        if (host == null) {
+            return 1f;
+        }
+        return Settings.Global.getFloat(host.getContext().getContentResolver(),
+                Settings.Global.ANIMATOR_DURATION_SCALE, 1f);
+    }
+
+    private static long scale(long duration, float scale) {
+        return (long) (duration * scale);
+    }
+
+    private void dispatchStarting(Entry entry) {
+        switch (entry.mType) {
+            case TYPE_REMOVE:
+                dispatchRemoveStarting(entry.mHolder);
+                break;
+            case TYPE_MOVE:
+                dispatchMoveStarting(entry.mHolder);
+                break;
+            case TYPE_CHANGE_OLD:
+                dispatchChangeStarting(entry.mHolder, true);
+                break;
+            case TYPE_CHANGE_NEW:
+                dispatchChangeStarting(entry.mHolder, false);
+                break;
+            default:
+                dispatchAddStarting(entry.mHolder);
+                break;
+        }
+    }
+
+    private void dispatchFinishedWhenDone() {
+        if (isRunning()) {
+            return;
+        }
+        if (mFrameAnimator.isStarted()) {
+            mFrameAnimator.cancel();
+        }
+        dispatchAnimationsFinished();
+    }
+
+    /**
+     * Returns true if the view of the entry is out of the bounds of the RecyclerView both where
+     * the animation starts and where it ends.
+     */
+    private static boolean isOffScreen(RecyclerView recyclerView, Entry entry) {
+        final View view = entry.mHolder.itemView;
+        final ViewParent parent = view.getParent();
+        if (parent != recyclerView) {
+            return false;
+        }
+        final int width = recyclerView.getWidth();
+        final int height = recyclerView.getHeight();
+        return isOutside(view, entry.mFromTranslationX, entry.mFromTranslationY, width, height)
+                && isOutside(view, entry.mToTranslationX, entry.mToTranslationY, width, height);
+    }
+
+    private static boolean isOutside(View view, float translationX, float translationY,
+            int width, int height) {
+        return view.getRight() + translationX <= 0 || view.getLeft() + translationX >= width
+                || view.getBottom() + translationY <= 0 || view.getTop() + translationY >= height;
+    }
+
+    private static boolean isPreferenceCategory(View view) {
+        return view.getTag() != null && view.getTag().equals("preferencecategory");
+    }
+}
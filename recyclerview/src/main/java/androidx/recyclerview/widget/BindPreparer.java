@@ -0,0 +1,182 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.recyclerview.widget;
+
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the first phase of the two-phase bind contract, see
+ * {@link RecyclerView.Adapter#setBindPreparationEnabled(boolean)}.
+ * <p>
+ * {@link GapWorker} requests preparation for the adapter positions it is about to prefetch. The
+ * adapter's {@link RecyclerView.Adapter#onPrepareBind(int)} then runs on a shared worker pool,
+ * and the result is picked up by the Recycler when it binds that position. All methods except
+ * {@link Job#run()} are called on the main thread.
+ * <p>
+ * Prepared binds are dropped when the adapter notifies any change, since positions may no longer
+ * point at the same items, and when their position hasn't been prefetched for a couple of passes,
+ * which means it has scrolled away. A preparation that throws is logged, and its position is
+ * bound in one phase on the main thread.
+ * <p>
+ * The adapter that prepares a position is resolved on the main thread when it is requested, so
+ * that a {@link ConcatAdapter} can hand it to the nested adapter that owns the position.
+ */
+final class BindPreparer {
+    private static final String TAG = "BindPreparer";
+
+    private static final Object sExecutorLock = new Object();
+    private static ExecutorService sPrepareExecutor = null;
+
+    // A position not requested again in this many prefetch passes is no longer coming into view.
+    private static final int MAX_PASSES_WITHOUT_REQUEST = 2;
+
+    private final SparseArray<Job> mJobs = new SparseArray<>();
+    private int mPass = 0;
+
+    static final class Job implements Runnable {
+        final RecyclerView.Adapter<?> mAdapter;
+        final int mPosition;
+        // The adapter and position onPrepareBind is called with, see
+        // RecyclerView.Adapter#resolveBindPreparation.
+        RecyclerView.Adapter<?> mTargetAdapter;
+        int mTargetPosition;
+        int mLastRequestedPass;
+        Future<?> mFuture;
+        volatile boolean mCancelled;
+        volatile boolean mDone;
+        Object mResult;
+        RuntimeException mError;
+
+        Job(RecyclerView.Adapter<?> adapter, int position) {
+            mAdapter = adapter;
+            mPosition = position;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            try {
+                mResult = mTargetAdapter.onPrepareBind(mTargetPosition);
+            } catch (RuntimeException e) {
+                mError = e;
+            } finally {
+                // volatile write publishes mResult / mError to the main thread
+                mDone = true;
+            }
+        }
+
+        void cancel() {
+            mCancelled = true;
+            if (mFuture != null) {
+                mFuture.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Called by {@link GapWorker} before it requests the positions of a new prefetch pass.
+     */
+    void onPrefetchPassStarted() {
+        mPass++;
+        for (int i = mJobs.size() - 1; i >= 0; i--) {
+            final Job job = mJobs.valueAt(i);
+            if (mPass - job.mLastRequestedPass > MAX_PASSES_WITHOUT_REQUEST) {
+                job.cancel();
+                mJobs.removeAt(i);
+            }
+        }
+    }
+
+    /**
+     * Starts preparing the bind of the given adapter position, unless it already is.
+     */
+    void request(RecyclerView.Adapter<?> adapter, int position) {
+        Job job = mJobs.get(position);
+        if (job == null) {
+            job = new Job(adapter, position);
+            mJobs.put(position, job);
+            if (adapter.resolveBindPreparation(job, position)) {
+                job.mFuture = getExecutor().submit(job);
+            } else {
+                // nothing to prepare, the position is bound in one phase
+                job.mDone = true;
+            }
+        }
+        job.mLastRequestedPass = mPass;
+    }
+
+    /**
+     * Returns true if the bind of the given position is still being prepared.
+     */
+    boolean isPending(int position) {
+        final Job job = mJobs.get(position);
+        return job != null && !job.mDone;
+    }
+
+    /**
+     * Removes the prepared bind of the given position and returns it, or returns null if there is
+     * none or it isn't ready yet, in which case the position has to be bound in one phase.
+     */
+    @Nullable
+    Object consume(int position) {
+        final Job job = mJobs.get(position);
+        if (job == null) {
+            return null;
+        }
+        mJobs.remove(position);
+        if (!job.mDone) {
+            job.cancel();
+            return null;
+        }
+        if (job.mError != null) {
+            Log.w(TAG, "onPrepareBind failed for position " + position
+                    + ", binding it on the main thread", job.mError);
+            return null;
+        }
+        return job.mResult;
+    }
+
+    /**
+     * Drops every prepared or pending bind.
+     */
+    void cancelAll() {
+        for (int i = 0; i < mJobs.size(); i++) {
+            mJobs.valueAt(i).cancel();
+        }
+        mJobs.clear();
+    }
+
+    static ExecutorService getExecutor() {
+        synchronized (sExecutorLock) {
+            if (sPrepareExecutor == null) {
+                final int threadCount = Math.max(2,
+                        Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+                sPrepareExecutor = Executors.newFixedThreadPool(threadCount);
+            }
+            return sPrepareExecutor;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.recyclerview.widget;
+
+import android.view.View;
+
+import java.util.List;
+
+/**
+ * Bounds of the children of a LayoutManager, sorted along the scroll axis, to find the children
+ * intersecting a rectangle without walking all of them. Used by {@link ItemTouchHelper} to find
+ * drop targets in batched reorder mode.
+ * <p>
+ * The index is built on the first query after {@link #invalidate()}, which is called once per
+ * frame and whenever children are attached or detached, while move events query it many times
+ * per frame. Bounds are layout bounds, without translation, as in
+ * {@link ItemTouchHelper}'s default drop target search.
+ */
+final class ChildBoundsIndex {
+    private static final int INITIAL_CAPACITY = 32;
+
+    // Child bounds along the scroll axis (major) and the other axis (minor), sorted by major
+    // start. mMaxMajorEnds[i] is the largest major end of entries [0, i].
+    private View[] mViews = new View[INITIAL_CAPACITY];
+    private int[] mMajorStarts = new int[INITIAL_CAPACITY];
+    private int[] mMajorEnds = new int[INITIAL_CAPACITY];
+    private int[] mMinorStarts = new int[INITIAL_CAPACITY];
+    private int[] mMinorEnds = new int[INITIAL_CAPACITY];
+    private int[] mMaxMajorEnds = new int[INITIAL_CAPACITY];
+    private int mCount;
+    private boolean mVertical;
+    private boolean mValid;
+
+    void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * Adds the children of the LayoutManager whose bounds intersect the given rectangle to
+     * {@code out}, except {@code exclude}. Edges touching count as intersecting.
+     */
+    void findIntersecting(RecyclerView.LayoutManager layoutManager, View exclude, int left,
+            int top, int right, int bottom, List<View> out) {
+        ensureIndex(layoutManager);
+        final int majorStart = mVertical ? top : left;
+        final int majorEnd = mVertical ? bottom : right;
+        final int minorStart = mVertical ? left : top;
+        final int minorEnd = mVertical ? right : bottom;
+        // entries after high start past the rectangle
+        int low = 0;
+        int high = mCount;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (mMajorStarts[mid] <= majorEnd) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        // none of the entries up to i can reach the rectangle once mMaxMajorEnds[i] is before it
+        for (int i = high - 1; i >= 0 && mMaxMajorEnds[i] >= majorStart; i--) {
+            if (mMajorEnds[i] >= majorStart && mMinorEnds[i] >= minorStart
+                    && mMinorStarts[i] <= minorEnd && mViews[i] != exclude) {
+                out.add(mViews[i]);
+            }
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < mCount; i++) {
+            mViews[i] = null;
+        }
+        mCount = 0;
+        mValid = false;
+    }
+
+    private void ensureIndex(RecyclerView.LayoutManager layoutManager) {
+        if (mValid) {
+            return;
+        }
+        mValid = true;
+        mVertical = layoutManager.canScrollVertically() || !layoutManager.canScrollHorizontally();
+        final int childCount = layoutManager.getChildCount();
+        ensureCapacity(childCount);
+        final int oldCount = mCount;
+        mCount = 0;
+        for (int i = 0; i < childCount; i++) {
+            final View child = layoutManager.getChildAt(i);
+            if (child == null) {
+                continue;
+            }
+            final int majorStart = mVertical ? child.getTop() : child.getLeft();
+            // insertion sort, children are usually attached in layout order already
+            int j = mCount;
+            while (j > 0 && mMajorStarts[j - 1] > majorStart) {
+                moveEntry(j - 1, j);
+                j--;
+            }
+            mViews[j] = child;
+            mMajorStarts[j] = majorStart;
+            mMajorEnds[j] = mVertical ? child.getBottom() : child.getRight();
+            mMinorStarts[j] = mVertical ? child.getLeft() : child.getTop();
+            mMinorEnds[j] = mVertical ? child.getRight() : child.getBottom();
+            mCount++;
+        }
+        for (int i = mCount; i < oldCount; i++) {
+            mViews[i] = null;
+        }
+        int maxMajorEnd = Integer.MIN_VALUE;
+        for (int i = 0; i < mCount; i++) {
+            maxMajorEnd = Math.max(maxMajorEnd, mMajorEnds[i]);
+            mMaxMajorEnds[i] = maxMajorEnd;
+        }
+    }
+
+    private void moveEntry(int from, int to) {
+        mViews[to] = mViews[from];
+        mMajorStarts[to] = mMajorStarts[from];
+        mMajorEnds[to] = mMajorEnds[from];
+        mMinorStarts[to] = mMinorStarts[from];
+        mMinorEnds[to] = mMinorEnds[from];
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= mViews.length) {
+            return;
+        }
+        final int capacity = Math.max(count, mViews.length * 2);
+        final View[] views = new View[capacity];
+        System.arraycopy(mViews, 0, views, 0, mCount);
+        mViews = views;
+        mMajorStarts = new int[capacity];
+        mMajorEnds = new int[capacity];
+        mMinorStarts = new int[capacity];
+        mMinorEnds = new int[capacity];
+        mMaxMajorEnds = new int[capacity];
+    }
+}
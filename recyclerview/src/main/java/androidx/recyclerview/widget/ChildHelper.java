@@ -20,8 +20,7 @@ import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Helper class to manage children.
@@ -32,6 +31,11 @@ import java.util.List;
  * <p>
  * When RecyclerView needs direct access to the view group children, it can call unfiltered
  * methods like get getUnfilteredChildCount or getUnfilteredChildAt.
+ * <p>
+ * Hidden views are kept in a dense array, and each hidden view's ViewHolder knows its index in
+ * it, so hiding, unhiding and checking a view take constant time however many children are
+ * disappearing. Which ViewGroup offsets are hidden is kept in a {@link Bucket}, which also
+ * converts between regular indices and offsets.
  */
 class ChildHelper {
 
@@ -43,12 +47,15 @@ class ChildHelper {
 
     final Bucket mBucket;
 
-    final List<View> mHiddenViews;
+    // The first mHiddenCount entries are the hidden views, in no particular order.
+    View[] mHiddenViews;
+
+    int mHiddenCount;
 
     ChildHelper(Callback callback) {
         mCallback = callback;
         mBucket = new Bucket();
-        mHiddenViews = new ArrayList<View>();
+        mHiddenViews = new View[8];
     }
 
     /**
@@ -57,7 +64,14 @@ class ChildHelper {
      * @param child  View to hide.
      */
     private void hideViewInternal(View child) {
-        mHiddenViews.add(child);
+        if (mHiddenCount == mHiddenViews.length) {
+            mHiddenViews = Arrays.copyOf(mHiddenViews, mHiddenCount * 2);
+        }
+        final RecyclerView.ViewHolder holder = mCallback.getChildViewHolder(child);
+        if (holder != null) {
+            holder.mHiddenViewIndex = mHiddenCount;
+        }
+        mHiddenViews[mHiddenCount++] = child;
         mCallback.onEnteredHiddenState(child);
     }
 
@@ -67,12 +81,51 @@ class ChildHelper {
      * @param child  View to hide.
      */
     private boolean unhideViewInternal(View child) {
-        if (mHiddenViews.remove(child)) {
-            mCallback.onLeftHiddenState(child);
-            return true;
-        } else {
+        final int index = hiddenIndexOf(child);
+        if (index < 0) {
             return false;
         }
+        // move the last hidden view into the freed slot
+        final int last = --mHiddenCount;
+        if (index != last) {
+            final View moved = mHiddenViews[last];
+            mHiddenViews[index] = moved;
+            final RecyclerView.ViewHolder movedHolder = mCallback.getChildViewHolder(moved);
+            if (movedHolder != null) {
+                movedHolder.mHiddenViewIndex = index;
+            }
+        }
+        mHiddenViews[last] = null;
+        setHiddenViewIndex(child, RecyclerView.NO_POSITION);
+        mCallback.onLeftHiddenState(child);
+        return true;
+    }
+
+    /**
+     * Returns the index of the given view in mHiddenViews, or -1 if it is not hidden.
+     */
+    private int hiddenIndexOf(View view) {
+        if (mHiddenCount == 0) {
+            return -1;
+        }
+        final RecyclerView.ViewHolder holder = mCallback.getChildViewHolder(view);
+        if (holder != null) {
+            final int index = holder.mHiddenViewIndex;
+            return index >= 0 && index < mHiddenCount && mHiddenViews[index] == view ? index : -1;
+        }
+        for (int i = 0; i < mHiddenCount; i++) {
+            if (mHiddenViews[i] == view) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void setHiddenViewIndex(View view, int index) {
+        final RecyclerView.ViewHolder holder = mCallback.getChildViewHolder(view);
+        if (holder != null) {
+            holder.mHiddenViewIndex = index;
+        }
     }
 
     /**
@@ -94,12 +147,14 @@ class ChildHelper {
      * @param hidden If set to true, this item will be invisible from regular methods.
      */
     void addView(View child, int index, boolean hidden) {
-        final int offset;
-        if (index < 0) {
-            offset = mCallback.getChildCount();
-        } else {
+        int offset = -1;
+        if (index >= 0) {
             offset = getOffset(index);
         }
+        if (offset < 0) {
+            // past the last regular child, append
+            offset = mCallback.getChildCount();
+        }
         mBucket.insert(offset, hidden);
         if (hidden) {
             hideViewInternal(child);
@@ -115,20 +170,15 @@ class ChildHelper {
             return -1; //anything below 0 won't work as diff will be undefined.
         }
         final int limit = mCallback.getChildCount();
-        int offset = index;
-        while (offset < limit) {
-            final int removedBefore = mBucket.countOnesBefore(offset);
-            final int diff = index - (offset - removedBefore);
-            if (diff == 0) {
-                while (mBucket.get(offset)) { // ensure this offset is not hidden
-                    offset++;
-                }
-                return offset;
-            } else {
-                offset += diff;
-            }
+        if (limit == 0) {
+            return -1;
         }
-        return -1;
+        // the regular child before the index must come before the last offset
+        final int regularBeforeLast = limit - 1 - mBucket.countOnesBefore(limit - 1);
+        if (regularBeforeLast < index) {
+            return -1;
+        }
+        return mBucket.selectZero(index);
     }
 
     /**
@@ -186,9 +236,12 @@ class ChildHelper {
      */
     void removeAllViewsUnfiltered() {
         mBucket.reset();
-        for (int i = mHiddenViews.size() - 1; i >= 0; i--) {
-            mCallback.onLeftHiddenState(mHiddenViews.get(i));
-            mHiddenViews.remove(i);
+        for (int i = mHiddenCount - 1; i >= 0; i--) {
+            final View view = mHiddenViews[i];
+            mHiddenViews[i] = null;
+            mHiddenCount = i;
+            setHiddenViewIndex(view, RecyclerView.NO_POSITION);
+            mCallback.onLeftHiddenState(view);
         }
         mCallback.removeAllViews();
         if (DEBUG) {
@@ -203,9 +256,9 @@ class ChildHelper {
      * @return         A hidden view with a valid ViewHolder that matches the position.
      */
     View findHiddenNonRemovedView(int position) {
-        final int count = mHiddenViews.size();
+        final int count = mHiddenCount;
         for (int i = 0; i < count; i++) {
-            final View view = mHiddenViews.get(i);
+            final View view = mHiddenViews[i];
             RecyclerView.ViewHolder holder = mCallback.getChildViewHolder(view);
             if (holder.getLayoutPosition() == position
                     && !holder.isInvalid()
@@ -226,12 +279,14 @@ class ChildHelper {
      */
     void attachViewToParent(View child, int index, ViewGroup.LayoutParams layoutParams,
             boolean hidden) {
-        final int offset;
-        if (index < 0) {
-            offset = mCallback.getChildCount();
-        } else {
+        int offset = -1;
+        if (index >= 0) {
             offset = getOffset(index);
         }
+        if (offset < 0) {
+            // past the last regular child, append
+            offset = mCallback.getChildCount();
+        }
         mBucket.insert(offset, hidden);
         if (hidden) {
             hideViewInternal(child);
@@ -250,7 +305,7 @@ class ChildHelper {
      * @see #getChildAt(int)
      */
     int getChildCount() {
-        return mCallback.getChildCount() - mHiddenViews.size();
+        return mCallback.getChildCount() - mHiddenCount;
     }
 
     /**
@@ -316,7 +371,7 @@ class ChildHelper {
      * @return True if the View is not visible to LayoutManager
      */
     boolean isHidden(View view) {
-        return mHiddenViews.contains(view);
+        return hiddenIndexOf(view) >= 0;
     }
 
     /**
@@ -360,7 +415,7 @@ class ChildHelper {
 
     @Override
     public String toString() {
-        return mBucket.toString() + ", hidden list:" + mHiddenViews.size();
+        return mBucket.toString() + ", hidden list:" + mHiddenCount;
     }
 
     /**
@@ -391,6 +446,11 @@ class ChildHelper {
 
     /**
      * Bitset implementation that provides methods to offset indices.
+     * <p>
+     * Bits are kept in a flat array of words. The number of set bits before each word is cached
+     * and rebuilt on the first query after a change, so while children are only queried, as
+     * during most of a layout, counting the set bits before an index and finding the n-th clear
+     * bit take constant and logarithmic time.
      */
     static class Bucket {
 
@@ -398,115 +458,181 @@ class ChildHelper {
 
         static final long LAST_BIT = 1L << (Long.SIZE - 1);
 
-        long mData = 0;
+        long[] mWords = new long[4];
+
+        int mOnes;
 
-        Bucket mNext;
+        // mOnesBefore[w] is the number of set bits in words [0, w), valid if mRankValid
+        int[] mOnesBefore = new int[5];
+
+        boolean mRankValid = true;
 
         void set(int index) {
-            if (index >= BITS_PER_WORD) {
-                ensureNext();
-                mNext.set(index - BITS_PER_WORD);
-            } else {
-                mData |= 1L << index;
+            final int word = index / BITS_PER_WORD;
+            ensureWords(word + 1);
+            final long bit = 1L << index;
+            if ((mWords[word] & bit) == 0) {
+                mWords[word] |= bit;
+                mOnes++;
+                mRankValid = false;
             }
         }
 
-        private void ensureNext() {
-            if (mNext == null) {
-                mNext = new Bucket();
+        void clear(int index) {
+            final int word = index / BITS_PER_WORD;
+            if (word >= mWords.length) {
+                return;
+            }
+            final long bit = 1L << index;
+            if ((mWords[word] & bit) != 0) {
+                mWords[word] &= ~bit;
+                mOnes--;
+                mRankValid = false;
             }
         }
 
-        void clear(int index) {
-            if (index >= BITS_PER_WORD) {
-                if (mNext != null) {
-                    mNext.clear(index - BITS_PER_WORD);
-                }
-            } else {
-                mData &= ~(1L << index);
-            }
+        boolean get(int index) {
+            final int word = index / BITS_PER_WORD;
+            return word < mWords.length && (mWords[word] & (1L << index)) != 0;
+        }
 
+        void reset() {
+            Arrays.fill(mWords, 0);
+            mOnes = 0;
+            mRankValid = false;
         }
 
-        boolean get(int index) {
-            if (index >= BITS_PER_WORD) {
-                ensureNext();
-                return mNext.get(index - BITS_PER_WORD);
-            } else {
-                return (mData & (1L << index)) != 0;
+        void insert(int index, boolean value) {
+            if (mOnes == 0 && !value) {
+                return;
+            }
+            final int word = index / BITS_PER_WORD;
+            final int lastWord = Math.max(word, lastUsedWord());
+            // one more word for the bit carried out of the last one
+            ensureWords(lastWord + 2);
+            final long data = mWords[word];
+            final long mask = (1L << index) - 1;
+            long carry = data >>> (BITS_PER_WORD - 1);
+            mWords[word] = (data & mask) | ((data & ~mask) << 1);
+            for (int i = word + 1; i <= lastWord + 1; i++) {
+                final long next = mWords[i];
+                mWords[i] = (next << 1) | carry;
+                carry = next >>> (BITS_PER_WORD - 1);
+            }
+            mRankValid = false;
+            if (value) {
+                set(index);
             }
         }
 
-        void reset() {
-            mData = 0;
-            if (mNext != null) {
-                mNext.reset();
+        boolean remove(int index) {
+            final int word = index / BITS_PER_WORD;
+            if (mOnes == 0 || word >= mWords.length) {
+                return false;
+            }
+            final long data = mWords[word];
+            final long mask = (1L << index) - 1;
+            final boolean value = (data & (1L << index)) != 0;
+            if (value) {
+                mOnes--;
+            }
+            // cannot use >> because it adds one.
+            mWords[word] = (data & mask) | ((data >>> 1) & ~mask);
+            final int lastWord = lastUsedWord();
+            for (int i = word + 1; i <= lastWord; i++) {
+                final long next = mWords[i];
+                mWords[i - 1] |= next << (BITS_PER_WORD - 1);
+                mWords[i] = next >>> 1;
             }
+            mRankValid = false;
+            return value;
         }
 
-        void insert(int index, boolean value) {
-            if (index >= BITS_PER_WORD) {
-                ensureNext();
-                mNext.insert(index - BITS_PER_WORD, value);
-            } else {
-                final boolean lastBit = (mData & LAST_BIT) != 0;
-                long mask = (1L << index) - 1;
-                final long before = mData & mask;
-                final long after = (mData & ~mask) << 1;
-                mData = before | after;
-                if (value) {
-                    set(index);
+        int countOnesBefore(int index) {
+            if (mOnes == 0 || index <= 0) {
+                return 0;
+            }
+            final int word = index / BITS_PER_WORD;
+            if (word >= mWords.length) {
+                return mOnes;
+            }
+            ensureRank();
+            return mOnesBefore[word]
+                    + Long.bitCount(mWords[word] & ((1L << index) - 1));
+        }
+
+        /**
+         * Returns the index of the n-th clear bit, counting from 0. Bits past the array are
+         * clear.
+         */
+        int selectZero(int n) {
+            if (mOnes == 0) {
+                return n;
+            }
+            ensureRank();
+            final int wordCount = mWords.length;
+            final int zerosInWords = wordCount * BITS_PER_WORD - mOnes;
+            if (n >= zerosInWords) {
+                return wordCount * BITS_PER_WORD + n - zerosInWords;
+            }
+            // last word with fewer than n + 1 clear bits before it
+            int low = 0;
+            int high = wordCount - 1;
+            while (low < high) {
+                final int mid = (low + high + 1) >>> 1;
+                if (mid * BITS_PER_WORD - mOnesBefore[mid] <= n) {
+                    low = mid;
                 } else {
-                    clear(index);
-                }
-                if (lastBit || mNext != null) {
-                    ensureNext();
-                    mNext.insert(0, lastBit);
+                    high = mid - 1;
                 }
             }
+            long zeros = ~mWords[low];
+            for (int i = n - (low * BITS_PER_WORD - mOnesBefore[low]); i > 0; i--) {
+                zeros &= zeros - 1;
+            }
+            return low * BITS_PER_WORD + Long.numberOfTrailingZeros(zeros);
         }
 
-        boolean remove(int index) {
-            if (index >= BITS_PER_WORD) {
-                ensureNext();
-                return mNext.remove(index - BITS_PER_WORD);
-            } else {
-                long mask = (1L << index);
-                final boolean value = (mData & mask) != 0;
-                mData &= ~mask;
-                mask = mask - 1;
-                final long before = mData & mask;
-                // cannot use >> because it adds one.
-                final long after = Long.rotateRight(mData & ~mask, 1);
-                mData = before | after;
-                if (mNext != null) {
-                    if (mNext.get(0)) {
-                        set(BITS_PER_WORD - 1);
-                    }
-                    mNext.remove(0);
+        private int lastUsedWord() {
+            for (int i = mWords.length - 1; i >= 0; i--) {
+                if (mWords[i] != 0) {
+                    return i;
                 }
-                return value;
             }
+            return 0;
         }
 
-        int countOnesBefore(int index) {
-            if (mNext == null) {
-                if (index >= BITS_PER_WORD) {
-                    return Long.bitCount(mData);
-                }
-                return Long.bitCount(mData & ((1L << index) - 1));
+        private void ensureWords(int count) {
+            if (count > mWords.length) {
+                mWords = Arrays.copyOf(mWords, Math.max(count, mWords.length * 2));
+                mOnesBefore = new int[mWords.length + 1];
+                mRankValid = false;
             }
-            if (index < BITS_PER_WORD) {
-                return Long.bitCount(mData & ((1L << index) - 1));
-            } else {
-                return mNext.countOnesBefore(index - BITS_PER_WORD) + Long.bitCount(mData);
+        }
+
+        private void ensureRank() {
+            if (mRankValid) {
+                return;
+            }
+            mRankValid = true;
+            int ones = 0;
+            for (int i = 0; i < mWords.length; i++) {
+                mOnesBefore[i] = ones;
+                ones += Long.bitCount(mWords[i]);
             }
+            mOnesBefore[mWords.length] = ones;
         }
 
         @Override
         public String toString() {
-            return mNext == null ? Long.toBinaryString(mData)
-                    : mNext.toString() + "xx" + Long.toBinaryString(mData);
+            final StringBuilder sb = new StringBuilder();
+            for (int i = lastUsedWord(); i >= 0; i--) {
+                sb.append(Long.toBinaryString(mWords[i]));
+                if (i > 0) {
+                    sb.append("xx");
+                }
+            }
+            return sb.toString();
         }
     }
 
@@ -188,6 +188,19 @@ public final class ConcatAdapter extends Adapter<ViewHolder> {
         mController.onBindViewHolder(holder, position);
     }
 
+    @Override
+    public void onBindPreparedViewHolder(@NonNull ViewHolder holder, int position,
+            @NonNull Object preparedBind) {
+        // the nested adapter prepared it, hand it over to its bindViewHolder
+        holder.mPreparedBind = preparedBind;
+        mController.onBindViewHolder(holder, position);
+    }
+
+    @Override
+    boolean resolveBindPreparation(@NonNull BindPreparer.Job job, int position) {
+        return mController.resolveBindPreparation(job, position);
+    }
+
     /**
      * Calling this method is an error and will result in an {@link UnsupportedOperationException}.
      * You should use the {@link Config} object passed into the ConcatAdapter to configure this
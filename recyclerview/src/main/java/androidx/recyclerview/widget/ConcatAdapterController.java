@@ -160,6 +160,7 @@ class ConcatAdapterController implements NestedAdapterWrapper.Callback {
         NestedAdapterWrapper wrapper = new NestedAdapterWrapper(adapter, this,
                 mViewTypeStorage, mStableIdStorage.createStableIdLookup());
         mWrappers.add(index, wrapper);
+        updateBindPreparationEnabled();
         // notify attach for all recyclerview
         for (WeakReference<RecyclerView> reference : mAttachedRecyclerViews) {
             RecyclerView recyclerView = reference.get();
@@ -187,6 +188,7 @@ class ConcatAdapterController implements NestedAdapterWrapper.Callback {
         NestedAdapterWrapper wrapper = mWrappers.get(index);
         int offset = countItemsBefore(wrapper);
         mWrappers.remove(index);
+        updateBindPreparationEnabled();
         mConcatAdapter.notifyItemRangeRemoved(offset, wrapper.getCachedItemCount());
         // notify detach for all recyclerviews
         for (WeakReference<RecyclerView> reference : mAttachedRecyclerViews) {
@@ -362,6 +364,30 @@ class ConcatAdapterController implements NestedAdapterWrapper.Callback {
         mReusableHolder = wrapperAndLocalPosition;
     }
 
+    /**
+     * Resolves the bind preparation of the given position to the nested adapter owning it, if
+     * that adapter prepares its binds.
+     */
+    boolean resolveBindPreparation(BindPreparer.Job job, int globalPosition) {
+        WrapperAndLocalPosition wrapperAndPos = findWrapperAndLocalPosition(globalPosition);
+        final Adapter<ViewHolder> adapter = wrapperAndPos.mWrapper.adapter;
+        final int localPosition = wrapperAndPos.mLocalPosition;
+        releaseWrapperAndLocalPosition(wrapperAndPos);
+        return adapter.isBindPreparationEnabled()
+                && adapter.resolveBindPreparation(job, localPosition);
+    }
+
+    /**
+     * The ConcatAdapter prepares binds if any of its nested adapters does.
+     */
+    private void updateBindPreparationEnabled() {
+        boolean enabled = false;
+        for (NestedAdapterWrapper wrapper : mWrappers) {
+            enabled |= wrapper.adapter.isBindPreparationEnabled();
+        }
+        mConcatAdapter.setBindPreparationEnabledInternal(enabled);
+    }
+
     public void onBindViewHolder(ViewHolder holder, int globalPosition) {
         WrapperAndLocalPosition wrapperAndPos = findWrapperAndLocalPosition(globalPosition);
         mBinderLookup.put(holder, wrapperAndPos.mWrapper);
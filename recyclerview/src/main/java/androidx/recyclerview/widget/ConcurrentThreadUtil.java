@@ -0,0 +1,307 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.recyclerview.widget;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link ThreadUtil} that loads tiles on several threads, nearest to the visible range first,
+ * see {@link AsyncListUtil#AsyncListUtil(Class, int, AsyncListUtil.DataCallback,
+ * AsyncListUtil.ViewCallback, int)}.
+ * <p>
+ * Refreshes, range updates and tile recycling still run one at a time and in order, as in
+ * {@link MessageThreadUtil}. Tile loads are kept in a binary heap instead, keyed by the distance
+ * of the tile from the visible range, and are taken by up to the given number of workers. Tiles
+ * behind the visible range in the scroll direction come after every tile ahead of it.
+ * <p>
+ * A range update re-keys the pending loads as soon as it is posted, and drops the ones whose tile
+ * left the extended range, so a fling doesn't wait on tiles it has already passed. Loads
+ * requested for such tiles afterwards, by an older range update still being handled, are ignored.
+ */
+class ConcurrentThreadUtil<T> implements ThreadUtil<T> {
+
+    private final int mTileSize;
+    private final int mWorkerCount;
+
+    ConcurrentThreadUtil(int tileSize, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount must be at least 1, was "
+                    + workerCount);
+        }
+        mTileSize = tileSize;
+        mWorkerCount = workerCount;
+    }
+
+    @Override
+    public MainThreadCallback<T> getMainThreadProxy(MainThreadCallback<T> callback) {
+        return new MessageThreadUtil<T>().getMainThreadProxy(callback);
+    }
+
+    @Override
+    public BackgroundCallback<T> getBackgroundProxy(BackgroundCallback<T> callback) {
+        return new PriorityBackgroundProxy<T>(callback, mTileSize, mWorkerCount);
+    }
+
+    private static final class PriorityBackgroundProxy<T> implements BackgroundCallback<T> {
+        static final int REFRESH = 1;
+        static final int UPDATE_RANGE = 2;
+        static final int RECYCLE_TILE = 4;
+
+        private static final int INITIAL_CAPACITY = 16;
+        // Added to the priority of tiles behind the visible range, so they come after all others.
+        private static final long BEHIND = 1L << 32;
+
+        final BackgroundCallback<T> mCallback;
+        final int mTileSize;
+        final int mWorkerCount;
+
+        final MessageThreadUtil.MessageQueue mQueue = new MessageThreadUtil.MessageQueue();
+        @SuppressWarnings("deprecation") /* AsyncTask */
+        private final Executor mExecutor = android.os.AsyncTask.THREAD_POOL_EXECUTOR;
+        final AtomicBoolean mBackgroundRunning = new AtomicBoolean(false);
+
+        private final Object mLock = new Object();
+        // Pending loads by tile start, a binary min-heap on mPriorities.
+        private int[] mPositions = new int[INITIAL_CAPACITY];
+        private long[] mPriorities = new long[INITIAL_CAPACITY];
+        private int mPendingCount;
+        private int mActiveWorkers;
+
+        // The most recent range update.
+        private int mRangeStart;
+        private int mRangeEnd;
+        private int mExtRangeStart;
+        private int mExtRangeEnd = Integer.MAX_VALUE;
+        private int mScrollHint = AsyncListUtil.ViewCallback.HINT_SCROLL_NONE;
+
+        PriorityBackgroundProxy(BackgroundCallback<T> callback, int tileSize, int workerCount) {
+            mCallback = callback;
+            mTileSize = tileSize;
+            mWorkerCount = workerCount;
+        }
+
+        @Override
+        public void refresh(int generation) {
+            synchronized (mLock) {
+                // pending tiles are requested again once the new item count is known
+                mPendingCount = 0;
+            }
+            sendMessageAtFrontOfQueue(
+                    MessageThreadUtil.SyncQueueItem.obtainMessage(REFRESH, generation, null));
+        }
+
+        @Override
+        public void updateRange(int rangeStart, int rangeEnd, int extRangeStart, int extRangeEnd,
+                int scrollHint) {
+            synchronized (mLock) {
+                mRangeStart = rangeStart;
+                mRangeEnd = rangeEnd;
+                mExtRangeStart = extRangeStart;
+                mExtRangeEnd = extRangeEnd;
+                mScrollHint = scrollHint;
+                int count = 0;
+                for (int i = 0; i < mPendingCount; i++) {
+                    final int position = mPositions[i];
+                    if (isInRange(position)) {
+                        mPositions[count] = position;
+                        mPriorities[count] = priorityOf(position);
+                        count++;
+                    }
+                }
+                mPendingCount = count;
+                for (int i = count / 2 - 1; i >= 0; i--) {
+                    siftDown(i);
+                }
+            }
+            sendMessageAtFrontOfQueue(MessageThreadUtil.SyncQueueItem.obtainMessage(UPDATE_RANGE,
+                    rangeStart, rangeEnd, extRangeStart, extRangeEnd, scrollHint, null));
+        }
+
+        @Override
+        public void loadTile(int position, int scrollHint) {
+            synchronized (mLock) {
+                if (!isInRange(position)) {
+                    return;
+                }
+                for (int i = 0; i < mPendingCount; i++) {
+                    if (mPositions[i] == position) {
+                        return;
+                    }
+                }
+                ensureCapacity(mPendingCount + 1);
+                mPositions[mPendingCount] = position;
+                mPriorities[mPendingCount] = priorityOf(position);
+                siftUp(mPendingCount++);
+                if (mActiveWorkers >= mWorkerCount) {
+                    return;
+                }
+                mActiveWorkers++;
+            }
+            mExecutor.execute(mWorkerRunnable);
+        }
+
+        @Override
+        public void recycleTile(TileList.Tile<T> tile) {
+            sendMessage(MessageThreadUtil.SyncQueueItem.obtainMessage(RECYCLE_TILE, 0, tile));
+        }
+
+        private void sendMessage(MessageThreadUtil.SyncQueueItem msg) {
+            mQueue.sendMessage(msg);
+            maybeExecuteBackgroundRunnable();
+        }
+
+        private void sendMessageAtFrontOfQueue(MessageThreadUtil.SyncQueueItem msg) {
+            mQueue.sendMessageAtFrontOfQueue(msg);
+            maybeExecuteBackgroundRunnable();
+        }
+
+        private void maybeExecuteBackgroundRunnable() {
+            if (mBackgroundRunning.compareAndSet(false, true)) {
+                mExecutor.execute(mBackgroundRunnable);
+            }
+        }
+
+        private final Runnable mBackgroundRunnable = new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    MessageThreadUtil.SyncQueueItem msg = mQueue.next();
+                    if (msg == null) {
+                        break;
+                    }
+                    switch (msg.what) {
+                        case REFRESH:
+                            mQueue.removeMessages(REFRESH);
+                            mCallback.refresh(msg.arg1);
+                            break;
+                        case UPDATE_RANGE:
+                            mQueue.removeMessages(UPDATE_RANGE);
+                            mCallback.updateRange(
+                                    msg.arg1, msg.arg2, msg.arg3, msg.arg4, msg.arg5);
+                            break;
+                        case RECYCLE_TILE:
+                            @SuppressWarnings("unchecked")
+                            TileList.Tile<T> tile = (TileList.Tile<T>) msg.data;
+                            mCallback.recycleTile(tile);
+                            break;
+                        default:
+                            Log.e("ThreadUtil", "Unsupported message, what=" + msg.what);
+                    }
+                }
+                mBackgroundRunning.set(false);
+            }
+        };
+
+        // Run by up to mWorkerCount threads at once, until no load is pending.
+        private final Runnable mWorkerRunnable = new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    final int position;
+                    final int scrollHint;
+                    synchronized (mLock) {
+                        if (mPendingCount == 0) {
+                            mActiveWorkers--;
+                            return;
+                        }
+                        position = poll();
+                        scrollHint = mScrollHint;
+                    }
+                    mCallback.loadTile(position, scrollHint);
+                }
+            }
+        };
+
+        private boolean isInRange(int tileStart) {
+            return tileStart + mTileSize > mExtRangeStart && tileStart <= mExtRangeEnd;
+        }
+
+        private long priorityOf(int tileStart) {
+            final int tileEnd = tileStart + mTileSize - 1;
+            if (tileEnd >= mRangeStart && tileStart <= mRangeEnd) {
+                return 0;
+            }
+            final boolean before = tileEnd < mRangeStart;
+            final long distance = before
+                    ? (long) mRangeStart - tileEnd : (long) tileStart - mRangeEnd;
+            final boolean behind = before
+                    ? mScrollHint == AsyncListUtil.ViewCallback.HINT_SCROLL_ASC
+                    : mScrollHint == AsyncListUtil.ViewCallback.HINT_SCROLL_DESC;
+            return behind ? BEHIND + distance : distance;
+        }
+
+        private int poll() {
+            final int position = mPositions[0];
+            mPendingCount--;
+            mPositions[0] = mPositions[mPendingCount];
+            mPriorities[0] = mPriorities[mPendingCount];
+            siftDown(0);
+            return position;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                final int parent = (index - 1) / 2;
+                if (mPriorities[parent] <= mPriorities[index]) {
+                    return;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                final int left = index * 2 + 1;
+                if (left >= mPendingCount) {
+                    return;
+                }
+                int smallest = left;
+                if (left + 1 < mPendingCount && mPriorities[left + 1] < mPriorities[left]) {
+                    smallest = left + 1;
+                }
+                if (mPriorities[index] <= mPriorities[smallest]) {
+                    return;
+                }
+                swap(index, smallest);
+                index = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            final int position = mPositions[i];
+            mPositions[i] = mPositions[j];
+            mPositions[j] = position;
+            final long priority = mPriorities[i];
+            mPriorities[i] = mPriorities[j];
+            mPriorities[j] = priority;
+        }
+
+        private void ensureCapacity(int count) {
+            if (count <= mPositions.length) {
+                return;
+            }
+            final int capacity = Math.max(count, mPositions.length * 2);
+            mPositions = Arrays.copyOf(mPositions, capacity);
+            mPriorities = Arrays.copyOf(mPriorities, capacity);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.recyclerview.widget;
+
+/**
+ * Log-scale histogram of durations, used to estimate how long work like binding a ViewHolder is
+ * going to take.
+ * <p>
+ * Bucket {@code i} holds samples in {@code [2^i, 2^(i+1))} microseconds; the last bucket holds
+ * everything longer. Each bucket also keeps the sum of its samples, so percentiles resolve to the
+ * mean of the bucket they fall in rather than its (up to 2x larger) upper bound.
+ * <p>
+ * Once {@link #MAX_SAMPLES} samples are recorded all counts are halved, so older samples fade
+ * out and the histogram follows the adapter when its items change in cost.
+ */
+final class CostHistogram {
+    static final int BUCKET_COUNT = 20;
+    static final int MAX_SAMPLES = 128;
+
+    private final int[] mCounts = new int[BUCKET_COUNT];
+    private final long[] mSumsNs = new long[BUCKET_COUNT];
+    private int mTotalCount;
+
+    void record(long durationNs) {
+        if (durationNs < 0) {
+            return;
+        }
+        final int bucket = bucketFor(durationNs);
+        mCounts[bucket]++;
+        mSumsNs[bucket] += durationNs;
+        mTotalCount++;
+        if (mTotalCount >= MAX_SAMPLES) {
+            decay();
+        }
+    }
+
+    int getSampleCount() {
+        return mTotalCount;
+    }
+
+    /**
+     * Returns the estimated duration below which the given fraction of samples fall, or 0 if
+     * nothing has been recorded yet.
+     *
+     * @param percentile Fraction of samples, in {@code [0, 1]}.
+     */
+    long getPercentileNs(float percentile) {
+        if (mTotalCount == 0) {
+            return 0;
+        }
+        final int target = Math.max(1, (int) Math.ceil(mTotalCount * percentile));
+        int seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mCounts[i];
+            if (seen >= target) {
+                return mSumsNs[i] / mCounts[i];
+            }
+        }
+        return mSumsNs[BUCKET_COUNT - 1] / Math.max(1, mCounts[BUCKET_COUNT - 1]);
+    }
+
+    /**
+     * Returns the number of samples recorded in the given bucket.
+     */
+    int getBucketCount(int bucket) {
+        return mCounts[bucket];
+    }
+
+    void clear() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts[i] = 0;
+            mSumsNs[i] = 0;
+        }
+        mTotalCount = 0;
+    }
+
+    private void decay() {
+        mTotalCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            final int count = mCounts[i];
+            if (count == 0) {
+                continue;
+            }
+            final int halved = count / 2;
+            // keep the bucket mean while dropping half of its samples
+            mSumsNs[i] = halved == 0 ? 0 : mSumsNs[i] / count * halved;
+            mCounts[i] = halved;
+            mTotalCount += halved;
+        }
+    }
+
+    static int bucketFor(long durationNs) {
+        final long micros = durationNs / 1000;
+        if (micros <= 0) {
+            return 0;
+        }
+        final int log2 = 63 - Long.numberOfLeadingZeros(micros);
+        return Math.min(log2, BUCKET_COUNT - 1);
+    }
+}
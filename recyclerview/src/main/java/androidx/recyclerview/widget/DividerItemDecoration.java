@@ -19,9 +19,13 @@ package androidx.recyclerview.widget;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.os.Build;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.View;
 import android.widget.LinearLayout;
 
@@ -61,6 +65,67 @@ public class DividerItemDecoration extends RecyclerView.ItemDecoration {
 
     private final Rect mBounds = new Rect();
 
+    private static final class TypeRule {
+        boolean mSkipAfter;
+        boolean mSkipBefore;
+        int mInsetStart;
+        int mInsetEnd;
+    }
+
+    private final SparseArray<TypeRule> mTypeRules = new SparseArray<>();
+
+    // Whether an item gets a divider depends on the type of the next item when a rule skips
+    // dividers before a type, so adapter updates invalidate the insets of all items then.
+    private RecyclerView mObservedParent;
+    private RecyclerView.Adapter<?> mObservedAdapter;
+    private final RecyclerView.AdapterDataObserver mAdapterObserver =
+            new RecyclerView.AdapterDataObserver() {
+                @Override
+                public void onChanged() {
+                    onAdapterDataChanged();
+                }
+
+                @Override
+                public void onItemRangeChanged(int positionStart, int itemCount) {
+                    onAdapterDataChanged();
+                }
+
+                @Override
+                public void onItemRangeInserted(int positionStart, int itemCount) {
+                    onAdapterDataChanged();
+                }
+
+                @Override
+                public void onItemRangeRemoved(int positionStart, int itemCount) {
+                    onAdapterDataChanged();
+                }
+
+                @Override
+                public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                    onAdapterDataChanged();
+                }
+            };
+
+    private boolean mBatchedDrawing = false;
+    private final Paint mPaint = new Paint();
+    // Line end points for Canvas#drawLines, four floats per divider.
+    private float[] mLines = new float[64];
+
+    // Children and their layout positions the divider geometry was computed for.
+    private View[] mCachedChildren = new View[16];
+    private int[] mCachedPositions = new int[16];
+    private int mCachedChildCount;
+    private int mCachedItemCount;
+    private boolean mGeometryValid = false;
+
+    // Children that get a divider, where it ends relative to their bottom (right for HORIZONTAL),
+    // and its insets.
+    private View[] mDividerViews = new View[16];
+    private int[] mDividerEndOffsets = new int[16];
+    private int[] mInsetStarts = new int[16];
+    private int[] mInsetEnds = new int[16];
+    private int mDividerCount;
+
     /**
      * Creates a divider {@link RecyclerView.ItemDecoration} that can be used with a
      * {@link LinearLayoutManager}.
@@ -91,6 +156,7 @@ public class DividerItemDecoration extends RecyclerView.ItemDecoration {
                     "Invalid orientation. It should be either HORIZONTAL or VERTICAL");
         }
         mOrientation = orientation;
+        mGeometryValid = false;
     }
 
     /**
@@ -103,6 +169,7 @@ public class DividerItemDecoration extends RecyclerView.ItemDecoration {
             throw new IllegalArgumentException("Drawable cannot be null.");
         }
         mDivider = drawable;
+        mGeometryValid = false;
     }
 
     /**
@@ -113,11 +180,71 @@ public class DividerItemDecoration extends RecyclerView.ItemDecoration {
         return mDivider;
     }
 
+    /**
+     * Sets per view type rules for the dividers below (or, for {@link #HORIZONTAL}, after) items
+     * of the given view type.
+     * <p>
+     * Insets shorten the divider from the start and end of the list's cross axis, for example to
+     * align it with the text of items that have an icon. They are relative to the layout
+     * direction in {@link #VERTICAL} orientation, and from the top and bottom in
+     * {@link #HORIZONTAL} orientation.
+     * <p>
+     * Items that get no divider get no offset for it either.
+     *
+     * @param viewType The view type of the items the rule applies to.
+     * @param skipAfter True to draw no divider after items of this type, such as subheaders.
+     * @param skipBefore True to draw no divider before items of this type, so that the previous
+     *                   item has none.
+     * @param insetStart Distance from the start of the divider to the start of the list.
+     * @param insetEnd Distance from the end of the divider to the end of the list.
+     */
+    public void setViewTypeRule(int viewType, boolean skipAfter, boolean skipBefore,
+            int insetStart, int insetEnd) {
+        TypeRule rule = mTypeRules.get(viewType);
+        if (rule == null) {
+            rule = new TypeRule();
+            mTypeRules.put(viewType, rule);
+        }
+        rule.mSkipAfter = skipAfter;
+        rule.mSkipBefore = skipBefore;
+        rule.mInsetStart = insetStart;
+        rule.mInsetEnd = insetEnd;
+        mGeometryValid = false;
+    }
+
+    /**
+     * Removes the rule set by {@link #setViewTypeRule(int, boolean, boolean, int, int)} for the
+     * given view type.
+     */
+    public void clearViewTypeRule(int viewType) {
+        mTypeRules.remove(viewType);
+        mGeometryValid = false;
+    }
+
+    /**
+     * Sets whether all dividers are drawn with a single {@link Canvas#drawLines} call instead of
+     * drawing the divider drawable once per item.
+     * <p>
+     * This only applies on API 24 and above if the divider is a {@link GradientDrawable} with a
+     * solid color and a size, since the dividers are drawn as lines of its color and of its
+     * intrinsic thickness. Other drawables are drawn once per item as usual.
+     *
+     * @param enabled True to batch the dividers into one draw call.
+     */
+    public void setBatchedDrawingEnabled(boolean enabled) {
+        mBatchedDrawing = enabled;
+    }
+
+    public boolean isBatchedDrawingEnabled() {
+        return mBatchedDrawing;
+    }
+
     @Override
     public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
         if (parent.getLayoutManager() == null || mDivider == null) {
             return;
         }
+        ensureGeometry(parent);
         if (mOrientation == VERTICAL) {
             drawVertical(c, parent);
         } else {
@@ -139,16 +266,27 @@ public class DividerItemDecoration extends RecyclerView.ItemDecoration {
             left = 0;
             right = parent.getWidth();
         }
-
-        final int childCount = mAllowDividerAfterLastItem ?
-                parent.getChildCount() : parent.getChildCount() - 1;
-        for (int i = 0; i < childCount; i++) {
-            final View child = parent.getChildAt(i);
-            parent.getDecoratedBoundsWithMargins(child, mBounds);
-            final int bottom = mBounds.bottom + Math.round(child.getTranslationY());
-            final int top = bottom - mDivider.getIntrinsicHeight();
-            mDivider.setBounds(left, top, right, bottom);
-            mDivider.draw(canvas);
+        final boolean rtl = parent.getLayoutDirection() == View.LAYOUT_DIRECTION_RTL;
+        final int thickness = mDivider.getIntrinsicHeight();
+        final boolean batched = canDrawBatched();
+        int lineCount = 0;
+        for (int i = 0; i < mDividerCount; i++) {
+            final View child = mDividerViews[i];
+            final int bottom = child.getBottom() + mDividerEndOffsets[i]
+                    + Math.round(child.getTranslationY());
+            final int dividerLeft = left + (rtl ? mInsetEnds[i] : mInsetStarts[i]);
+            final int dividerRight = right - (rtl ? mInsetStarts[i] : mInsetEnds[i]);
+            if (batched) {
+                final float y = bottom - thickness / 2f;
+                lineCount = addLine(lineCount, dividerLeft, y, dividerRight, y);
+            } else {
+                mDivider.setBounds(dividerLeft, bottom - thickness, dividerRight, bottom);
+                mDivider.draw(canvas);
+            }
+        }
+        if (lineCount > 0) {
+            mPaint.setStrokeWidth(thickness);
+            canvas.drawLines(mLines, 0, lineCount * 4, mPaint);
         }
         canvas.restore();
     }
@@ -167,17 +305,147 @@ public class DividerItemDecoration extends RecyclerView.ItemDecoration {
             top = 0;
             bottom = parent.getHeight();
         }
+        final int thickness = mDivider.getIntrinsicWidth();
+        final boolean batched = canDrawBatched();
+        int lineCount = 0;
+        for (int i = 0; i < mDividerCount; i++) {
+            final View child = mDividerViews[i];
+            final int right = child.getRight() + mDividerEndOffsets[i]
+                    + Math.round(child.getTranslationX());
+            final int dividerTop = top + mInsetStarts[i];
+            final int dividerBottom = bottom - mInsetEnds[i];
+            if (batched) {
+                final float x = right - thickness / 2f;
+                lineCount = addLine(lineCount, x, dividerTop, x, dividerBottom);
+            } else {
+                mDivider.setBounds(right - thickness, dividerTop, right, dividerBottom);
+                mDivider.draw(canvas);
+            }
+        }
+        if (lineCount > 0) {
+            mPaint.setStrokeWidth(thickness);
+            canvas.drawLines(mLines, 0, lineCount * 4, mPaint);
+        }
+        canvas.restore();
+    }
+
+    private int addLine(int lineCount, float startX, float startY, float stopX, float stopY) {
+        final int index = lineCount * 4;
+        if (index + 4 > mLines.length) {
+            final float[] lines = new float[mLines.length * 2];
+            System.arraycopy(mLines, 0, lines, 0, index);
+            mLines = lines;
+        }
+        mLines[index] = startX;
+        mLines[index + 1] = startY;
+        mLines[index + 2] = stopX;
+        mLines[index + 3] = stopY;
+        return lineCount + 1;
+    }
+
+    /**
+     * Returns true if the dividers can be drawn as lines, after setting the paint color.
+     */
+    private boolean canDrawBatched() {
+        if (!mBatchedDrawing) {
+            return false;
+        }
+        // ColorDrawables have no intrinsic size, so only sized GradientDrawables qualify
+        if (Build.VERSION.SDK_INT < 24 || !(mDivider instanceof GradientDrawable)
+                || ((GradientDrawable) mDivider).getColor() == null) {
+            return false;
+        }
+        final int color = ((GradientDrawable) mDivider).getColor().getDefaultColor();
+        final int thickness = mOrientation == VERTICAL
+                ? mDivider.getIntrinsicHeight() : mDivider.getIntrinsicWidth();
+        if (thickness <= 0) {
+            return false;
+        }
+        mPaint.setColor(color);
+        return true;
+    }
 
+    /**
+     * Finds the children that get a divider and the divider insets, unless the children and their
+     * positions are the same as the last time, which they are between layout passes. Also records
+     * where the divider ends relative to the child, so that drawing a frame only reads the child
+     * position.
+     */
+    private void ensureGeometry(RecyclerView parent) {
+        observeAdapter(parent);
         final int childCount = parent.getChildCount();
+        final RecyclerView.Adapter<?> adapter = parent.getAdapter();
+        final int itemCount = adapter == null ? 0 : adapter.getItemCount();
+        if (mGeometryValid && childCount == mCachedChildCount && itemCount == mCachedItemCount) {
+            boolean same = true;
+            for (int i = 0; i < childCount && same; i++) {
+                final View child = parent.getChildAt(i);
+                same = child == mCachedChildren[i]
+                        && parent.getChildLayoutPosition(child) == mCachedPositions[i];
+            }
+            if (same) {
+                return;
+            }
+        }
+        mGeometryValid = true;
+        mCachedChildCount = childCount;
+        mCachedItemCount = itemCount;
+        if (mCachedChildren.length < childCount) {
+            final int capacity = Math.max(childCount, mCachedChildren.length * 2);
+            mCachedChildren = new View[capacity];
+            mCachedPositions = new int[capacity];
+            mDividerViews = new View[capacity];
+            mDividerEndOffsets = new int[capacity];
+            mInsetStarts = new int[capacity];
+            mInsetEnds = new int[capacity];
+        }
+        final int dividedCount = mOrientation == VERTICAL && !mAllowDividerAfterLastItem
+                ? childCount - 1 : childCount;
+        final int oldDividerCount = mDividerCount;
+        mDividerCount = 0;
         for (int i = 0; i < childCount; i++) {
             final View child = parent.getChildAt(i);
-            parent.getLayoutManager().getDecoratedBoundsWithMargins(child, mBounds);
-            final int right = mBounds.right + Math.round(child.getTranslationX());
-            final int left = right - mDivider.getIntrinsicWidth();
-            mDivider.setBounds(left, top, right, bottom);
-            mDivider.draw(canvas);
+            mCachedChildren[i] = child;
+            mCachedPositions[i] = parent.getChildLayoutPosition(child);
+            if (i >= dividedCount) {
+                continue;
+            }
+            TypeRule rule = null;
+            if (mTypeRules.size() > 0) {
+                final RecyclerView.ViewHolder holder = parent.getChildViewHolder(child);
+                rule = mTypeRules.get(holder.getItemViewType());
+                if (isSkipped(holder, rule, adapter, itemCount)) {
+                    continue;
+                }
+            }
+            parent.getDecoratedBoundsWithMargins(child, mBounds);
+            mDividerViews[mDividerCount] = child;
+            mDividerEndOffsets[mDividerCount] = mOrientation == VERTICAL
+                    ? mBounds.bottom - child.getBottom() : mBounds.right - child.getRight();
+            mInsetStarts[mDividerCount] = rule == null ? 0 : rule.mInsetStart;
+            mInsetEnds[mDividerCount] = rule == null ? 0 : rule.mInsetEnd;
+            mDividerCount++;
         }
-        canvas.restore();
+        // don't keep detached children alive
+        for (int i = childCount; i < mCachedChildren.length && mCachedChildren[i] != null; i++) {
+            mCachedChildren[i] = null;
+        }
+        for (int i = mDividerCount; i < oldDividerCount; i++) {
+            mDividerViews[i] = null;
+        }
+    }
+
+    private boolean isSkipped(RecyclerView.ViewHolder holder, @Nullable TypeRule rule,
+            @Nullable RecyclerView.Adapter<?> adapter, int itemCount) {
+        if (rule != null && rule.mSkipAfter) {
+            return true;
+        }
+        final int position = holder.getAbsoluteAdapterPosition();
+        if (adapter == null || position == RecyclerView.NO_POSITION || position + 1 >= itemCount) {
+            return false;
+        }
+        final TypeRule nextRule = mTypeRules.get(adapter.getItemViewType(position + 1));
+        return nextRule != null && nextRule.mSkipBefore;
     }
 
     @Override
@@ -187,6 +455,16 @@ public class DividerItemDecoration extends RecyclerView.ItemDecoration {
             outRect.set(0, 0, 0, 0);
             return;
         }
+        if (mTypeRules.size() > 0) {
+            observeAdapter(parent);
+            final RecyclerView.ViewHolder holder = parent.getChildViewHolder(view);
+            final RecyclerView.Adapter<?> adapter = parent.getAdapter();
+            if (holder != null && isSkipped(holder, mTypeRules.get(holder.getItemViewType()),
+                    adapter, adapter == null ? 0 : adapter.getItemCount())) {
+                outRect.set(0, 0, 0, 0);
+                return;
+            }
+        }
         if (mOrientation == VERTICAL) {
             outRect.set(0, 0, 0, mDivider.getIntrinsicHeight());
         } else {
@@ -194,7 +472,37 @@ public class DividerItemDecoration extends RecyclerView.ItemDecoration {
         }
     }
 
+    private void observeAdapter(RecyclerView parent) {
+        final RecyclerView.Adapter<?> adapter = parent.getAdapter();
+        mObservedParent = parent;
+        if (adapter == mObservedAdapter) {
+            return;
+        }
+        if (mObservedAdapter != null) {
+            mObservedAdapter.unregisterAdapterDataObserver(mAdapterObserver);
+        }
+        mObservedAdapter = adapter;
+        if (adapter != null) {
+            adapter.registerAdapterDataObserver(mAdapterObserver);
+        }
+    }
+
+    void onAdapterDataChanged() {
+        mGeometryValid = false;
+        if (mObservedParent == null) {
+            return;
+        }
+        for (int i = 0; i < mTypeRules.size(); i++) {
+            if (mTypeRules.valueAt(i).mSkipBefore) {
+                // the item before an inserted or changed one may gain or lose its divider
+                mObservedParent.invalidateItemDecorations();
+                return;
+            }
+        }
+    }
+
     public void seslSetAllowDividerAfterLastItem(boolean disableDividerAfterLastItem) {
         mAllowDividerAfterLastItem = disableDividerAfterLastItem;
+        mGeometryValid = false;
     }
 }
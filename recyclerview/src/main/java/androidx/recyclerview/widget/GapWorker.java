@@ -16,6 +16,7 @@
 package androidx.recyclerview.widget;
 
 import android.annotation.SuppressLint;
+import android.view.Choreographer;
 import android.view.View;
 
 import androidx.annotation.Nullable;
@@ -35,6 +36,110 @@ final class GapWorker implements Runnable {
     long mPostTimeNs;
     long mFrameIntervalNs;
 
+    final FrameTracker mFrameTracker = new FrameTracker();
+
+    /**
+     * Follows the Choreographer vsync while adaptive prefetch is in use, see
+     * {@link RecyclerView#setAdaptivePrefetchEnabled(boolean)}.
+     * <p>
+     * Besides measuring the actual frame interval, it keeps a safety margin that is taken off the
+     * prefetch deadline and a prefetch depth used during flings. Both react to how the previous
+     * prefetch pass went: finishing late or making the next frame skip a vsync grows the margin
+     * and drops the depth back to one, while finishing with plenty of time left lets the depth
+     * grow again.
+     * <p>
+     * The interval is only measured between back-to-back frames: the callback keeps re-posting
+     * itself for a few frames after the last prefetch request, and the first frame after the
+     * chain was broken only records its vsync, since the delta to the previous one spans the
+     * whole time no frame was tracked.
+     */
+    static class FrameTracker implements Choreographer.FrameCallback {
+        static final int MAX_PREFETCH_DEPTH = 4;
+        // Frame deltas this many times longer than expected are considered skipped frames
+        private static final int MAX_REJECTED_INTERVALS = 8;
+        // Frames to keep following the vsync after the last prefetch request
+        private static final int TRACKED_FRAMES_AFTER_REQUEST = 4;
+
+        long mLastVsyncNs;
+        long mFrameIntervalNs;
+        long mSafetyMarginNs;
+        int mPrefetchDepth = 1;
+        boolean mPrefetchedInLastFrame;
+        private int mRejectedIntervalCount;
+        private int mFramesToTrack;
+        private boolean mCallbackPosted;
+        // True if the pending callback was posted from the previous frame's callback
+        private boolean mChained;
+
+        void ensureTracking() {
+            mFramesToTrack = TRACKED_FRAMES_AFTER_REQUEST;
+            if (!mCallbackPosted) {
+                mCallbackPosted = true;
+                mChained = false;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            final long deltaNs = frameTimeNanos - mLastVsyncNs;
+            if (mChained && mLastVsyncNs != 0 && deltaNs > 0) {
+                if (mFrameIntervalNs == 0 || deltaNs < mFrameIntervalNs * 3 / 2
+                        || mRejectedIntervalCount >= MAX_REJECTED_INTERVALS) {
+                    // consecutive frame, or the refresh rate dropped for good
+                    mFrameIntervalNs = mFrameIntervalNs == 0
+                            || mRejectedIntervalCount >= MAX_REJECTED_INTERVALS
+                            ? deltaNs : (mFrameIntervalNs * 3 + deltaNs) / 4;
+                    mRejectedIntervalCount = 0;
+                } else {
+                    mRejectedIntervalCount++;
+                    if (mPrefetchedInLastFrame && deltaNs < mFrameIntervalNs * 4) {
+                        // a frame was skipped right after prefetching into it
+                        onPrefetchOverran();
+                    }
+                }
+            }
+            mPrefetchedInLastFrame = false;
+            mLastVsyncNs = frameTimeNanos;
+
+            if (--mFramesToTrack > 0) {
+                mChained = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            } else {
+                mCallbackPosted = false;
+                mChained = false;
+            }
+        }
+
+        /**
+         * Returns the deadline for prefetch work started at {@code nowNs}, or 0 if the last vsync
+         * seen is too old to predict the next one.
+         */
+        long getNextFrameDeadlineNs(long nowNs) {
+            if (mLastVsyncNs == 0 || mFrameIntervalNs == 0
+                    || nowNs - mLastVsyncNs > mFrameIntervalNs) {
+                return 0;
+            }
+            return mLastVsyncNs + mFrameIntervalNs - mSafetyMarginNs;
+        }
+
+        void onPrefetchFinished(long deadlineNs, long endNs) {
+            mPrefetchedInLastFrame = true;
+            if (endNs > deadlineNs) {
+                onPrefetchOverran();
+            } else if (deadlineNs - endNs > mFrameIntervalNs / 4) {
+                mSafetyMarginNs -= mSafetyMarginNs / 4;
+                mPrefetchDepth = Math.min(mPrefetchDepth + 1, MAX_PREFETCH_DEPTH);
+            }
+        }
+
+        private void onPrefetchOverran() {
+            mSafetyMarginNs = Math.min(mSafetyMarginNs + mFrameIntervalNs / 8,
+                    mFrameIntervalNs / 2);
+            mPrefetchDepth = 1;
+        }
+    }
+
     static class Task {
         public boolean immediate;
         public int viewVelocity;
@@ -58,6 +163,9 @@ final class GapWorker implements Runnable {
      */
     private ArrayList<Task> mTasks = new ArrayList<>();
 
+    // Most landing positions of a fling prefetched per pass, to bound the view cache growth
+    static final int MAX_FLING_PREFETCH_COUNT = 12;
+
     /**
      * Prefetch information associated with a specific RecyclerView.
      */
@@ -76,6 +184,15 @@ final class GapWorker implements Runnable {
         }
 
         void collectPrefetchPositionsFromView(RecyclerView view, boolean nested) {
+            collectPrefetchPositionsFromView(view, nested, 1);
+        }
+
+        /**
+         * @param depth How many times the positions collected by the LayoutManager should be
+         *              prefetched ahead, in the direction of the scroll. Only applies to momentum
+         *              based prefetch.
+         */
+        void collectPrefetchPositionsFromView(RecyclerView view, boolean nested, int depth) {
             mCount = 0;
             if (mPrefetchArray != null) {
                 Arrays.fill(mPrefetchArray, -1);
@@ -96,6 +213,13 @@ final class GapWorker implements Runnable {
                     if (!view.hasPendingAdapterUpdates()) {
                         layout.collectAdjacentPrefetchPositions(mPrefetchDx, mPrefetchDy,
                                 view.mState, this);
+                        if (depth > 1) {
+                            extendAdjacentPrefetchPositions(view, depth);
+                        }
+                        if (view.mFlingPrefetchEnabled
+                                && view.getScrollState() == RecyclerView.SCROLL_STATE_SETTLING) {
+                            addFlingLandingPositions(view);
+                        }
                     }
                 }
 
@@ -107,6 +231,149 @@ final class GapWorker implements Runnable {
             }
         }
 
+        /**
+         * Repeats the positions collected for the next row or column {@code depth - 1} more times
+         * further along the scroll, so that a fling can be prefetched more than one item ahead
+         * without each LayoutManager having to support it.
+         */
+        private void extendAdjacentPrefetchPositions(RecyclerView view, int depth) {
+            final int collectedCount = mCount;
+            final int childCount = view.mChildHelper.getChildCount();
+            if (collectedCount == 0 || childCount == 0) {
+                return;
+            }
+            int minPosition = Integer.MAX_VALUE;
+            int maxPosition = Integer.MIN_VALUE;
+            int maxDistance = 0;
+            for (int i = 0; i < collectedCount * 2; i += 2) {
+                minPosition = Math.min(minPosition, mPrefetchArray[i]);
+                maxPosition = Math.max(maxPosition, mPrefetchArray[i]);
+                maxDistance = Math.max(maxDistance, mPrefetchArray[i + 1]);
+            }
+            final int anchorPosition = view.getChildLayoutPosition(
+                    view.mChildHelper.getChildAt(0));
+            if (anchorPosition == RecyclerView.NO_POSITION) {
+                return;
+            }
+            // the collected row is past the attached children in the direction items are laid out
+            final int direction = minPosition > anchorPosition ? 1 : -1;
+            final int mainAxisSize = Math.abs(mPrefetchDy) >= Math.abs(mPrefetchDx)
+                    ? view.getHeight() : view.getWidth();
+            final int rowExtent = Math.max(1, mainAxisSize * collectedCount / childCount);
+            final int itemCount = view.mState.getItemCount();
+            int position = direction > 0 ? maxPosition : minPosition;
+            final int extraCount = (depth - 1) * collectedCount;
+            for (int i = 0; i < extraCount; i++) {
+                position += direction;
+                if (position < 0 || position >= itemCount) {
+                    break;
+                }
+                addPosition(position, maxDistance + (i / collectedCount + 1) * rowExtent);
+            }
+        }
+
+        /**
+         * Starts the background work the adapter declared for the collected positions: two-phase
+         * binds, if the adapter opted in, and text to precompute.
+         */
+        void prepareCollectedPositions(RecyclerView view) {
+            final RecyclerView.Adapter<?> adapter = view.mAdapter;
+            if (adapter == null || mCount == 0 || view.mAdapterHelper.hasPendingUpdates()) {
+                return;
+            }
+            final boolean prepareBinds = adapter.isBindPreparationEnabled();
+            if (prepareBinds) {
+                view.mBindPreparer.onPrefetchPassStarted();
+            }
+            final RecyclerView.TextPrefetchRegistry textRegistry = view.getTextPrefetcher();
+            final int itemCount = adapter.getItemCount();
+            for (int i = 0; i < mCount * 2; i += 2) {
+                final int position = view.mAdapterHelper.findPositionOffset(mPrefetchArray[i]);
+                if (position >= 0 && position < itemCount) {
+                    if (prepareBinds) {
+                        view.mBindPreparer.request(adapter, position);
+                    }
+                    adapter.onPrefetchText(position, textRegistry);
+                }
+            }
+        }
+
+        /**
+         * Adds the positions expected to be visible where the current fling ends, see
+         * {@link RecyclerView#setFlingPrefetchEnabled(boolean)}.
+         * <p>
+         * The OverScroller knows how far the fling is going to go. That distance is turned into
+         * positions with the average extent of the attached children along the scroll axis, which
+         * also accounts for several items sharing a row in grids. The landing positions get the
+         * remaining fling distance as their pixel distance, so they are only prefetched after the
+         * adjacent positions, and they are dropped while the fling is too short for its end to
+         * be past them.
+         */
+        private void addFlingLandingPositions(RecyclerView view) {
+            final RecyclerView.LayoutManager layout = view.mLayout;
+            final boolean vertical = layout.canScrollVertically();
+            if (!vertical && !layout.canScrollHorizontally()) {
+                return;
+            }
+            final int remaining = view.mViewFlinger.getRemainingFlingDistance(vertical);
+            final int mainAxisSize = vertical ? view.getHeight() : view.getWidth();
+            if (mainAxisSize <= 0 || Math.abs(remaining) <= mainAxisSize) {
+                // the fling ends close to the attached children, adjacent prefetch covers it
+                return;
+            }
+            final int childCount = view.mChildHelper.getChildCount();
+            int minPosition = Integer.MAX_VALUE;
+            int maxPosition = Integer.MIN_VALUE;
+            int minStart = Integer.MAX_VALUE;
+            int maxEnd = Integer.MIN_VALUE;
+            int firstPosition = RecyclerView.NO_POSITION;
+            int lastPosition = RecyclerView.NO_POSITION;
+            for (int i = 0; i < childCount; i++) {
+                final View child = view.mChildHelper.getChildAt(i);
+                final int position = view.getChildLayoutPosition(child);
+                if (position == RecyclerView.NO_POSITION) {
+                    continue;
+                }
+                final int start = vertical
+                        ? layout.getDecoratedTop(child) : layout.getDecoratedLeft(child);
+                final int end = vertical
+                        ? layout.getDecoratedBottom(child) : layout.getDecoratedRight(child);
+                if (start < minStart) {
+                    minStart = start;
+                    firstPosition = position;
+                }
+                if (end > maxEnd) {
+                    maxEnd = end;
+                    lastPosition = position;
+                }
+                minPosition = Math.min(minPosition, position);
+                maxPosition = Math.max(maxPosition, position);
+            }
+            if (firstPosition == RecyclerView.NO_POSITION || maxEnd <= minStart) {
+                return;
+            }
+            final float positionsPerPixel = (float) (maxPosition - minPosition + 1)
+                    / (maxEnd - minStart);
+            // positions grow along the scroll axis unless the layout is reversed
+            final boolean ascending = lastPosition >= firstPosition;
+            final int direction = (remaining > 0) == ascending ? 1 : -1;
+            final int visibleCount = Math.min(MAX_FLING_PREFETCH_COUNT,
+                    Math.max(1, Math.round(mainAxisSize * positionsPerPixel)));
+            final int skipped = Math.round((Math.abs(remaining) - mainAxisSize)
+                    * positionsPerPixel);
+            int position = direction > 0 ? maxPosition + 1 + skipped : minPosition - 1 - skipped;
+            final int itemCount = view.mState.getItemCount();
+            final int distance = Math.abs(remaining);
+            for (int i = 0; i < visibleCount; i++, position += direction) {
+                if (position < 0 || position >= itemCount) {
+                    break;
+                }
+                if (!lastPrefetchIncludedPosition(position)) {
+                    addPosition(position, distance);
+                }
+            }
+        }
+
         @Override
         public void addPosition(int layoutPosition, int pixelDistance) {
             if (layoutPosition < 0) {
@@ -182,6 +449,9 @@ final class GapWorker implements Runnable {
                 mPostTimeNs = recyclerView.getNanoTime();
                 recyclerView.post(this);
             }
+            if (recyclerView.mAdaptivePrefetchEnabled) {
+                mFrameTracker.ensureTracking();
+            }
         }
 
         recyclerView.mPrefetchRegistry.setPrefetchVector(prefetchDx, prefetchDy);
@@ -219,7 +489,11 @@ final class GapWorker implements Runnable {
         for (int i = 0; i < viewCount; i++) {
             RecyclerView view = mRecyclerViews.get(i);
             if (view.getWindowVisibility() == View.VISIBLE) {
-                view.mPrefetchRegistry.collectPrefetchPositionsFromView(view, false);
+                final int depth = view.mAdaptivePrefetchEnabled
+                        && view.getScrollState() == RecyclerView.SCROLL_STATE_SETTLING
+                        ? mFrameTracker.mPrefetchDepth : 1;
+                view.mPrefetchRegistry.collectPrefetchPositionsFromView(view, false, depth);
+                view.mPrefetchRegistry.prepareCollectedPositions(view);
                 totalTaskCount += view.mPrefetchRegistry.mCount;
             }
         }
@@ -323,6 +597,7 @@ final class GapWorker implements Runnable {
         // do nested prefetch!
         final LayoutPrefetchRegistryImpl innerPrefetchRegistry = innerView.mPrefetchRegistry;
         innerPrefetchRegistry.collectPrefetchPositionsFromView(innerView, true);
+        innerPrefetchRegistry.prepareCollectedPositions(innerView);
 
         if (innerPrefetchRegistry.mCount != 0) {
             try {
@@ -382,10 +657,14 @@ final class GapWorker implements Runnable {
             // valid in animation/input callbacks, so query it here to be safe.
             final int size = mRecyclerViews.size();
             long latestFrameVsyncMs = 0;
+            boolean adaptive = false;
+            RecyclerView clockView = null;
             for (int i = 0; i < size; i++) {
                 RecyclerView view = mRecyclerViews.get(i);
                 if (view.getWindowVisibility() == View.VISIBLE) {
                     latestFrameVsyncMs = Math.max(view.getDrawingTime(), latestFrameVsyncMs);
+                    adaptive |= view.mAdaptivePrefetchEnabled;
+                    clockView = view;
                 }
             }
 
@@ -394,10 +673,21 @@ final class GapWorker implements Runnable {
                 return;
             }
 
-            long nextFrameNs = TimeUnit.MILLISECONDS.toNanos(latestFrameVsyncMs) + mFrameIntervalNs;
+            long nextFrameNs = 0;
+            if (adaptive) {
+                nextFrameNs = mFrameTracker.getNextFrameDeadlineNs(clockView.getNanoTime());
+            }
+            if (nextFrameNs == 0) {
+                adaptive = false;
+                nextFrameNs = TimeUnit.MILLISECONDS.toNanos(latestFrameVsyncMs) + mFrameIntervalNs;
+            }
 
             prefetch(nextFrameNs);
 
+            if (adaptive) {
+                mFrameTracker.onPrefetchFinished(nextFrameNs, clockView.getNanoTime());
+            }
+
             // TODO: consider rescheduling self, if there's more work to do
         } finally {
             mPostTimeNs = 0;
@@ -113,6 +113,20 @@ public class GridLayoutManager extends LinearLayoutManager {
         super.setStackFromEnd(false);
     }
 
+    /**
+     * GridLayoutManager does not support the item extent cache, since its items share rows.
+     *
+     * @throws UnsupportedOperationException if enabled.
+     */
+    @Override
+    public void setItemExtentCacheEnabled(boolean enabled) {
+        if (enabled) {
+            throw new UnsupportedOperationException(
+                    "GridLayoutManager does not support the item extent cache.");
+        }
+        super.setItemExtentCacheEnabled(false);
+    }
+
     @Override
     public int getRowCountForAccessibility(RecyclerView.Recycler recycler,
             RecyclerView.State state) {
@@ -197,33 +211,28 @@ public class GridLayoutManager extends LinearLayoutManager {
 
     @Override
     public void onItemsAdded(RecyclerView recyclerView, int positionStart, int itemCount) {
-        mSpanSizeLookup.invalidateSpanIndexCache();
-        mSpanSizeLookup.invalidateSpanGroupIndexCache();
+        mSpanSizeLookup.onItemRangeInserted(positionStart, itemCount);
     }
 
     @Override
     public void onItemsChanged(RecyclerView recyclerView) {
-        mSpanSizeLookup.invalidateSpanIndexCache();
-        mSpanSizeLookup.invalidateSpanGroupIndexCache();
+        mSpanSizeLookup.onDataSetChanged();
     }
 
     @Override
     public void onItemsRemoved(RecyclerView recyclerView, int positionStart, int itemCount) {
-        mSpanSizeLookup.invalidateSpanIndexCache();
-        mSpanSizeLookup.invalidateSpanGroupIndexCache();
+        mSpanSizeLookup.onItemRangeRemoved(positionStart, itemCount);
     }
 
     @Override
     public void onItemsUpdated(RecyclerView recyclerView, int positionStart, int itemCount,
             Object payload) {
-        mSpanSizeLookup.invalidateSpanIndexCache();
-        mSpanSizeLookup.invalidateSpanGroupIndexCache();
+        mSpanSizeLookup.onItemRangeChanged(positionStart, itemCount);
     }
 
     @Override
     public void onItemsMoved(RecyclerView recyclerView, int from, int to, int itemCount) {
-        mSpanSizeLookup.invalidateSpanIndexCache();
-        mSpanSizeLookup.invalidateSpanGroupIndexCache();
+        mSpanSizeLookup.onItemRangeMoved(from, to, itemCount);
     }
 
     @Override
@@ -849,6 +858,8 @@ public class GridLayoutManager extends LinearLayoutManager {
         private boolean mCacheSpanIndices = false;
         private boolean mCacheSpanGroupIndices = false;
 
+        private SpanIndexTree mSpanIndexTree;
+
         /**
          * Returns the number of span occupied by the item at <code>position</code>.
          *
@@ -889,12 +900,53 @@ public class GridLayoutManager extends LinearLayoutManager {
             mCacheSpanGroupIndices = cacheSpanGroupIndices;
         }
 
+        /**
+         * Sets whether span indices and span group indices should be kept in a span index tree.
+         * By default this is disabled.
+         * <p>
+         * The tree remembers the span size of every position it has seen and answers
+         * {@link #getSpanIndex(int, int)} in constant time and {@link #getSpanGroupIndex(int, int)}
+         * in logarithmic time, so scrolling or jumping deep into very large grids with mixed span
+         * sizes doesn't walk the items before the target position again. Unlike the span index
+         * caches, it is not cleared when adapter changes occur: only the rows affected by the
+         * changed items are computed again.
+         * <p>
+         * The tree follows the default span assignment rules. It overrides
+         * {@link #setSpanIndexCacheEnabled(boolean)} and
+         * {@link #setSpanGroupIndexCacheEnabled(boolean)}, and must not be enabled when
+         * {@link #getSpanIndex(int, int)} or {@link #getSpanGroupIndex(int, int)} are overridden.
+         *
+         * @param enabled Whether span indices should be kept in a span index tree.
+         */
+        public void setSpanIndexTreeEnabled(boolean enabled) {
+            if (enabled) {
+                if (mSpanIndexTree == null) {
+                    mSpanIndexTree = new SpanIndexTree(this);
+                }
+            } else {
+                mSpanIndexTree = null;
+            }
+        }
+
+        /**
+         * Returns whether span indices are kept in a span index tree.
+         *
+         * @return True if span indices are kept in a span index tree.
+         * @see #setSpanIndexTreeEnabled(boolean)
+         */
+        public boolean isSpanIndexTreeEnabled() {
+            return mSpanIndexTree != null;
+        }
+
         /**
          * Clears the span index cache. GridLayoutManager automatically calls this method when
          * adapter changes occur.
          */
         public void invalidateSpanIndexCache() {
             mSpanIndexCache.clear();
+            if (mSpanIndexTree != null) {
+                mSpanIndexTree.clear();
+            }
         }
 
         /**
@@ -903,6 +955,46 @@ public class GridLayoutManager extends LinearLayoutManager {
          */
         public void invalidateSpanGroupIndexCache() {
             mSpanGroupIndexCache.clear();
+            if (mSpanIndexTree != null) {
+                mSpanIndexTree.clear();
+            }
+        }
+
+        void onDataSetChanged() {
+            invalidateSpanIndexCache();
+            invalidateSpanGroupIndexCache();
+        }
+
+        void onItemRangeInserted(int positionStart, int itemCount) {
+            if (mSpanIndexTree != null) {
+                mSpanIndexTree.onItemsAdded(positionStart, itemCount);
+            } else {
+                onDataSetChanged();
+            }
+        }
+
+        void onItemRangeRemoved(int positionStart, int itemCount) {
+            if (mSpanIndexTree != null) {
+                mSpanIndexTree.onItemsRemoved(positionStart, itemCount);
+            } else {
+                onDataSetChanged();
+            }
+        }
+
+        void onItemRangeChanged(int positionStart, int itemCount) {
+            if (mSpanIndexTree != null) {
+                mSpanIndexTree.onItemsChanged(positionStart, itemCount);
+            } else {
+                onDataSetChanged();
+            }
+        }
+
+        void onItemRangeMoved(int from, int to, int itemCount) {
+            if (mSpanIndexTree != null) {
+                mSpanIndexTree.onItemsMoved(from, to, itemCount);
+            } else {
+                onDataSetChanged();
+            }
         }
 
         /**
@@ -924,6 +1016,9 @@ public class GridLayoutManager extends LinearLayoutManager {
         }
 
         int getCachedSpanIndex(int position, int spanCount) {
+            if (mSpanIndexTree != null) {
+                return mSpanIndexTree.getSpanIndex(position, spanCount);
+            }
             if (!mCacheSpanIndices) {
                 return getSpanIndex(position, spanCount);
             }
@@ -937,6 +1032,9 @@ public class GridLayoutManager extends LinearLayoutManager {
         }
 
         int getCachedSpanGroupIndex(int position, int spanCount) {
+            if (mSpanIndexTree != null) {
+                return mSpanIndexTree.getSpanGroupIndex(position, spanCount);
+            }
             if (!mCacheSpanGroupIndices) {
                 return getSpanGroupIndex(position, spanCount);
             }
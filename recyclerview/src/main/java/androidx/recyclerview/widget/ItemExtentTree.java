@@ -0,0 +1,247 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.recyclerview.widget;
+
+import java.util.Arrays;
+
+/**
+ * Measured extent of every position of a list, for exact scroll offsets, see
+ * {@link LinearLayoutManager#setItemExtentCacheEnabled(boolean)}.
+ * <p>
+ * Extents are recorded as items are laid out. Positions that were never laid out count with the
+ * average of the measured extents, so offsets are estimates until every position before them was
+ * measured, and exact from then on. The measured extents and the number of measured positions
+ * are kept in Fenwick trees, so the offset of a position and the position at an offset take
+ * O(log n).
+ * <p>
+ * Adapter changes shift the extents with their items. The trees are rebuilt in O(n) on the next
+ * query after such a change.
+ */
+final class ItemExtentTree {
+    private static final int UNKNOWN = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Extent of each position, UNKNOWN if not measured.
+    private int[] mExtents = new int[INITIAL_CAPACITY];
+    private int mItemCount;
+
+    // Fenwick trees over the measured extents and the number of measured positions, 1-based.
+    private long[] mExtentTree = new long[INITIAL_CAPACITY + 1];
+    private int[] mMeasuredTree = new int[INITIAL_CAPACITY + 1];
+    private boolean mTreesValid = true;
+    private long mMeasuredSum;
+    private int mMeasuredCount;
+
+    /**
+     * Makes the tree cover the given number of positions. New positions are unknown.
+     */
+    void setItemCount(int itemCount) {
+        if (itemCount == mItemCount) {
+            return;
+        }
+        ensureCapacity(itemCount);
+        if (itemCount > mItemCount) {
+            Arrays.fill(mExtents, mItemCount, itemCount, UNKNOWN);
+        }
+        mItemCount = itemCount;
+        mTreesValid = false;
+    }
+
+    int getItemCount() {
+        return mItemCount;
+    }
+
+    void setExtent(int position, int extent) {
+        if (position < 0 || position >= mItemCount || extent < 0) {
+            return;
+        }
+        final int old = mExtents[position];
+        if (old == extent) {
+            return;
+        }
+        mExtents[position] = extent;
+        if (!mTreesValid) {
+            return;
+        }
+        if (old == UNKNOWN) {
+            add(position, extent, 1);
+        } else {
+            add(position, extent - old, 0);
+        }
+    }
+
+    boolean hasMeasuredExtents() {
+        ensureTrees();
+        return mMeasuredCount > 0;
+    }
+
+    /**
+     * Returns the distance from the start of the list to the start of the given position.
+     */
+    long getOffset(int position) {
+        ensureTrees();
+        position = Math.max(0, Math.min(position, mItemCount));
+        long sum = 0;
+        int measured = 0;
+        for (int i = position; i > 0; i -= i & -i) {
+            sum += mExtentTree[i];
+            measured += mMeasuredTree[i];
+        }
+        return sum + Math.round((double) (position - measured) * getAverageExtent());
+    }
+
+    /**
+     * Returns the length of the whole list.
+     */
+    long getTotal() {
+        return getOffset(mItemCount);
+    }
+
+    /**
+     * Returns the position covering the given distance from the start of the list.
+     */
+    int findPosition(long offset) {
+        ensureTrees();
+        if (mItemCount == 0) {
+            return RecyclerView.NO_POSITION;
+        }
+        final double average = getAverageExtent();
+        int position = 0;
+        double remaining = offset;
+        for (int step = Integer.highestOneBit(mItemCount); step > 0; step >>= 1) {
+            final int next = position + step;
+            if (next > mItemCount) {
+                continue;
+            }
+            final double weight = mExtentTree[next]
+                    + (step - mMeasuredTree[next]) * average;
+            if (weight <= remaining) {
+                position = next;
+                remaining -= weight;
+            }
+        }
+        return Math.min(position, mItemCount - 1);
+    }
+
+    void clear() {
+        mItemCount = 0;
+        mTreesValid = false;
+    }
+
+    void onItemsAdded(int positionStart, int itemCount) {
+        if (positionStart > mItemCount || itemCount <= 0) {
+            return;
+        }
+        ensureCapacity(mItemCount + itemCount);
+        System.arraycopy(mExtents, positionStart, mExtents, positionStart + itemCount,
+                mItemCount - positionStart);
+        Arrays.fill(mExtents, positionStart, positionStart + itemCount, UNKNOWN);
+        mItemCount += itemCount;
+        mTreesValid = false;
+    }
+
+    void onItemsRemoved(int positionStart, int itemCount) {
+        if (positionStart >= mItemCount || itemCount <= 0) {
+            return;
+        }
+        itemCount = Math.min(itemCount, mItemCount - positionStart);
+        System.arraycopy(mExtents, positionStart + itemCount, mExtents, positionStart,
+                mItemCount - positionStart - itemCount);
+        mItemCount -= itemCount;
+        mTreesValid = false;
+    }
+
+    void onItemsUpdated(int positionStart, int itemCount) {
+        // updated items may change in size, they are measured again when laid out
+        final int end = Math.min(positionStart + itemCount, mItemCount);
+        for (int i = Math.max(0, positionStart); i < end; i++) {
+            final int old = mExtents[i];
+            if (old != UNKNOWN) {
+                mExtents[i] = UNKNOWN;
+                if (mTreesValid) {
+                    add(i, -old, -1);
+                }
+            }
+        }
+    }
+
+    void onItemsMoved(int from, int to, int itemCount) {
+        if (from == to || itemCount <= 0 || Math.max(from, to) + itemCount > mItemCount) {
+            return;
+        }
+        final int[] moved = Arrays.copyOfRange(mExtents, from, from + itemCount);
+        if (from < to) {
+            System.arraycopy(mExtents, from + itemCount, mExtents, from, to - from);
+        } else {
+            System.arraycopy(mExtents, to, mExtents, to + itemCount, from - to);
+        }
+        System.arraycopy(moved, 0, mExtents, to, itemCount);
+        mTreesValid = false;
+    }
+
+    private double getAverageExtent() {
+        return mMeasuredCount == 0 ? 0 : (double) mMeasuredSum / mMeasuredCount;
+    }
+
+    private void add(int position, long extentDelta, int measuredDelta) {
+        mMeasuredSum += extentDelta;
+        mMeasuredCount += measuredDelta;
+        for (int i = position + 1; i <= mItemCount; i += i & -i) {
+            mExtentTree[i] += extentDelta;
+            mMeasuredTree[i] += measuredDelta;
+        }
+    }
+
+    private void ensureTrees() {
+        if (mTreesValid) {
+            return;
+        }
+        mTreesValid = true;
+        mMeasuredSum = 0;
+        mMeasuredCount = 0;
+        Arrays.fill(mExtentTree, 0, mItemCount + 1, 0);
+        Arrays.fill(mMeasuredTree, 0, mItemCount + 1, 0);
+        for (int i = 1; i <= mItemCount; i++) {
+            final int extent = mExtents[i - 1];
+            if (extent != UNKNOWN) {
+                mExtentTree[i] += extent;
+                mMeasuredTree[i]++;
+                mMeasuredSum += extent;
+                mMeasuredCount++;
+            }
+            final int parent = i + (i & -i);
+            if (parent <= mItemCount) {
+                mExtentTree[parent] += mExtentTree[i];
+                mMeasuredTree[parent] += mMeasuredTree[i];
+            }
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= mExtents.length) {
+            return;
+        }
+        int capacity = mExtents.length;
+        while (capacity < count) {
+            capacity *= 2;
+        }
+        mExtents = Arrays.copyOf(mExtents, capacity);
+        mExtentTree = new long[capacity + 1];
+        mMeasuredTree = new int[capacity + 1];
+        mTreesValid = false;
+    }
+}
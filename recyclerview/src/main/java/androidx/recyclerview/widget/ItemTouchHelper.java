@@ -279,6 +279,9 @@ public class ItemTouchHelper extends RecyclerView.ItemDecoration
         @Override
         public void run() {
             if (mSelected != null && scrollIfNecessary()) {
+                if (mChildBoundsIndex != null) {
+                    mChildBoundsIndex.invalidate();
+                }
                 if (mSelected != null) { //it might be lost during scrolling
                     moveIfNecessary(mSelected);
                 }
@@ -299,6 +302,34 @@ public class ItemTouchHelper extends RecyclerView.ItemDecoration
     //re used for for sorting swap targets
     private List<Integer> mDistances;
 
+    /**
+     * Set in batched reorder mode, see {@link #setBatchedReorderEnabled(boolean)}.
+     */
+    private ChildBoundsIndex mChildBoundsIndex;
+
+    //re-used list for the children found by mChildBoundsIndex
+    private List<View> mCandidateViews;
+
+    /**
+     * In batched reorder mode, the drop target chosen since the last move was applied, or null.
+     */
+    private ViewHolder mPendingMoveTarget;
+
+    private int mPendingMoveX;
+
+    private int mPendingMoveY;
+
+    /**
+     * Applies the pending move once per frame in batched reorder mode.
+     */
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    final Runnable mFlushMoveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushPendingMove();
+        }
+    };
+
     /**
      * If drag & drop is supported, we use child drawing order to bring them to front.
      */
@@ -494,6 +525,40 @@ public class ItemTouchHelper extends RecyclerView.ItemDecoration
         mEndDraggingText = text;
     }
 
+    /**
+     * Sets whether dragged items are reordered in batches.
+     * <p>
+     * By default, each move event that drags an item over another one calls
+     * {@link Callback#onMove(RecyclerView, ViewHolder, ViewHolder)}, and the next one is only
+     * checked after the resulting layout. In batched mode the drop targets chosen by move events
+     * are accumulated, and the dragged item is moved once per frame, and when the drag ends,
+     * straight to the last target with
+     * {@link Callback#onMoveTo(RecyclerView, ViewHolder, int, int)}. Drop targets are found
+     * through an index of the children bounds instead of walking all children on every event.
+     * <p>
+     * Override {@link Callback#onMoveTo(RecyclerView, ViewHolder, int, int)} to notify a single
+     * move to the adapter.
+     *
+     * @param enabled True to reorder in batches, false to move on each event.
+     */
+    public void setBatchedReorderEnabled(boolean enabled) {
+        if (enabled == (mChildBoundsIndex != null)) {
+            return;
+        }
+        if (enabled) {
+            mChildBoundsIndex = new ChildBoundsIndex();
+            mCandidateViews = new ArrayList<>();
+        } else {
+            flushPendingMove();
+            mChildBoundsIndex = null;
+            mCandidateViews = null;
+        }
+    }
+
+    public boolean isBatchedReorderEnabled() {
+        return mChildBoundsIndex != null;
+    }
+
     private static boolean hitTest(View child, float x, float y, float left, float top) {
         return x >= left
                 && x <= left + child.getWidth()
@@ -553,6 +618,11 @@ public class ItemTouchHelper extends RecyclerView.ItemDecoration
         mRecoverAnimations.clear();
         mOverdrawChild = null;
         mOverdrawChildPosition = -1;
+        mPendingMoveTarget = null;
+        mRecyclerView.removeCallbacks(mFlushMoveRunnable);
+        if (mChildBoundsIndex != null) {
+            mChildBoundsIndex.clear();
+        }
         releaseVelocityTracker();
         stopGestureDetection();
     }
@@ -609,6 +679,9 @@ public class ItemTouchHelper extends RecyclerView.ItemDecoration
     public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
         // we don't know if RV changed something so we should invalidate this index.
         mOverdrawChildPosition = -1;
+        if (mChildBoundsIndex != null) {
+            mChildBoundsIndex.invalidate();
+        }
         float dx = 0, dy = 0;
         if (mSelected != null) {
             getSelectedDxDy(mTmpPosition, CALLEDBY_ONDRAW);
@@ -631,6 +704,8 @@ public class ItemTouchHelper extends RecyclerView.ItemDecoration
         if (selected == mSelected && actionState == mActionState) {
             return;
         }
+        // the drop target chosen last is where a batched reorder ends
+        flushPendingMove();
         mDragScrollStartTimeInMs = Long.MIN_VALUE;
         final int prevActionState = mActionState;
         // prevent duplicate animations
@@ -915,6 +990,15 @@ public class ItemTouchHelper extends RecyclerView.ItemDecoration
         final int centerX = (left + right) / 2;
         final int centerY = (top + bottom) / 2;
         final RecyclerView.LayoutManager lm = mRecyclerView.getLayoutManager();
+        if (mChildBoundsIndex != null) {
+            mChildBoundsIndex.findIntersecting(lm, viewHolder.itemView, left, top, right, bottom,
+                    mCandidateViews);
+            for (int i = 0; i < mCandidateViews.size(); i++) {
+                addSwapTarget(mCandidateViews.get(i), centerX, centerY);
+            }
+            mCandidateViews.clear();
+            return mSwapTargets;
+        }
         final int childCount = lm.getChildCount();
         for (int i = 0; i < childCount; i++) {
             View other = lm.getChildAt(i);
@@ -925,27 +1009,31 @@ public class ItemTouchHelper extends RecyclerView.ItemDecoration
                     || other.getRight() < left || other.getLeft() > right) {
                 continue;
             }
-            final ViewHolder otherVh = mRecyclerView.getChildViewHolder(other);
-            if (mCallback.canDropOver(mRecyclerView, mSelected, otherVh)) {
-                // find the index to add
-                final int dx = Math.abs(centerX - (other.getLeft() + other.getRight()) / 2);
-                final int dy = Math.abs(centerY - (other.getTop() + other.getBottom()) / 2);
-                final int dist = dx * dx + dy * dy;
-
-                int pos = 0;
-                final int cnt = mSwapTargets.size();
-                for (int j = 0; j < cnt; j++) {
-                    if (dist > mDistances.get(j)) {
-                        pos++;
-                    } else {
-                        break;
-                    }
+            addSwapTarget(other, centerX, centerY);
+        }
+        return mSwapTargets;
+    }
+
+    private void addSwapTarget(View other, int centerX, int centerY) {
+        final ViewHolder otherVh = mRecyclerView.getChildViewHolder(other);
+        if (mCallback.canDropOver(mRecyclerView, mSelected, otherVh)) {
+            // find the index to add
+            final int dx = Math.abs(centerX - (other.getLeft() + other.getRight()) / 2);
+            final int dy = Math.abs(centerY - (other.getTop() + other.getBottom()) / 2);
+            final int dist = dx * dx + dy * dy;
+
+            int pos = 0;
+            final int cnt = mSwapTargets.size();
+            for (int j = 0; j < cnt; j++) {
+                if (dist > mDistances.get(j)) {
+                    pos++;
+                } else {
+                    break;
                 }
-                mSwapTargets.add(pos, otherVh);
-                mDistances.add(pos, dist);
             }
+            mSwapTargets.add(pos, otherVh);
+            mDistances.add(pos, dist);
         }
-        return mSwapTargets;
     }
 
     /**
@@ -979,28 +1067,76 @@ public class ItemTouchHelper extends RecyclerView.ItemDecoration
             mDistances.clear();
             return;
         }
+        if (mChildBoundsIndex != null) {
+            // applied on the next frame, or when the drag ends
+            if (mPendingMoveTarget == null) {
+                ViewCompat.postOnAnimation(mRecyclerView, mFlushMoveRunnable);
+            }
+            mPendingMoveTarget = target;
+            mPendingMoveX = x;
+            mPendingMoveY = y;
+            return;
+        }
         final int toPosition = target.getAbsoluteAdapterPosition();
         final int fromPosition = viewHolder.getAbsoluteAdapterPosition();
         if (mCallback.onMove(mRecyclerView, viewHolder, target)) {
             // keep target visible
             mCallback.onMoved(mRecyclerView, viewHolder, fromPosition,
                     target, toPosition, x, y);
-            if (mMoveDraggingText != null && !mMoveDraggingText.isEmpty()) {
-                mSelected.itemView.announceForAccessibility(mMoveDraggingText);
-            } else {
-                mSelected.itemView.announceForAccessibility(mRecyclerView.getContext()
-                        .getString(R.string.dragndroplist_drag_move,
-                        toPosition + 1));
-            }
+            announceMove(toPosition);
+        }
+    }
+
+    /**
+     * Moves the dragged item to the drop target accumulated in batched reorder mode, if any.
+     */
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    void flushPendingMove() {
+        final ViewHolder target = mPendingMoveTarget;
+        if (target == null) {
+            return;
+        }
+        mPendingMoveTarget = null;
+        mRecyclerView.removeCallbacks(mFlushMoveRunnable);
+        if (mSelected == null || mActionState != ACTION_STATE_DRAG) {
+            return;
+        }
+        final int fromPosition = mSelected.getAbsoluteAdapterPosition();
+        final int toPosition = target.getAbsoluteAdapterPosition();
+        if (fromPosition == RecyclerView.NO_POSITION || toPosition == RecyclerView.NO_POSITION
+                || fromPosition == toPosition) {
+            return;
+        }
+        if (mCallback.onMoveTo(mRecyclerView, mSelected, fromPosition, toPosition)) {
+            // keep target visible
+            mCallback.onMoved(mRecyclerView, mSelected, fromPosition,
+                    target, toPosition, mPendingMoveX, mPendingMoveY);
+            announceMove(toPosition);
+        }
+    }
+
+    private void announceMove(int toPosition) {
+        if (mMoveDraggingText != null && !mMoveDraggingText.isEmpty()) {
+            mSelected.itemView.announceForAccessibility(mMoveDraggingText);
+        } else {
+            mSelected.itemView.announceForAccessibility(mRecyclerView.getContext()
+                    .getString(R.string.dragndroplist_drag_move,
+                    toPosition + 1));
         }
     }
 
     @Override
     public void onChildViewAttachedToWindow(@NonNull View view) {
+        if (mChildBoundsIndex != null) {
+            mChildBoundsIndex.invalidate();
+        }
     }
 
     @Override
     public void onChildViewDetachedFromWindow(@NonNull View view) {
+        if (mChildBoundsIndex != null) {
+            mChildBoundsIndex.invalidate();
+        }
         removeChildDrawingOrderCallbackIfNecessary(view);
         final ViewHolder holder = mRecyclerView.getChildViewHolder(view);
         if (holder == null) {
@@ -1774,6 +1910,42 @@ public class ItemTouchHelper extends RecyclerView.ItemDecoration
         public abstract boolean onMove(@NonNull RecyclerView recyclerView,
                 @NonNull ViewHolder viewHolder, @NonNull ViewHolder target);
 
+        /**
+         * Called in batched reorder mode (see
+         * {@link ItemTouchHelper#setBatchedReorderEnabled(boolean)}) when ItemTouchHelper wants
+         * to move the dragged item straight from its adapter position to another one, which may
+         * be several positions away.
+         * <p>
+         * Items between the two positions shift by one towards {@code fromPosition}, so an
+         * implementation removes the item at {@code fromPosition}, inserts it at
+         * {@code toPosition} and calls
+         * {@link RecyclerView.Adapter#notifyItemMoved(int, int) notifyItemMoved(fromPosition,
+         * toPosition)} once.
+         * <p>
+         * Default implementation calls {@link #onMove(RecyclerView, ViewHolder, ViewHolder)} with
+         * the item at each position in between in turn, stopping at the first one that is not
+         * attached or that {@code onMove} returns false for.
+         *
+         * @param recyclerView The RecyclerView to which ItemTouchHelper is attached to.
+         * @param viewHolder   The ViewHolder which is being dragged by the user.
+         * @param fromPosition The adapter position of the dragged item.
+         * @param toPosition   The adapter position to move the dragged item to.
+         * @return True if the {@code viewHolder} has been moved.
+         */
+        public boolean onMoveTo(@NonNull RecyclerView recyclerView,
+                @NonNull ViewHolder viewHolder, int fromPosition, int toPosition) {
+            final int step = toPosition > fromPosition ? 1 : -1;
+            for (int position = fromPosition + step; ; position += step) {
+                final ViewHolder target = recyclerView.findViewHolderForAdapterPosition(position);
+                if (target == null || !onMove(recyclerView, viewHolder, target)) {
+                    return position != fromPosition + step;
+                }
+                if (position == toPosition) {
+                    return true;
+                }
+            }
+        }
+
         /**
          * Returns whether ItemTouchHelper should start a drag and drop operation if an item is
          * long pressed.
@@ -30,6 +30,7 @@ import android.view.ViewGroup;
 import android.view.accessibility.AccessibilityEvent;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.core.os.TraceCompat;
 import androidx.core.view.ViewCompat;
@@ -117,6 +118,12 @@ public class LinearLayoutManager extends RecyclerView.LayoutManager implements
      */
     private boolean mSmoothScrollbarEnabled = true;
 
+    /**
+     * Measured extents of the items, null unless enabled.
+     * See {@link #setItemExtentCacheEnabled(boolean)}.
+     */
+    private ItemExtentTree mItemExtents;
+
     /**
      * When LayoutManager needs to scroll to a position, it sets this variable and requests a
      * layout which will check this variable and re-layout accordingly.
@@ -732,6 +739,7 @@ public class LinearLayoutManager extends RecyclerView.LayoutManager implements
     @Override
     public void onLayoutCompleted(RecyclerView.State state) {
         super.onLayoutCompleted(state);
+        recordItemExtents(state);
         mPendingSavedState = null; // we don't need this anymore
         mPendingScrollPosition = RecyclerView.NO_POSITION;
         mPendingScrollPositionOffset = INVALID_OFFSET;
@@ -1183,6 +1191,17 @@ public class LinearLayoutManager extends RecyclerView.LayoutManager implements
             return 0;
         }
         ensureLayoutState();
+        if (canUseItemExtents(state)) {
+            final View startChild = findFirstVisibleChildClosestToStart(false, true);
+            if (startChild != null) {
+                final int position = getPosition(startChild);
+                final long before = mShouldReverseLayout
+                        ? mItemExtents.getTotal() - mItemExtents.getOffset(position + 1)
+                        : mItemExtents.getOffset(position);
+                return (int) Math.max(0, before + mOrientationHelper.getStartAfterPadding()
+                        - mOrientationHelper.getDecoratedStart(startChild));
+            }
+        }
         return ScrollbarHelper.computeScrollOffset(state, mOrientationHelper,
                 findFirstVisibleChildClosestToStart(!mSmoothScrollbarEnabled, true),
                 findFirstVisibleChildClosestToEnd(!mSmoothScrollbarEnabled, true),
@@ -1205,6 +1224,9 @@ public class LinearLayoutManager extends RecyclerView.LayoutManager implements
             return 0;
         }
         ensureLayoutState();
+        if (canUseItemExtents(state)) {
+            return (int) Math.min(Integer.MAX_VALUE, mItemExtents.getTotal());
+        }
         return ScrollbarHelper.computeScrollRange(state, mOrientationHelper,
                 findFirstVisibleChildClosestToStart(!mSmoothScrollbarEnabled, true),
                 findFirstVisibleChildClosestToEnd(!mSmoothScrollbarEnabled, true),
@@ -1241,6 +1263,145 @@ public class LinearLayoutManager extends RecyclerView.LayoutManager implements
         return mSmoothScrollbarEnabled;
     }
 
+    /**
+     * When the item extent cache is enabled, the width or height (depending on the list
+     * orientation) of every item is recorded as it is laid out. With smooth scrollbar enabled,
+     * the scroll offset and range are then computed from the recorded extents instead of the
+     * average size of the visible items. Items that were never laid out count with the average
+     * recorded extent. So the scrollbar stays stable in lists with items of varying sizes, and is
+     * exact once all items before the visible ones have been laid out.
+     * <p>
+     * The cache costs two integers and a long per item, and offsets are computed in O(log n).
+     * It also enables {@link #scrollToOffset(int)}.
+     *
+     * @param enabled Whether or not to record item extents.
+     * @see #setSmoothScrollbarEnabled(boolean)
+     */
+    public void setItemExtentCacheEnabled(boolean enabled) {
+        if (enabled && mItemExtents == null) {
+            mItemExtents = new ItemExtentTree();
+            requestLayout();
+        } else if (!enabled) {
+            mItemExtents = null;
+        }
+    }
+
+    /**
+     * Returns whether the item extent cache is enabled. It is disabled by default.
+     *
+     * @see #setItemExtentCacheEnabled(boolean)
+     */
+    public boolean isItemExtentCacheEnabled() {
+        return mItemExtents != null;
+    }
+
+    /**
+     * Scrolls to the given distance from the start of the list, as computed from the item extent
+     * cache, so that lists with items of varying sizes can be jumped through precisely.
+     * <p>
+     * Like {@link #scrollToPositionWithOffset(int, int)}, the change is applied on the next
+     * layout.
+     *
+     * @param offset The distance, in pixels, from the start of the list to the start of the
+     *               visible area.
+     * @return False if the item extent cache is not enabled or has no extents recorded yet, in
+     * which case nothing is scrolled.
+     * @see #setItemExtentCacheEnabled(boolean)
+     */
+    public boolean scrollToOffset(int offset) {
+        if (mItemExtents == null || !mItemExtents.hasMeasuredExtents()) {
+            return false;
+        }
+        // for reverse layouts, the distance from the end of the list to the end of the visible
+        // area, which is where the pending offset is applied
+        final long target = mShouldReverseLayout
+                ? mItemExtents.getTotal() - offset - mOrientationHelper.getTotalSpace()
+                : offset;
+        final int position = mItemExtents.findPosition(Math.max(0, target));
+        if (position == RecyclerView.NO_POSITION) {
+            return false;
+        }
+        scrollToPositionWithOffset(position,
+                (int) (mItemExtents.getOffset(position) - Math.max(0, target)));
+        return true;
+    }
+
+    private boolean canUseItemExtents(RecyclerView.State state) {
+        return mItemExtents != null && mSmoothScrollbarEnabled
+                && mItemExtents.getItemCount() == state.getItemCount()
+                && mItemExtents.hasMeasuredExtents();
+    }
+
+    /**
+     * Records the extents of the laid out children in the item extent cache, if enabled.
+     */
+    private void recordItemExtents(RecyclerView.State state) {
+        if (mItemExtents == null || state.isPreLayout()) {
+            return;
+        }
+        ensureLayoutState();
+        mItemExtents.setItemCount(state.getItemCount());
+        final int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            final View child = getChildAt(i);
+            final RecyclerView.LayoutParams lp = (RecyclerView.LayoutParams) child.getLayoutParams();
+            if (!lp.isItemRemoved()) {
+                mItemExtents.setExtent(lp.getViewLayoutPosition(),
+                        mOrientationHelper.getDecoratedMeasurement(child));
+            }
+        }
+    }
+
+    @Override
+    public void onAdapterChanged(@Nullable RecyclerView.Adapter oldAdapter,
+            @Nullable RecyclerView.Adapter newAdapter) {
+        super.onAdapterChanged(oldAdapter, newAdapter);
+        if (mItemExtents != null) {
+            mItemExtents.clear();
+        }
+    }
+
+    @Override
+    public void onItemsChanged(@NonNull RecyclerView recyclerView) {
+        if (mItemExtents != null) {
+            mItemExtents.clear();
+        }
+    }
+
+    @Override
+    public void onItemsAdded(@NonNull RecyclerView recyclerView, int positionStart,
+            int itemCount) {
+        if (mItemExtents != null) {
+            mItemExtents.onItemsAdded(positionStart, itemCount);
+        }
+    }
+
+    @Override
+    public void onItemsRemoved(@NonNull RecyclerView recyclerView, int positionStart,
+            int itemCount) {
+        if (mItemExtents != null) {
+            mItemExtents.onItemsRemoved(positionStart, itemCount);
+        }
+    }
+
+    @Override
+    public void onItemsUpdated(@NonNull RecyclerView recyclerView, int positionStart,
+            int itemCount, @Nullable Object payload) {
+        // partial updates usually keep the size of the item
+        if (mItemExtents != null && payload == null) {
+            mItemExtents.onItemsUpdated(positionStart, itemCount);
+        }
+        super.onItemsUpdated(recyclerView, positionStart, itemCount, payload);
+    }
+
+    @Override
+    public void onItemsMoved(@NonNull RecyclerView recyclerView, int from, int to,
+            int itemCount) {
+        if (mItemExtents != null) {
+            mItemExtents.onItemsMoved(from, to, itemCount);
+        }
+    }
+
     private void updateLayoutState(int layoutDirection, int requiredSpace,
             boolean canUseExistingSpace, RecyclerView.State state) {
         // If parent provides a hint, don't measure unlimited.
@@ -1420,6 +1581,7 @@ public class LinearLayoutManager extends RecyclerView.LayoutManager implements
         if (state.mLayoutStep != RecyclerView.State.STEP_LAYOUT) {
             mRecyclerView.showGoToTop();
         }
+        recordItemExtents(state);
         return scrolled;
     }
 
@@ -52,6 +52,10 @@ public class LinearSnapHelper extends SnapHelper {
     @Nullable
     private OrientationHelper mHorizontalHelper;
 
+    // The LayoutManager whose distance per child the snap engine averages
+    @Nullable
+    private RecyclerView.LayoutManager mSampledLayoutManager;
+
     public LinearSnapHelper() {
         setSnapValue(0.5f, 100.0f, 1);
     }
@@ -198,6 +202,32 @@ public class LinearSnapHelper extends SnapHelper {
         return targetPos;
     }
 
+    @Override
+    void onScrollSettled(@NonNull RecyclerView.LayoutManager layoutManager) {
+        final OrientationHelper helper;
+        if (layoutManager.canScrollVertically()) {
+            helper = getVerticalHelper(layoutManager);
+        } else if (layoutManager.canScrollHorizontally()) {
+            helper = getHorizontalHelper(layoutManager);
+        } else {
+            return;
+        }
+        recordDistancePerChild(layoutManager, computeDistancePerChild(layoutManager, helper));
+    }
+
+    private void recordDistancePerChild(RecyclerView.LayoutManager layoutManager,
+            float distancePerChild) {
+        if (distancePerChild == INVALID_DISTANCE) {
+            // no children to measure
+            return;
+        }
+        if (mSampledLayoutManager != layoutManager) {
+            mSnapEngine.clear();
+            mSampledLayoutManager = layoutManager;
+        }
+        mSnapEngine.recordExtent(distancePerChild);
+    }
+
     @Override
     public View findSnapView(RecyclerView.LayoutManager layoutManager) {
         if (layoutManager.canScrollVertically()) {
@@ -217,6 +247,10 @@ public class LinearSnapHelper extends SnapHelper {
 
     /**
      * Estimates a position to which SnapHelper will try to scroll to in response to a fling.
+     * <p>
+     * The fling distance is computed in closed form and the distance per child is the rolling
+     * average measured when scrolls settle, so this neither runs a scroller nor walks the
+     * children, except for the first fling.
      *
      * @param layoutManager The {@link RecyclerView.LayoutManager} associated with the attached
      *                      {@link RecyclerView}.
@@ -228,15 +262,18 @@ public class LinearSnapHelper extends SnapHelper {
      */
     private int estimateNextPositionDiffForFling(RecyclerView.LayoutManager layoutManager,
             OrientationHelper helper, int velocityX, int velocityY, int[] snapDistances) {
-        int[] distances = seslCalculateScrollDistanceForLinear(velocityX, velocityY);
-        distances[0] -= snapDistances[0];
-        distances[1] -= snapDistances[1];
-        float distancePerChild = computeDistancePerChild(layoutManager, helper);
+        final int distanceX = mSnapEngine.getFlingDistance(velocityX) - snapDistances[0];
+        final int distanceY = mSnapEngine.getFlingDistance(velocityY) - snapDistances[1];
+        float distancePerChild = mSnapEngine.getAverageExtent();
+        if (distancePerChild <= 0 || layoutManager != mSampledLayoutManager) {
+            // nothing measured for this LayoutManager yet
+            distancePerChild = computeDistancePerChild(layoutManager, helper);
+            recordDistancePerChild(layoutManager, distancePerChild);
+        }
         if (distancePerChild <= 0) {
             return 0;
         }
-        int distance =
-                Math.abs(distances[0]) > Math.abs(distances[1]) ? distances[0] : distances[1];
+        int distance = Math.abs(distanceX) > Math.abs(distanceY) ? distanceX : distanceY;
         final int diff = (int) Math.round(distance / distancePerChild);
         if (diff != 0) {
             return diff;
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.recyclerview.widget;
+
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+import java.util.BitSet;
+
+/**
+ * Hit testing and range tracking for long-press multi-selection.
+ * <p>
+ * The edges of the attached children are indexed once per layout or scroll, sorted by their top,
+ * so that the child under (or nearest to) a move event is found with a binary search followed by
+ * a scan of the row around it, instead of walking every child on each event.
+ * <p>
+ * The selected range always goes from the anchor (the first touched position, which is never
+ * selected itself) to the last touched position. When the range changes, only the positions that
+ * entered or left it are toggled. After the index is rebuilt every indexed child is reconciled
+ * once, since children that weren't attached before may now be in the range.
+ */
+final class MultiSelectionEngine {
+    private static final int INITIAL_CAPACITY = 32;
+
+    private final RecyclerView mRecyclerView;
+
+    // Child edges, sorted by top. mMaxBottoms[i] is the largest bottom of entries [0, i].
+    private View[] mViews = new View[INITIAL_CAPACITY];
+    private int[] mTops = new int[INITIAL_CAPACITY];
+    private int[] mBottoms = new int[INITIAL_CAPACITY];
+    private int[] mLefts = new int[INITIAL_CAPACITY];
+    private int[] mRights = new int[INITIAL_CAPACITY];
+    private int[] mPositions = new int[INITIAL_CAPACITY];
+    private int[] mMaxBottoms = new int[INITIAL_CAPACITY];
+    private int mCount;
+    private int mIndexedChildCount;
+    private boolean mIndexValid;
+
+    // Entry of each position in [mFirstPosition, mFirstPosition + mEntryByPosition.length), or -1.
+    private int[] mEntryByPosition = new int[INITIAL_CAPACITY];
+    private int mFirstPosition;
+    private int mPositionCount;
+
+    private final BitSet mSelected = new BitSet();
+    private int mAnchorPosition = RecyclerView.NO_POSITION;
+    private int mRangeStart;
+    private int mRangeEnd;
+    private boolean mNeedsFullReconcile;
+
+    MultiSelectionEngine(RecyclerView recyclerView) {
+        mRecyclerView = recyclerView;
+    }
+
+    /**
+     * Called when children were laid out or scrolled, so their edges have to be indexed again.
+     */
+    void invalidateIndex() {
+        mIndexValid = false;
+    }
+
+    /**
+     * Returns the child under the given point or, if there is none, the child nearest to it:
+     * first by vertical distance, then by horizontal distance.
+     */
+    @Nullable
+    View findChildNear(int x, int y) {
+        ensureIndex();
+        if (mCount == 0) {
+            return null;
+        }
+        // last entry whose top is at or above y
+        int low = 0;
+        int high = mCount - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (mTops[mid] <= y) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int best = -1;
+        long bestVertical = Long.MAX_VALUE;
+        long bestHorizontal = Long.MAX_VALUE;
+        // entries before and including low; none of them can be closer than y - mMaxBottoms[i]
+        for (int i = low; i >= 0 && (long) y - mMaxBottoms[i] <= bestVertical; i--) {
+            final long vertical = distance(y, mTops[i], mBottoms[i]);
+            final long horizontal = distance(x, mLefts[i], mRights[i]);
+            if (vertical < bestVertical
+                    || (vertical == bestVertical && horizontal < bestHorizontal)) {
+                best = i;
+                bestVertical = vertical;
+                bestHorizontal = horizontal;
+            }
+        }
+        // entries after low start below y, and sorted by how far below
+        for (int i = low + 1; i < mCount && (long) mTops[i] - y <= bestVertical; i++) {
+            final long vertical = distance(y, mTops[i], mBottoms[i]);
+            final long horizontal = distance(x, mLefts[i], mRights[i]);
+            if (vertical < bestVertical
+                    || (vertical == bestVertical && horizontal < bestHorizontal)) {
+                best = i;
+                bestVertical = vertical;
+                bestHorizontal = horizontal;
+            }
+        }
+        return mViews[best];
+    }
+
+    /**
+     * Starts a new selection anchored at the given position.
+     */
+    void start(int anchorPosition) {
+        mSelected.clear();
+        mAnchorPosition = anchorPosition;
+        mRangeStart = mRangeEnd = anchorPosition;
+        mNeedsFullReconcile = false;
+    }
+
+    /**
+     * Extends or shrinks the selection so it goes from the anchor to the given position, and
+     * notifies the listener of every visible item whose selection toggled.
+     */
+    void updateSelection(int touchedPosition,
+            @Nullable RecyclerView.SeslLongPressMultiSelectionListener listener) {
+        if (mAnchorPosition == RecyclerView.NO_POSITION || touchedPosition < 0) {
+            return;
+        }
+        ensureIndex();
+        final int oldStart = mRangeStart;
+        final int oldEnd = mRangeEnd;
+        mRangeStart = Math.min(mAnchorPosition, touchedPosition);
+        mRangeEnd = Math.max(mAnchorPosition, touchedPosition);
+        if (mNeedsFullReconcile) {
+            mNeedsFullReconcile = false;
+            for (int i = 0; i < mCount; i++) {
+                reconcile(i, listener);
+            }
+            return;
+        }
+        // positions that entered or left the range on either side
+        reconcileRange(Math.min(oldStart, mRangeStart), Math.max(oldStart, mRangeStart) - 1,
+                listener);
+        reconcileRange(Math.min(oldEnd, mRangeEnd) + 1, Math.max(oldEnd, mRangeEnd), listener);
+    }
+
+    void reset() {
+        mSelected.clear();
+        mAnchorPosition = RecyclerView.NO_POSITION;
+        mNeedsFullReconcile = false;
+        mIndexValid = false;
+        // don't keep the children alive
+        for (int i = 0; i < mCount; i++) {
+            mViews[i] = null;
+        }
+        mCount = 0;
+    }
+
+    private void reconcileRange(int from, int to,
+            @Nullable RecyclerView.SeslLongPressMultiSelectionListener listener) {
+        from = Math.max(from, mFirstPosition);
+        to = Math.min(to, mFirstPosition + mPositionCount - 1);
+        for (int position = from; position <= to; position++) {
+            final int entry = mEntryByPosition[position - mFirstPosition];
+            if (entry != -1) {
+                reconcile(entry, listener);
+            }
+        }
+    }
+
+    private void reconcile(int entry,
+            @Nullable RecyclerView.SeslLongPressMultiSelectionListener listener) {
+        final View child = mViews[entry];
+        final int position = mPositions[entry];
+        if (child.getVisibility() != View.VISIBLE) {
+            return;
+        }
+        final boolean needSelected = position >= mRangeStart && position <= mRangeEnd
+                && position != mAnchorPosition;
+        if (needSelected != mSelected.get(position)) {
+            mSelected.set(position, needSelected);
+            if (listener != null) {
+                listener.onItemSelected(mRecyclerView, child, position,
+                        mRecyclerView.getChildItemId(child));
+            }
+        }
+    }
+
+    private void ensureIndex() {
+        final int childCount = mRecyclerView.getChildCount();
+        if (mIndexValid && childCount == mIndexedChildCount) {
+            return;
+        }
+        mIndexValid = true;
+        mIndexedChildCount = childCount;
+        if (mAnchorPosition != RecyclerView.NO_POSITION) {
+            mNeedsFullReconcile = true;
+        }
+        ensureCapacity(childCount);
+        mCount = 0;
+        int minPosition = Integer.MAX_VALUE;
+        int maxPosition = Integer.MIN_VALUE;
+        for (int i = 0; i < childCount; i++) {
+            final View child = mRecyclerView.getChildAt(i);
+            final int position = mRecyclerView.getChildLayoutPosition(child);
+            if (position == RecyclerView.NO_POSITION) {
+                continue;
+            }
+            final int translationX = (int) child.getTranslationX();
+            final int translationY = (int) child.getTranslationY();
+            final int top = child.getTop() + translationY;
+            // insertion sort, children are usually attached in layout order already
+            int j = mCount;
+            while (j > 0 && mTops[j - 1] > top) {
+                moveEntry(j - 1, j);
+                j--;
+            }
+            mViews[j] = child;
+            mTops[j] = top;
+            mBottoms[j] = child.getBottom() + translationY;
+            mLefts[j] = child.getLeft() + translationX;
+            mRights[j] = child.getRight() + translationX;
+            mPositions[j] = position;
+            mCount++;
+            minPosition = Math.min(minPosition, position);
+            maxPosition = Math.max(maxPosition, position);
+        }
+        for (int i = mCount; i < mViews.length && mViews[i] != null; i++) {
+            mViews[i] = null;
+        }
+        int maxBottom = Integer.MIN_VALUE;
+        for (int i = 0; i < mCount; i++) {
+            maxBottom = Math.max(maxBottom, mBottoms[i]);
+            mMaxBottoms[i] = maxBottom;
+        }
+
+        mFirstPosition = mCount == 0 ? 0 : minPosition;
+        mPositionCount = mCount == 0 ? 0 : maxPosition - minPosition + 1;
+        if (mEntryByPosition.length < mPositionCount) {
+            mEntryByPosition = new int[Math.max(mPositionCount, mEntryByPosition.length * 2)];
+        }
+        for (int i = 0; i < mPositionCount; i++) {
+            mEntryByPosition[i] = -1;
+        }
+        for (int i = 0; i < mCount; i++) {
+            mEntryByPosition[mPositions[i] - mFirstPosition] = i;
+        }
+    }
+
+    private void moveEntry(int from, int to) {
+        mViews[to] = mViews[from];
+        mTops[to] = mTops[from];
+        mBottoms[to] = mBottoms[from];
+        mLefts[to] = mLefts[from];
+        mRights[to] = mRights[from];
+        mPositions[to] = mPositions[from];
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= mViews.length) {
+            return;
+        }
+        final int capacity = Math.max(count, mViews.length * 2);
+        mViews = new View[capacity];
+        mTops = new int[capacity];
+        mBottoms = new int[capacity];
+        mLefts = new int[capacity];
+        mRights = new int[capacity];
+        mPositions = new int[capacity];
+        mMaxBottoms = new int[capacity];
+    }
+
+    private static long distance(int value, int start, int end) {
+        if (value < start) {
+            return (long) start - value;
+        }
+        if (value > end) {
+            return (long) value - end;
+        }
+        return 0;
+    }
+}
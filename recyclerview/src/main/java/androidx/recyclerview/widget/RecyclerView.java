@@ -51,6 +51,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.MessageQueue;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.os.SystemClock;
@@ -90,11 +91,13 @@ import androidx.annotation.Nullable;
 import androidx.annotation.Px;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 import androidx.appcompat.animation.SeslAnimationUtils;
 import androidx.appcompat.util.SeslMisc;
 import androidx.appcompat.util.SeslRoundedCorner;
 import androidx.appcompat.util.SeslSubheaderRoundedCorner;
 import androidx.core.os.TraceCompat;
+import androidx.core.text.PrecomputedTextCompat;
 import androidx.core.util.Preconditions;
 import androidx.core.view.AccessibilityDelegateCompat;
 import androidx.core.view.InputDeviceCompat;
@@ -126,6 +129,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /*
  * Original code by Samsung, all rights reserved to the original author.
@@ -192,7 +197,8 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
     private SeslOnMultiSelectedListener mOnMultiSelectedListener;
     private Drawable mPenDragBlockImage;
     private Rect mPenDragBlockRect = new Rect();
-    private ArrayList<Integer> mPenDragSelectedItemArray;
+    private final MultiSelectionEngine mMultiSelectionEngine = new MultiSelectionEngine(this);
+    private final SelectionAutoScroller mSelectionAutoScroller = new SelectionAutoScroller();
     private View mPenTrackedChild = null;
     private Paint mRectPaint = new Paint();
     private View mRootViewCheckForDialog = null;
@@ -885,6 +891,31 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
     GapWorker.LayoutPrefetchRegistryImpl mPrefetchRegistry =
             ALLOW_THREAD_GAP_WORK ? new GapWorker.LayoutPrefetchRegistryImpl() : null;
 
+    /**
+     * Bind cost of the current adapter's view types, only tracked while adaptive prefetch is
+     * enabled. See {@link #setAdaptivePrefetchEnabled(boolean)}.
+     */
+    boolean mAdaptivePrefetchEnabled = false;
+    final BindPreparer mBindPreparer = new BindPreparer();
+    private TextPrefetcher mTextPrefetcher;
+    private int mTextPrefetchCacheSize = TextPrefetcher.DEFAULT_CACHE_SIZE;
+    final SparseArray<CostHistogram> mBindCostHistograms = new SparseArray<>();
+    // Fewer samples than this don't say much about a type, use the pool's average instead.
+    static final int MIN_ADAPTIVE_BIND_SAMPLES = 8;
+    static final float ADAPTIVE_BIND_PERCENTILE = 0.9f;
+
+    /**
+     * Whether the items around the predicted end of a fling are prefetched. See
+     * {@link #setFlingPrefetchEnabled(boolean)}.
+     */
+    boolean mFlingPrefetchEnabled = false;
+
+    /**
+     * Frame cost counters, null unless enabled. See {@link #setMetricsEnabled(boolean)}.
+     */
+    RecyclerViewMetrics mMetrics;
+    private MetricsListener mMetricsListener;
+
     final State mState = new State();
 
     private OnScrollListener mScrollListener;
@@ -1651,6 +1682,8 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             mLayout.onAdapterChanged(oldAdapter, mAdapter);
         }
         mRecycler.onAdapterChanged(oldAdapter, mAdapter, compatibleWithPrevious);
+        mBindCostHistograms.clear();
+        mBindPreparer.cancelAll();
         mState.mStructureChanged = true;
     }
 
@@ -1992,6 +2025,178 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         mRecycler.setViewCacheExtension(extension);
     }
 
+    /**
+     * Enables adaptive prefetch for this RecyclerView.
+     * <p>
+     * By default prefetch work is scheduled against a frame interval derived from the display
+     * refresh rate, and skipped when the pool's running average of the bind time doesn't fit
+     * before the next frame. With adaptive prefetch, the deadline follows the measured
+     * Choreographer vsync instead and shrinks after frames that prefetch made late, bind times
+     * are predicted from a histogram of this adapter's own binds, and more items are prefetched
+     * ahead during flings while frames keep finishing early. This lets prefetch use the shorter
+     * frames of high refresh rate displays without overrunning them.
+     *
+     * @param enabled True to enable adaptive prefetch.
+     * @see #isAdaptivePrefetchEnabled()
+     */
+    public void setAdaptivePrefetchEnabled(boolean enabled) {
+        if (mAdaptivePrefetchEnabled != enabled) {
+            mAdaptivePrefetchEnabled = enabled;
+            mBindCostHistograms.clear();
+        }
+    }
+
+    /**
+     * Returns whether adaptive prefetch is enabled.
+     *
+     * @see #setAdaptivePrefetchEnabled(boolean)
+     */
+    public boolean isAdaptivePrefetchEnabled() {
+        return mAdaptivePrefetchEnabled;
+    }
+
+    /**
+     * Enables prefetching the items a fling is going to land on.
+     * <p>
+     * By default prefetch only looks one row or column past the attached children, so a fast
+     * fling through items with nested RecyclerViews, such as a vertical feed of horizontal
+     * carousels, creates and binds the rows it stops on in the frames where it slows down. With
+     * fling prefetch, the remaining distance of a fling is read from its {@link OverScroller},
+     * which has computed where the fling ends when it started, and the items expected to be
+     * visible there are prefetched along with their nested items, in the time left in frames
+     * after the items adjacent to the attached ones.
+     * <p>
+     * The landing position is estimated from the average extent of the attached children, so it
+     * is only exact for items of equal size.
+     *
+     * @param enabled True to prefetch the landing items of flings.
+     * @see #isFlingPrefetchEnabled()
+     */
+    public void setFlingPrefetchEnabled(boolean enabled) {
+        mFlingPrefetchEnabled = enabled;
+    }
+
+    /**
+     * Returns whether the landing items of flings are prefetched.
+     *
+     * @see #setFlingPrefetchEnabled(boolean)
+     */
+    public boolean isFlingPrefetchEnabled() {
+        return mFlingPrefetchEnabled;
+    }
+
+    /**
+     * Enables recording of frame cost metrics for this RecyclerView: per view type create and
+     * bind times, layout pass durations, prefetch hits and misses, recycled view pool hit rates
+     * and item animation durations.
+     * <p>
+     * Recording costs a few primitive updates per ViewHolder and layout pass, so metrics can be
+     * enabled in production builds. Disabling them drops everything recorded so far.
+     *
+     * @param enabled True to record metrics.
+     * @see #getMetrics()
+     * @see #setMetricsListener(MetricsListener)
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        if (enabled && mMetrics == null) {
+            mMetrics = new RecyclerViewMetrics();
+        } else if (!enabled) {
+            mMetrics = null;
+        }
+    }
+
+    /**
+     * Returns whether frame cost metrics are recorded.
+     *
+     * @see #setMetricsEnabled(boolean)
+     */
+    public boolean isMetricsEnabled() {
+        return mMetrics != null;
+    }
+
+    /**
+     * Returns the frame cost metrics recorded so far, or null if they are not enabled.
+     *
+     * @see #setMetricsEnabled(boolean)
+     */
+    @Nullable
+    public RecyclerViewMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Sets a listener notified after every layout pass while metrics are enabled.
+     *
+     * @param listener The listener, or null to remove it.
+     * @see #setMetricsEnabled(boolean)
+     */
+    public void setMetricsListener(@Nullable MetricsListener listener) {
+        mMetricsListener = listener;
+    }
+
+    /**
+     * Returns the {@link PrecomputedTextCompat} computed in the background for the given text
+     * and params, or null if it is not ready yet.
+     * <p>
+     * Text is computed ahead of binding when the adapter declares it in
+     * {@link Adapter#onPrefetchText(int, TextPrefetchRegistry)}. Call this from
+     * {@link Adapter#onBindViewHolder(ViewHolder, int)} and fall back to setting the plain text
+     * when it returns null.
+     *
+     * @param text   The text declared for prefetch.
+     * @param params The params declared for prefetch, usually taken from the TextView via
+     *               {@link androidx.core.widget.TextViewCompat#getTextMetricsParams}.
+     * @return The precomputed text, or null.
+     */
+    @Nullable
+    public PrecomputedTextCompat getPrefetchedText(@NonNull CharSequence text,
+            @NonNull PrecomputedTextCompat.Params params) {
+        if (mTextPrefetcher == null) {
+            return null;
+        }
+        return mTextPrefetcher.get(text, params);
+    }
+
+    /**
+     * Sets how many precomputed texts declared via
+     * {@link Adapter#onPrefetchText(int, TextPrefetchRegistry)} are kept. The least recently
+     * used ones are evicted first. Defaults to 64.
+     *
+     * @param size Maximum number of cached texts.
+     */
+    public void setTextPrefetchCacheSize(int size) {
+        checkArgument(size > 0, "size must be > 0");
+        mTextPrefetchCacheSize = size;
+        if (mTextPrefetcher != null) {
+            mTextPrefetcher.resize(size);
+        }
+    }
+
+    TextPrefetcher getTextPrefetcher() {
+        if (mTextPrefetcher == null) {
+            mTextPrefetcher = new TextPrefetcher(mTextPrefetchCacheSize);
+        }
+        return mTextPrefetcher;
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        if (mTextPrefetcher != null) {
+            // font scale, locale or density changes invalidate measured text
+            mTextPrefetcher.clear();
+        }
+    }
+
+    void recordBindCost(int viewType, long bindTimeNs) {
+        CostHistogram histogram = mBindCostHistograms.get(viewType);
+        if (histogram == null) {
+            histogram = new CostHistogram();
+            mBindCostHistograms.put(viewType, histogram);
+        }
+        histogram.record(bindTimeNs);
+    }
+
     /**
      * Set the number of offscreen views to retain before adding them to the potentially shared
      * {@link #getRecycledViewPool() recycled view pool}.
@@ -3713,6 +3918,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         }
         mPendingAccessibilityImportanceChange.clear();
         removeCallbacks(mItemAnimatorRunner);
+        mSelectionAutoScroller.stop();
         mViewInfoStore.onDetach();
 
         if (ALLOW_THREAD_GAP_WORK && mGapWorker != null) {
@@ -4937,6 +5143,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         if (mState.mRunSimpleAnimations) {
             // Step 0: Find out where all non-removed items are, pre-layout
             int count = mChildHelper.getChildCount();
+            mViewInfoStore.ensureCapacity(count);
             for (int i = 0; i < count; ++i) {
                 final ViewHolder holder = getChildViewHolderInt(mChildHelper.getChildAt(i));
                 if (holder.shouldIgnore() || (holder.isInvalid() && !mAdapter.hasStableIds())) {
@@ -5317,9 +5524,18 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
         TraceCompat.beginSection(TRACE_ON_LAYOUT_TAG);
+        final long layoutStartNs = mMetrics != null ? System.nanoTime() : 0;
         dispatchLayout();
+        if (mMetrics != null && layoutStartNs != 0) {
+            final long durationNs = System.nanoTime() - layoutStartNs;
+            mMetrics.recordLayout(durationNs);
+            if (mMetricsListener != null) {
+                mMetricsListener.onLayoutPassCompleted(this, mMetrics, durationNs);
+            }
+        }
         TraceCompat.endSection();
         mFirstLayoutComplete = true;
+        mMultiSelectionEngine.invalidateIndex();
 
         if (mFastScroller != null && mAdapter != null) {
             mFastScroller.onItemCountChanged(getChildCount(), mAdapter.getItemCount());
@@ -6167,6 +6383,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
 
     void dispatchOnScrolled(int hresult, int vresult) {
         mDispatchScrollCounter++;
+        mMultiSelectionEngine.invalidateIndex();
         // Pass the current scrollX/scrollY values as current values. No actual change in these
         // properties occurred. Pass negative hresult and vresult as old values so that
         // postSendViewScrolledAccessibilityEventCallback(l - oldl, t - oldt) in onScrollChanged
@@ -6272,6 +6489,9 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         // Tracks if postAnimationCallback should be re-attached when it is done
         private boolean mReSchedulePostAnimationCallback = false;
 
+        // True while mOverScroller runs a fling rather than a smooth scroll
+        private boolean mFlinging = false;
+
         ViewFlinger() {
             mOverScroller = new OverScroller(getContext(), sQuinticInterpolator);
         }
@@ -6457,6 +6677,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         public void fling(int velocityX, int velocityY) {
             setScrollState(SCROLL_STATE_SETTLING);
             mLastFlingX = mLastFlingY = 0;
+            mFlinging = true;
             // Because you can't define a custom interpolator for flinging, we should make sure we
             // reset ourselves back to the teh default interpolator in case a different call
             // changed our interpolator.
@@ -6508,6 +6729,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
 
                 // Reset the last fling information.
                 mLastFlingX = mLastFlingY = 0;
+                mFlinging = false;
 
                 // Set to settling state and start scrolling.
                 setScrollState(SCROLL_STATE_SETTLING);
@@ -6556,6 +6778,19 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         public void stop() {
             removeCallbacks(this);
             mOverScroller.abortAnimation();
+            mFlinging = false;
+        }
+
+        /**
+         * Returns the distance the current fling is going to scroll from here on along the given
+         * axis, or 0 if no fling is running.
+         */
+        int getRemainingFlingDistance(boolean vertical) {
+            if (!mFlinging || mOverScroller.isFinished()) {
+                return 0;
+            }
+            return vertical ? mOverScroller.getFinalY() - mOverScroller.getCurrY()
+                    : mOverScroller.getFinalX() - mOverScroller.getCurrX();
         }
 
     }
@@ -6586,6 +6821,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         @Override
         public void onChanged() {
             assertNotInLayoutOrScroll(null);
+            mBindPreparer.cancelAll();
             mState.mStructureChanged = true;
 
             processDataSetCompletelyChanged(true);
@@ -6593,42 +6829,61 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
                 requestLayout();
             }
 
+            if (mFastScroller != null) {
+                mFastScroller.onDataSetChanged();
+            }
             updateSections();
         }
 
         @Override
         public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
             assertNotInLayoutOrScroll(null);
+            mBindPreparer.cancelAll();
             if (mAdapterHelper.onItemRangeChanged(positionStart, itemCount, payload)) {
                 triggerUpdateProcessor();
             }
+            if (mFastScroller != null) {
+                mFastScroller.onItemRangeChanged(positionStart, itemCount);
+            }
             updateSections();
         }
 
         @Override
         public void onItemRangeInserted(int positionStart, int itemCount) {
             assertNotInLayoutOrScroll(null);
+            mBindPreparer.cancelAll();
             if (mAdapterHelper.onItemRangeInserted(positionStart, itemCount)) {
                 triggerUpdateProcessor();
             }
+            if (mFastScroller != null) {
+                mFastScroller.onItemRangeInserted(positionStart, itemCount);
+            }
             updateSections();
         }
 
         @Override
         public void onItemRangeRemoved(int positionStart, int itemCount) {
             assertNotInLayoutOrScroll(null);
+            mBindPreparer.cancelAll();
             if (mAdapterHelper.onItemRangeRemoved(positionStart, itemCount)) {
                 triggerUpdateProcessor();
             }
+            if (mFastScroller != null) {
+                mFastScroller.onItemRangeRemoved(positionStart, itemCount);
+            }
             updateSections();
         }
 
         @Override
         public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
             assertNotInLayoutOrScroll(null);
+            mBindPreparer.cancelAll();
             if (mAdapterHelper.onItemRangeMoved(fromPosition, toPosition, itemCount)) {
                 triggerUpdateProcessor();
             }
+            if (mFastScroller != null) {
+                mFastScroller.onItemRangeMoved(fromPosition, toPosition, itemCount);
+            }
             updateSections();
         }
 
@@ -6726,6 +6981,14 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
      * and use {@link RecyclerView#setRecycledViewPool(RecycledViewPool)}.
      * <p>
      * RecyclerView automatically creates a pool for itself if you don't provide one.
+     * <p>
+     * By default the pool caps each view type by count only. Heavy view types can additionally be
+     * given a memory budget via {@link #setMaxRecycledViewBytes(int, long)}, in which case the
+     * holders that have been idle the longest are evicted first, and can be warmed ahead of the
+     * first scroll with {@link #setPreInflateCount(int, int)} and {@link #preInflate(RecyclerView)}
+     * or {@link #preInflateAsync(RecyclerView)}. A single pool configured this way can be shared
+     * by the RecyclerViews hosted in every page of a ViewPager2, so that pages created later reuse
+     * holders inflated for earlier ones.
      */
     public static class RecycledViewPool {
         private static final int DEFAULT_MAX_SCRAP = 5;
@@ -6749,12 +7012,23 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             int mMaxScrap = DEFAULT_MAX_SCRAP;
             long mCreateRunningAverageNs = 0;
             long mBindRunningAverageNs = 0;
+            // 0 means the type is only capped by mMaxScrap
+            long mMaxScrapBytes = 0;
+            long mEstimatedBytes = 0;
+            long mScrapBytes = 0;
+            int mPreInflateCount = 0;
+            int mPendingPreInflateCount = 0;
         }
 
         SparseArray<ScrapData> mScrap = new SparseArray<>();
 
         private int mAttachCount = 0;
 
+        // 0 means pooled holders never expire
+        private long mMaxIdleNs = 0;
+
+        private PreInflater mPreInflater;
+
         /**
          * Discard all ViewHolders.
          */
@@ -6763,6 +7037,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
                 ScrapData data = mScrap.valueAt(i);
                 if (data != null) {
                     data.mScrapHeap.clear();
+                    data.mScrapBytes = 0;
                 } else {
                     Log.e(TAG, "clear() wasn't executed because " +
                             "RecycledViewPool.mScrap was invalid");
@@ -6781,8 +7056,112 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             scrapData.mMaxScrap = max;
             final ArrayList<ViewHolder> scrapHeap = scrapData.mScrapHeap;
             while (scrapHeap.size() > max) {
-                scrapHeap.remove(scrapHeap.size() - 1);
+                removeScrapAt(scrapData, scrapHeap.size() - 1);
+            }
+        }
+
+        /**
+         * Sets the memory budget, in estimated bytes, for pooled ViewHolders of the given type.
+         * <p>
+         * While a budget is set, the pool keeps holders of this type only as long as their combined
+         * {@link #estimateViewHolderBytes(ViewHolder) estimated size} fits in it, evicting the
+         * holders that have been idle the longest first. The count set via
+         * {@link #setMaxRecycledViews(int, int)} still applies.
+         *
+         * @param viewType ViewHolder Type
+         * @param maxBytes Maximum estimated bytes, or 0 to only cap the type by count
+         */
+        public void setMaxRecycledViewBytes(int viewType, long maxBytes) {
+            checkArgument(maxBytes >= 0, "maxBytes must be >= 0");
+            ScrapData scrapData = getScrapDataForType(viewType);
+            scrapData.mMaxScrapBytes = maxBytes;
+            // recount the pooled holders, which are not tracked without a budget
+            final ArrayList<ViewHolder> scrapHeap = scrapData.mScrapHeap;
+            scrapData.mScrapBytes = 0;
+            for (int i = 0; i < scrapHeap.size(); i++) {
+                final ViewHolder holder = scrapHeap.get(i);
+                holder.mPooledBytes = maxBytes > 0 ? estimateViewHolderBytes(holder) : 0;
+                scrapData.mScrapBytes += holder.mPooledBytes;
+            }
+            while (scrapData.mScrapBytes > maxBytes && !scrapHeap.isEmpty()) {
+                removeScrapAt(scrapData, 0);
+            }
+        }
+
+        /**
+         * Declares the estimated memory cost of one ViewHolder of the given type, used by
+         * {@link #estimateViewHolderBytes(ViewHolder)} when checking the type's budget.
+         *
+         * @param viewType ViewHolder Type
+         * @param bytes    Estimated bytes of a single holder, or 0 to estimate from its size
+         */
+        public void setEstimatedViewBytes(int viewType, long bytes) {
+            checkArgument(bytes >= 0, "bytes must be >= 0");
+            getScrapDataForType(viewType).mEstimatedBytes = bytes;
+        }
+
+        /**
+         * Returns the estimated bytes held by the pool for the given view type. Only tracked for
+         * types with a budget set via {@link #setMaxRecycledViewBytes(int, long)}.
+         */
+        public long getRecycledViewBytes(int viewType) {
+            return getScrapDataForType(viewType).mScrapBytes;
+        }
+
+        /**
+         * Sets how long a ViewHolder may stay unused in the pool before it is discarded. Expired
+         * holders are dropped the next time a holder is put into the pool or when
+         * {@link #trimIdleViews()} is called.
+         *
+         * @param maxIdleMs Maximum idle time in milliseconds, or 0 to keep holders indefinitely
+         */
+        public void setMaxIdleTime(long maxIdleMs) {
+            checkArgument(maxIdleMs >= 0, "maxIdleMs must be >= 0");
+            mMaxIdleNs = maxIdleMs * 1000000L;
+            trimIdleViews();
+        }
+
+        /**
+         * Discards the ViewHolders that have been in the pool for longer than the time set via
+         * {@link #setMaxIdleTime(long)}.
+         */
+        public void trimIdleViews() {
+            if (mMaxIdleNs == 0) {
+                return;
+            }
+            final long nowNs = System.nanoTime();
+            for (int i = 0; i < mScrap.size(); i++) {
+                trimIdleViews(mScrap.valueAt(i), nowNs);
+            }
+        }
+
+        private void trimIdleViews(ScrapData scrapData, long nowNs) {
+            // holders are appended as they enter the pool, so the oldest ones are at the front
+            final ArrayList<ViewHolder> scrapHeap = scrapData.mScrapHeap;
+            while (!scrapHeap.isEmpty()
+                    && nowNs - scrapHeap.get(0).mPooledTimeNs > mMaxIdleNs) {
+                removeScrapAt(scrapData, 0);
+            }
+        }
+
+        /**
+         * Estimates the memory held by the given ViewHolder while it sits in the pool.
+         * <p>
+         * The default implementation returns the value declared via
+         * {@link #setEstimatedViewBytes(int, long)}, falling back to the size of an ARGB_8888
+         * surface covering the item view. Override to account for bitmaps or other resources the
+         * holder keeps.
+         *
+         * @param holder The ViewHolder about to be pooled
+         * @return Estimated size in bytes
+         */
+        protected long estimateViewHolderBytes(@NonNull ViewHolder holder) {
+            final long declaredBytes = getScrapDataForType(holder.getItemViewType())
+                    .mEstimatedBytes;
+            if (declaredBytes > 0) {
+                return declaredBytes;
             }
+            return (long) holder.itemView.getWidth() * holder.itemView.getHeight() * 4;
         }
 
         /**
@@ -6808,7 +7187,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
                 for (int i = scrapHeap.size() - 1; i >= 0; i--) {
                     if (scrapHeap.get(i) != null) {
                         if (!scrapHeap.get(i).isAttachedToTransitionOverlay()) {
-                            return scrapHeap.remove(i);
+                            return removeScrapAt(scrapData, i);
                         }
                     } else {
                         Log.e(TAG, "ViewHolder object null when getRecycledView is in progress. " +
@@ -6846,17 +7225,127 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
          */
         public void putRecycledView(ViewHolder scrap) {
             final int viewType = scrap.getItemViewType();
-            final ArrayList<ViewHolder> scrapHeap = getScrapDataForType(viewType).mScrapHeap;
-            if (mScrap.get(viewType).mMaxScrap <= scrapHeap.size()) {
+            final ScrapData scrapData = getScrapDataForType(viewType);
+            final ArrayList<ViewHolder> scrapHeap = scrapData.mScrapHeap;
+            final long nowNs = System.nanoTime();
+            if (mMaxIdleNs != 0) {
+                trimIdleViews(scrapData, nowNs);
+            }
+            if (scrapData.mMaxScrap <= scrapHeap.size()) {
                 return;
             }
             if (DEBUG && scrapHeap.contains(scrap)) {
                 throw new IllegalArgumentException("this scrap item already exists");
             }
+            long bytes = 0;
+            if (scrapData.mMaxScrapBytes > 0) {
+                bytes = estimateViewHolderBytes(scrap);
+                if (bytes > scrapData.mMaxScrapBytes) {
+                    return;
+                }
+                while (scrapData.mScrapBytes + bytes > scrapData.mMaxScrapBytes
+                        && !scrapHeap.isEmpty()) {
+                    removeScrapAt(scrapData, 0);
+                }
+            }
             scrap.resetInternal();
+            scrap.mPooledTimeNs = nowNs;
+            scrap.mPooledBytes = bytes;
+            scrapData.mScrapBytes += bytes;
             scrapHeap.add(scrap);
         }
 
+        private ViewHolder removeScrapAt(ScrapData scrapData, int index) {
+            final ViewHolder holder = scrapData.mScrapHeap.remove(index);
+            scrapData.mScrapBytes -= holder.mPooledBytes;
+            holder.mPooledBytes = 0;
+            return holder;
+        }
+
+        /**
+         * Sets how many ViewHolders of the given type {@link #preInflate(RecyclerView)} and
+         * {@link #preInflateAsync(RecyclerView)} should create ahead of time. The count is capped
+         * by {@link #setMaxRecycledViews(int, int)} and the type's byte budget.
+         *
+         * @param viewType ViewHolder Type
+         * @param count    Number of holders to keep warm, or 0 to stop pre-inflating the type
+         */
+        public void setPreInflateCount(int viewType, int count) {
+            checkArgument(count >= 0, "count must be >= 0");
+            getScrapDataForType(viewType).mPreInflateCount = count;
+        }
+
+        /**
+         * Fills the pool up to the counts declared via {@link #setPreInflateCount(int, int)},
+         * creating one ViewHolder per idle pass of the main thread so that frames are never
+         * delayed. Must be called on the main thread.
+         *
+         * @param parent The RecyclerView whose adapter creates the holders. It is used as the
+         *               parent for inflation and is only weakly referenced.
+         */
+        public void preInflate(@NonNull RecyclerView parent) {
+            if (mPreInflater == null) {
+                mPreInflater = new PreInflater(this);
+            }
+            mPreInflater.scheduleOnIdle(parent);
+        }
+
+        /**
+         * Fills the pool up to the counts declared via {@link #setPreInflateCount(int, int)},
+         * creating the ViewHolders on a shared background thread and pooling them on the main
+         * thread. The adapter's {@link Adapter#onCreateViewHolder(ViewGroup, int)} must be safe
+         * to call off the main thread for the declared types; as with AsyncLayoutInflater, the
+         * created views must not touch a Handler or Looper during construction.
+         *
+         * @param parent The RecyclerView whose adapter creates the holders.
+         */
+        public void preInflateAsync(@NonNull RecyclerView parent) {
+            synchronized (PreInflater.sExecutorLock) {
+                if (PreInflater.sInflateExecutor == null) {
+                    PreInflater.sInflateExecutor = Executors.newSingleThreadExecutor();
+                }
+            }
+            preInflateAsync(parent, PreInflater.sInflateExecutor);
+        }
+
+        /**
+         * Same as {@link #preInflateAsync(RecyclerView)}, but creates the ViewHolders on the given
+         * executor.
+         *
+         * @param parent   The RecyclerView whose adapter creates the holders.
+         * @param executor The background executor to run {@code onCreateViewHolder} on.
+         */
+        public void preInflateAsync(@NonNull RecyclerView parent, @NonNull Executor executor) {
+            if (mPreInflater == null) {
+                mPreInflater = new PreInflater(this);
+            }
+            mPreInflater.scheduleAsync(parent, executor);
+        }
+
+        /**
+         * Cancels pending pre-inflation. ViewHolders already being created in the background are
+         * discarded once they finish.
+         */
+        public void cancelPreInflate() {
+            if (mPreInflater != null) {
+                mPreInflater.cancel();
+            }
+        }
+
+        /**
+         * Returns the number of holders of the given type still to be pre-inflated, not counting
+         * the ones already being created in the background.
+         */
+        int getPreInflateDeficit(int viewType) {
+            final ScrapData scrapData = getScrapDataForType(viewType);
+            int target = Math.min(scrapData.mPreInflateCount, scrapData.mMaxScrap);
+            if (scrapData.mMaxScrapBytes > 0 && scrapData.mEstimatedBytes > 0) {
+                target = (int) Math.min(target,
+                        scrapData.mMaxScrapBytes / scrapData.mEstimatedBytes);
+            }
+            return target - scrapData.mScrapHeap.size() - scrapData.mPendingPreInflateCount;
+        }
+
         long runningAverage(long oldAverage, long newValue) {
             if (oldAverage == 0) {
                 return newValue;
@@ -6912,6 +7401,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
                 detach();
             }
             if (!compatibleWithPrevious && mAttachCount == 0) {
+                cancelPreInflate();
                 clear();
             }
             if (newAdapter != null) {
@@ -6927,6 +7417,168 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             }
             return scrapData;
         }
+
+        /**
+         * Creates the ViewHolders declared via {@link #setPreInflateCount(int, int)}, either one at
+         * a time while the main thread is idle or on a background executor.
+         * <p>
+         * Every schedule or cancel bumps the generation, so results of an earlier request that
+         * arrive late are dropped instead of being pooled for a different adapter.
+         */
+        static class PreInflater implements MessageQueue.IdleHandler {
+            static final Object sExecutorLock = new Object();
+            static Executor sInflateExecutor = null;
+
+            final RecycledViewPool mPool;
+            final Handler mMainHandler = new Handler(Looper.getMainLooper());
+            WeakReference<RecyclerView> mParent;
+            volatile int mGeneration = 0;
+            boolean mIdleHandlerAdded = false;
+
+            PreInflater(RecycledViewPool pool) {
+                mPool = pool;
+            }
+
+            void scheduleOnIdle(RecyclerView parent) {
+                cancel();
+                mParent = new WeakReference<>(parent);
+                if (!mIdleHandlerAdded) {
+                    Looper.getMainLooper().getQueue().addIdleHandler(this);
+                    mIdleHandlerAdded = true;
+                }
+            }
+
+            void scheduleAsync(RecyclerView parent, Executor executor) {
+                cancel();
+                final Adapter adapter = parent.getAdapter();
+                if (adapter == null) {
+                    return;
+                }
+                final SparseArray<ScrapData> scrap = mPool.mScrap;
+                for (int i = 0; i < scrap.size(); i++) {
+                    final int viewType = scrap.keyAt(i);
+                    final ScrapData scrapData = scrap.valueAt(i);
+                    final int deficit = mPool.getPreInflateDeficit(viewType);
+                    for (int j = 0; j < deficit; j++) {
+                        scrapData.mPendingPreInflateCount++;
+                        executor.execute(new AsyncCreate(parent, adapter, viewType,
+                                mGeneration));
+                    }
+                }
+            }
+
+            void cancel() {
+                mGeneration++;
+                mParent = null;
+                final SparseArray<ScrapData> scrap = mPool.mScrap;
+                for (int i = 0; i < scrap.size(); i++) {
+                    scrap.valueAt(i).mPendingPreInflateCount = 0;
+                }
+                if (mIdleHandlerAdded) {
+                    Looper.getMainLooper().getQueue().removeIdleHandler(this);
+                    mIdleHandlerAdded = false;
+                }
+            }
+
+            @Override
+            public boolean queueIdle() {
+                final RecyclerView parent = mParent != null ? mParent.get() : null;
+                final Adapter adapter = parent != null ? parent.getAdapter() : null;
+                if (adapter == null) {
+                    mIdleHandlerAdded = false;
+                    return false;
+                }
+                final SparseArray<ScrapData> scrap = mPool.mScrap;
+                for (int i = 0; i < scrap.size(); i++) {
+                    final int viewType = scrap.keyAt(i);
+                    if (mPool.getPreInflateDeficit(viewType) > 0) {
+                        final long start = System.nanoTime();
+                        final ViewHolder holder = createHolder(parent, adapter, viewType);
+                        mPool.factorInCreateTime(viewType, System.nanoTime() - start);
+                        if (!pool(holder)) {
+                            // the pool rejected the holder, more attempts would only loop
+                            mIdleHandlerAdded = false;
+                            return false;
+                        }
+                        // one holder per idle pass, check again on the next one
+                        return true;
+                    }
+                }
+                mIdleHandlerAdded = false;
+                return false;
+            }
+
+            boolean pool(ViewHolder holder) {
+                final int viewType = holder.getItemViewType();
+                final int countBefore = mPool.getRecycledViewCount(viewType);
+                mPool.putRecycledView(holder);
+                return mPool.getRecycledViewCount(viewType) > countBefore;
+            }
+
+            static ViewHolder createHolder(RecyclerView parent, Adapter adapter, int viewType) {
+                final ViewHolder holder = adapter.createViewHolder(parent, viewType);
+                if (ALLOW_THREAD_GAP_WORK) {
+                    RecyclerView innerView = findNestedRecyclerView(holder.itemView);
+                    if (innerView != null) {
+                        holder.mNestedRecyclerView = new WeakReference<>(innerView);
+                    }
+                }
+                return holder;
+            }
+
+            class AsyncCreate implements Runnable {
+                final WeakReference<RecyclerView> mParentRef;
+                final Adapter mAdapter;
+                final int mViewType;
+                final int mScheduledGeneration;
+
+                AsyncCreate(RecyclerView parent, Adapter adapter, int viewType, int generation) {
+                    mParentRef = new WeakReference<>(parent);
+                    mAdapter = adapter;
+                    mViewType = viewType;
+                    mScheduledGeneration = generation;
+                }
+
+                @Override
+                public void run() {
+                    if (mScheduledGeneration != mGeneration) {
+                        // cancel() already reset the pending count
+                        return;
+                    }
+                    final RecyclerView parent = mParentRef.get();
+                    if (parent == null) {
+                        postResult(null);
+                        return;
+                    }
+                    ViewHolder holder = null;
+                    try {
+                        holder = createHolder(parent, mAdapter, mViewType);
+                    } catch (RuntimeException e) {
+                        Log.w(TAG, "Failed to pre-inflate view type " + mViewType
+                                + " in the background", e);
+                    }
+                    postResult(holder);
+                }
+
+                /**
+                 * Settles this request on the main thread, pooling the holder if one was created.
+                 */
+                private void postResult(@Nullable final ViewHolder holder) {
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (mScheduledGeneration != mGeneration) {
+                                return;
+                            }
+                            mPool.getScrapDataForType(mViewType).mPendingPreInflateCount--;
+                            if (holder != null) {
+                                pool(holder);
+                            }
+                        }
+                    });
+                }
+            }
+        }
     }
 
     /**
@@ -7113,13 +7765,39 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             final int viewType = holder.getItemViewType();
             long startBindNs = getNanoTime();
             if (deadlineNs != FOREVER_NS
-                    && !mRecyclerPool.willBindInTime(viewType, startBindNs, deadlineNs)) {
+                    && !willBindInTime(viewType, startBindNs, deadlineNs)) {
                 // abort - we have a deadline we can't meet
                 return false;
             }
+            if (mAdapter.isBindPreparationEnabled()) {
+                if (deadlineNs != FOREVER_NS && mBindPreparer.isPending(offsetPosition)) {
+                    // abort - prefetch again once the worker has prepared the bind
+                    return false;
+                }
+                final Object preparedBind = mBindPreparer.consume(offsetPosition);
+                if (holder.getUnmodifiedPayloads().isEmpty()) {
+                    // prepared binds are full binds, partial ones go through onBindViewHolder
+                    holder.mPreparedBind = preparedBind;
+                }
+            }
             mAdapter.bindViewHolder(holder, offsetPosition);
             long endBindNs = getNanoTime();
             mRecyclerPool.factorInBindTime(holder.getItemViewType(), endBindNs - startBindNs);
+            if (mAdaptivePrefetchEnabled) {
+                recordBindCost(holder.getItemViewType(), endBindNs - startBindNs);
+            }
+            if (mMetrics != null) {
+                mMetrics.recordBind(viewType, endBindNs - startBindNs);
+                if (deadlineNs != FOREVER_NS) {
+                    holder.mPrefetched = true;
+                } else if (mGapWorker != null && mScrollState != SCROLL_STATE_IDLE
+                        && !mState.isPreLayout()
+                        && mPrefetchRegistry.lastPrefetchIncludedPosition(position)) {
+                    // only binds prefetch was meant to spare count, not the ones of first
+                    // layouts, data set changes or item changes
+                    mMetrics.onPrefetchMiss();
+                }
+            }
             attachAccessibilityDelegateOnBind(holder);
             if (mState.isPreLayout()) {
                 holder.mPreLayoutPosition = position;
@@ -7127,6 +7805,18 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             return true;
         }
 
+        private boolean willBindInTime(int viewType, long approxCurrentNs, long deadlineNs) {
+            if (mAdaptivePrefetchEnabled) {
+                final CostHistogram histogram = mBindCostHistograms.get(viewType);
+                if (histogram != null
+                        && histogram.getSampleCount() >= MIN_ADAPTIVE_BIND_SAMPLES) {
+                    return approxCurrentNs + histogram.getPercentileNs(ADAPTIVE_BIND_PERCENTILE)
+                            < deadlineNs;
+                }
+            }
+            return mRecyclerPool.willBindInTime(viewType, approxCurrentNs, deadlineNs);
+        }
+
         /**
          * Binds the given View to the position. The View can be a View previously retrieved via
          * {@link #getViewForPosition(int)} or created by
@@ -7325,6 +8015,9 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
                                 + position + ") fetching from shared pool");
                     }
                     holder = getRecycledViewPool().getRecycledView(type);
+                    if (mMetrics != null) {
+                        mMetrics.onPoolLookup(holder != null);
+                    }
                     if (holder != null) {
                         holder.resetInternal();
                         if (FORCE_INVALIDATE_DISPLAY_LIST) {
@@ -7350,12 +8043,22 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
 
                     long end = getNanoTime();
                     mRecyclerPool.factorInCreateTime(type, end - start);
+                    if (mMetrics != null) {
+                        mMetrics.recordCreate(type, end - start);
+                    }
                     if (DEBUG) {
                         Log.d(TAG, "tryGetViewHolderForPositionByDeadline created new ViewHolder");
                     }
                 }
             }
 
+            if (holder.mPrefetched && deadlineNs == FOREVER_NS && !dryRun) {
+                holder.mPrefetched = false;
+                if (mMetrics != null) {
+                    mMetrics.onPrefetchHit();
+                }
+            }
+
             // This is very ugly but the only place we can grab this information
             // before the View is rebound and returned to the LayoutManager for post layout ops.
             // We don't need this in pre-layout since the VH is not updated by the LM.
@@ -7524,6 +8227,12 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             if (DEBUG) {
                 Log.d(TAG, "CachedViewHolder to be recycled: " + viewHolder);
             }
+            if (viewHolder.mPrefetched) {
+                viewHolder.mPrefetched = false;
+                if (mMetrics != null) {
+                    mMetrics.onPrefetchUnused();
+                }
+            }
             addViewHolderToRecycledViewPool(viewHolder, true);
             mCachedViews.remove(cachedViewIndex);
         }
@@ -8100,6 +8809,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
     public abstract static class Adapter<VH extends ViewHolder> {
         private final AdapterDataObservable mObservable = new AdapterDataObservable();
         private boolean mHasStableIds = false;
+        private boolean mBindPreparationEnabled = false;
         private StateRestorationPolicy mStateRestorationPolicy = StateRestorationPolicy.ALLOW;
 
         /**
@@ -8181,6 +8891,109 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             onBindViewHolder(holder, position);
         }
 
+        /**
+         * Enables the two-phase bind contract for this adapter.
+         * <p>
+         * When enabled, RecyclerView calls {@link #onPrepareBind(int)} on a background worker
+         * for the positions it is about to prefetch, and later hands the result to
+         * {@link #onBindPreparedViewHolder(ViewHolder, int, Object)} on the main thread. This
+         * moves data preparation like text layout, span building or image sizing off the UI
+         * thread, leaving only the cheap view updates to the bind.
+         * <p>
+         * Positions that RecyclerView needs before their preparation has finished, or that are
+         * bound with partial payloads, are bound with {@link #onBindViewHolder(ViewHolder, int,
+         * List)} as usual. Prepared binds are discarded whenever the adapter notifies a change.
+         *
+         * @param enabled Whether binds should be prepared in the background.
+         * @see #onPrepareBind(int)
+         */
+        public void setBindPreparationEnabled(boolean enabled) {
+            if (hasObservers()) {
+                throw new IllegalStateException("Cannot change whether this adapter prepares "
+                        + "binds while the adapter has registered observers.");
+            }
+            mBindPreparationEnabled = enabled;
+        }
+
+        /**
+         * Returns true if this adapter prepares binds in the background.
+         *
+         * @see #setBindPreparationEnabled(boolean)
+         */
+        public final boolean isBindPreparationEnabled() {
+            return mBindPreparationEnabled;
+        }
+
+        /**
+         * Sets whether binds are prepared without the observer check, for a {@link ConcatAdapter}
+         * that follows its nested adapters.
+         */
+        void setBindPreparationEnabledInternal(boolean enabled) {
+            mBindPreparationEnabled = enabled;
+        }
+
+        /**
+         * Points the job at the adapter and position whose {@link #onPrepareBind(int)} prepares
+         * the given position of this adapter. Called on the main thread.
+         *
+         * @return false if the bind of the position isn't prepared.
+         */
+        boolean resolveBindPreparation(@NonNull BindPreparer.Job job, int position) {
+            job.mTargetAdapter = this;
+            job.mTargetPosition = position;
+            return true;
+        }
+
+        /**
+         * Called on a background worker to prepare the bind of the item at the given position,
+         * when {@link #setBindPreparationEnabled(boolean) bind preparation} is enabled.
+         * <p>
+         * The returned object should be immutable and hold everything the main thread needs to
+         * display the item. This method runs concurrently with the main thread, so it must only
+         * read data that isn't modified while it runs, for example an immutable snapshot of the
+         * list that is only swapped before notifying the change.
+         *
+         * @param position The position of the item within the adapter's data set.
+         * @return The prepared bind, or null to bind this position with
+         * {@link #onBindViewHolder(ViewHolder, int, List)}.
+         */
+        @WorkerThread
+        @Nullable
+        public Object onPrepareBind(int position) {
+            return null;
+        }
+
+        /**
+         * Called by RecyclerView instead of {@link #onBindViewHolder(ViewHolder, int, List)} when
+         * the bind of the given position was prepared by {@link #onPrepareBind(int)}. The default
+         * implementation ignores the prepared bind and calls
+         * {@link #onBindViewHolder(ViewHolder, int)}.
+         *
+         * @param holder       The ViewHolder which should be updated to represent the contents of
+         *                     the item at the given position in the data set.
+         * @param position     The position of the item within the adapter's data set.
+         * @param preparedBind The non-null object returned by {@link #onPrepareBind(int)}.
+         */
+        public void onBindPreparedViewHolder(@NonNull VH holder, int position,
+                @NonNull Object preparedBind) {
+            onBindViewHolder(holder, position);
+        }
+
+        /**
+         * Called on the main thread for positions RecyclerView is about to prefetch, so the
+         * adapter can declare the text it is going to display there. Declared text is measured
+         * into a {@link PrecomputedTextCompat} on a background worker, and can be picked up
+         * during the bind with {@link RecyclerView#getPrefetchedText(CharSequence,
+         * PrecomputedTextCompat.Params)}.
+         * <p>
+         * The default implementation declares nothing.
+         *
+         * @param position The position of the item within the adapter's data set.
+         * @param registry Registry to declare the text and params with.
+         */
+        public void onPrefetchText(int position, @NonNull TextPrefetchRegistry registry) {
+        }
+
         /**
          * Returns the position of the given {@link ViewHolder} in the given {@link Adapter}.
          *
@@ -8261,7 +9074,13 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
                 TraceCompat.beginSection(TRACE_BIND_VIEW_TAG);
             }
             holder.mBindingAdapter = this;
-            onBindViewHolder(holder, position, holder.getUnmodifiedPayloads());
+            final Object preparedBind = holder.mPreparedBind;
+            if (preparedBind != null) {
+                holder.mPreparedBind = null;
+                onBindPreparedViewHolder(holder, position, preparedBind);
+            } else {
+                onBindViewHolder(holder, position, holder.getUnmodifiedPayloads());
+            }
             if (rootBind) {
                 holder.clearPayload();
                 final ViewGroup.LayoutParams layoutParams = holder.itemView.getLayoutParams();
@@ -12170,6 +12989,10 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         long mItemId = NO_ID;
         int mItemViewType = INVALID_TYPE;
         int mPreLayoutPosition = NO_POSITION;
+        // Index of this holder's record in the ViewInfoStore, if it is tracked for animations
+        int mInfoRecordIndex = NO_POSITION;
+        // Index of this holder's view in ChildHelper's hidden views, if it is hidden
+        int mHiddenViewIndex = NO_POSITION;
 
         // The item that this holder is shadowing during an item change event/animation
         ViewHolder mShadowedHolder = null;
@@ -12298,6 +13121,19 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
          */
         RecyclerView mOwnerRecyclerView;
 
+        // Set by RecycledViewPool when the holder enters the pool, for idle eviction and byte
+        // budgets.
+        long mPooledTimeNs;
+        long mPooledBytes;
+
+        // Result of Adapter#onPrepareBind, only set during Adapter#bindViewHolder.
+        Object mPreparedBind;
+
+        // Frame cost metrics: whether the holder was bound by a prefetch and not used by a layout
+        // yet, and when its current item animation started.
+        boolean mPrefetched;
+        long mAnimationStartNs;
+
         // The last adapter that bound this ViewHolder. It is cleaned before VH is recycled.
         Adapter<? extends ViewHolder> mBindingAdapter;
 
@@ -12642,6 +13478,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
 
         void resetInternal() {
             mFlags = 0;
+            mPrefetched = false;
             mPosition = NO_POSITION;
             mOldPosition = NO_POSITION;
             mItemId = NO_ID;
@@ -14053,8 +14890,19 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         ItemAnimatorRestoreListener() {
         }
 
+        @Override
+        public void onAnimationStarted(ViewHolder item) {
+            if (mMetrics != null) {
+                item.mAnimationStartNs = System.nanoTime();
+            }
+        }
+
         @Override
         public void onAnimationFinished(ViewHolder item) {
+            if (mMetrics != null && item.mAnimationStartNs != 0) {
+                mMetrics.recordItemAnimation(System.nanoTime() - item.mAnimationStartNs);
+            }
+            item.mAnimationStartNs = 0;
             item.setIsRecyclable(true);
             if (item.mShadowedHolder != null && item.mShadowingHolder == null) { // old vh
                 item.mShadowedHolder = null;
@@ -14607,6 +15455,9 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
          */
         public final void dispatchAnimationStarted(@NonNull ViewHolder viewHolder) {
             onAnimationStarted(viewHolder);
+            if (mListener != null) {
+                mListener.onAnimationStarted(viewHolder);
+            }
         }
 
         /**
@@ -14732,6 +15583,8 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
          * create directly.
          */
         interface ItemAnimatorListener {
+            void onAnimationStarted(@NonNull ViewHolder item);
+
             void onAnimationFinished(@NonNull ViewHolder item);
         }
 
@@ -14866,6 +15719,41 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         int onGetChildDrawingOrder(int childCount, int i);
     }
 
+    /**
+     * Listener notified of the frame cost metrics of a RecyclerView.
+     *
+     * @see RecyclerView#setMetricsListener(MetricsListener)
+     */
+    public interface MetricsListener {
+        /**
+         * Called after every layout pass while metrics are enabled.
+         *
+         * @param recyclerView The RecyclerView that was laid out.
+         * @param metrics      The metrics recorded so far, including this layout pass.
+         * @param durationNs   How long this layout pass took.
+         */
+        void onLayoutPassCompleted(@NonNull RecyclerView recyclerView,
+                @NonNull RecyclerViewMetrics metrics, long durationNs);
+    }
+
+    /**
+     * Collects the text an {@link Adapter} is going to display at a position RecyclerView is
+     * about to prefetch, so it can be measured in the background.
+     *
+     * @see Adapter#onPrefetchText(int, TextPrefetchRegistry)
+     */
+    public interface TextPrefetchRegistry {
+        /**
+         * Requests the given text to be precomputed with the given params. Text that is already
+         * cached or being computed is not computed again.
+         *
+         * @param text   The text to precompute.
+         * @param params The params of the TextView the text will be set on.
+         * @see RecyclerView#getPrefetchedText(CharSequence, PrecomputedTextCompat.Params)
+         */
+        void addText(@NonNull CharSequence text, @NonNull PrecomputedTextCompat.Params params);
+    }
+
     private NestedScrollingChildHelper getScrollingChildHelper() {
         if (mScrollingChildHelper == null) {
             mScrollingChildHelper = new NestedScrollingChildHelper(this);
@@ -15001,10 +15889,6 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         final int touchX = (int) (ev.getX() + 0.5f);
         final int touchY = (int) (ev.getY() + 0.5f);
 
-        if (mPenDragSelectedItemArray == null) {
-            mPenDragSelectedItemArray = new ArrayList<>();
-        }
-
         final int contentTop;
         final int contentBottom;
         if (mIsEnabledPaddingInHoverScroll) {
@@ -15070,7 +15954,8 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
                     mPenDragBlockTop = 0;
                     mPenDragBlockRight = 0;
                     mPenDragBlockBottom = 0;
-                    mPenDragSelectedItemArray.clear();
+                    mMultiSelectionEngine.reset();
+                    mSelectionAutoScroller.stop();
                     mPenTrackedChild = null;
                     mPenDistanceFromTrackedChildTop = 0;
 
@@ -15126,9 +16011,6 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             break;
 
             case MOTION_EVENT_ACTION_PEN_DOWN: {
-                if (mPenDragSelectedItemArray == null) {
-                    mPenDragSelectedItemArray = new ArrayList<>();
-                }
                 return super.dispatchTouchEvent(ev);
             }
 
@@ -16044,15 +16926,12 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             mPenDragStartX = x;
             mPenDragStartY = y;
 
-            mPenTrackedChild = findChildViewUnder(x, y);
+            mPenTrackedChild = mMultiSelectionEngine.findChildNear(x, y);
             if (mPenTrackedChild == null) {
-                mPenTrackedChild = seslFindNearChildViewUnder(x, y);
-                if (mPenTrackedChild == null) {
-                    Log.e("SeslRecyclerView",
-                            "updateLongPressMultiSelection, mPenTrackedChild is NULL");
-                    mIsFirstMultiSelectionMove = false;
-                    return;
-                }
+                Log.e("SeslRecyclerView",
+                        "updateLongPressMultiSelection, mPenTrackedChild is NULL");
+                mIsFirstMultiSelectionMove = false;
+                return;
             }
 
             if (mLongPressMultiSelectionListener != null) {
@@ -16064,6 +16943,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             mPenDragSelectedViewPosition = childLayoutPosition;
             mPenDistanceFromTrackedChildTop = mPenDragStartY - mPenTrackedChild.getTop();
             mIsFirstMultiSelectionMove = false;
+            mMultiSelectionEngine.start(childLayoutPosition);
         }
 
         final int contentTop;
@@ -16086,14 +16966,11 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             mPenDragEndY = contentBottom;
         }
 
-        View touchedView = findChildViewUnder(mPenDragEndX, mPenDragEndY);
+        final View touchedView = mMultiSelectionEngine.findChildNear(mPenDragEndX, mPenDragEndY);
         if (touchedView == null) {
-            touchedView = seslFindNearChildViewUnder(mPenDragEndX, mPenDragEndY);
-            if (touchedView == null) {
-                Log.e("SeslRecyclerView",
-                        "updateLongPressMultiSelection, touchedView is NULL");
-                return;
-            }
+            Log.e("SeslRecyclerView",
+                    "updateLongPressMultiSelection, touchedView is NULL");
+            return;
         }
 
         final int touchedPosition = getChildLayoutPosition(touchedView);
@@ -16104,16 +16981,6 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
 
         mPenDragSelectedViewPosition = touchedPosition;
 
-        final int startPosition;
-        final int endPosition;
-        if (mPenTrackedChildPosition < mPenDragSelectedViewPosition) {
-            startPosition = mPenTrackedChildPosition;
-            endPosition = mPenDragSelectedViewPosition;
-        } else {
-            startPosition = mPenDragSelectedViewPosition;
-            endPosition = mPenTrackedChildPosition;
-        }
-
         if (mPenDragStartX < mPenDragEndX) {
             mPenDragBlockLeft = mPenDragStartX;
         } else {
@@ -16138,109 +17005,199 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             mPenDragBlockBottom = mPenDragStartY;
         }
 
-        final int childCount = mChildHelper.getChildCount();
-        for (int i = 0; i < childCount; i++) {
-            final View child = getChildAt(i);
-            if (child != null) {
-                mPenDragSelectedViewPosition = getChildLayoutPosition(child);
-
-                if (child.getVisibility() == View.VISIBLE) {
-                    final boolean needSelected;
-                    if (startPosition > mPenDragSelectedViewPosition
-                            || mPenDragSelectedViewPosition > endPosition
-                            || mPenDragSelectedViewPosition == mPenTrackedChildPosition) {
-                        needSelected = false;
-                    } else {
-                        needSelected = true;
-                    }
+        mMultiSelectionEngine.updateSelection(touchedPosition, mLongPressMultiSelectionListener);
 
-                    // wrap mPenDragSelectedViewPosition in order to call
-                    // remove(Object o) instead of remove(int index)
-                    if (needSelected) {
-                        if (mPenDragSelectedViewPosition != NO_POSITION
-                                && !mPenDragSelectedItemArray.contains(
-                                        Integer.valueOf(mPenDragSelectedViewPosition))) {
-                            mPenDragSelectedItemArray.add(Integer.valueOf(mPenDragSelectedViewPosition));
-                            if (mLongPressMultiSelectionListener != null) {
-                                mLongPressMultiSelectionListener.onItemSelected(this, child,
-                                        mPenDragSelectedViewPosition, getChildItemId(child));
-                            }
-                        }
-                    } else {
-                        if (mPenDragSelectedViewPosition != NO_POSITION
-                                && mPenDragSelectedItemArray.contains(
-                                        Integer.valueOf(mPenDragSelectedViewPosition))) {
-                            mPenDragSelectedItemArray.remove(Integer.valueOf(mPenDragSelectedViewPosition));
-                            if (mLongPressMultiSelectionListener != null) {
-                                mLongPressMultiSelectionListener.onItemSelected(this, child,
-                                        mPenDragSelectedViewPosition, getChildItemId(child));
-                            }
-                        }
-                    }
+        if (fromUserTouch) {
+            mSelectionAutoScroller.update(y, contentTop, contentBottom);
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Scrolls once per frame while a long-press or pen multi-selection is held in the top or
+     * bottom hover area. The speed ramps up with how deep into the area, or past the edge, the
+     * pointer is, and every scrolled frame feeds the newly exposed items into the selection.
+     * <p>
+     * Like the hover scroll loop it replaces for selections, it tells the scroll listener when
+     * the pointer enters and leaves the area, waits {@link #mPenDragScrollTimeInterval} before a
+     * pen selection starts scrolling, and shows the edge glow once the end of the list is hit.
+     */
+    class SelectionAutoScroller implements Runnable {
+        // speeds in dp per second
+        private static final float MIN_SPEED = 150f;
+        private static final float MAX_SPEED = 2500f;
+        // pointer depth, relative to the hover area height, at which the speed maxes out, so the
+        // fastest speed is reached a bit past the edge of the list
+        private static final float MAX_SPEED_DEPTH = 1.5f;
+        // a janky frame scrolls at most as far as this, instead of jumping
+        private static final long MAX_FRAME_NS = 50_000_000L;
+
+        private boolean mRunning;
+        // px per second, positive scrolls towards the end of the list
+        private float mVelocity;
+        private float mRemainder;
+        private long mLastFrameTimeNs;
+
+        void update(int y, int contentTop, int contentBottom) {
+            final int topEdge = contentTop + mHoverTopAreaHeight;
+            final int bottomEdge = contentBottom - mHoverBottomAreaHeight
+                    - mRemainNestedScrollRange;
+            final float depth;
+            if (y < topEdge) {
+                depth = -(topEdge - y) / (float) Math.max(1, mHoverTopAreaHeight);
+            } else if (y > bottomEdge) {
+                depth = (y - bottomEdge) / (float) Math.max(1, mHoverBottomAreaHeight);
+            } else {
+                stop();
+                return;
+            }
+            if (!mHoverAreaEnter) {
+                mHoverAreaEnter = true;
+                mHoverScrollStartTime = System.currentTimeMillis();
+                if (mScrollListener != null) {
+                    mScrollListener.onScrollStateChanged(RecyclerView.this,
+                            SCROLL_STATE_DRAGGING);
                 }
             }
+            final float fraction = Math.min(Math.abs(depth), MAX_SPEED_DEPTH) / MAX_SPEED_DEPTH;
+            final float speed = (MIN_SPEED + (MAX_SPEED - MIN_SPEED) * fraction * fraction)
+                    * getResources().getDisplayMetrics().density;
+            final float velocity = depth < 0 ? -speed : speed;
+            if (velocity * mVelocity < 0) {
+                // turned around, the other edge may glow again
+                mIsHoverOverscrolled = false;
+            }
+            mVelocity = velocity;
+            if (!mRunning && mAdapter != null && mLayout != null) {
+                mRunning = true;
+                mRemainder = 0;
+                mLastFrameTimeNs = System.nanoTime();
+                startNestedScroll(mLayout.canScrollHorizontally()
+                        ? ViewCompat.SCROLL_AXIS_HORIZONTAL
+                        : ViewCompat.SCROLL_AXIS_VERTICAL, TYPE_NON_TOUCH);
+                ViewCompat.postOnAnimation(RecyclerView.this, this);
+            }
         }
 
-        if (fromUserTouch) {
-            final int touchYDiff = mLastTouchY - y;
-            if (Math.abs(touchYDiff) >= mTouchSlop) {
-                if (y > contentTop + mHoverTopAreaHeight || touchYDiff <= 0) {
-                    if (y >= contentBottom - mHoverBottomAreaHeight - mRemainNestedScrollRange
-                            && touchYDiff < 0) {
-                        if (!mHoverAreaEnter) {
-                            mHoverAreaEnter = true;
-                            mHoverScrollStartTime = System.currentTimeMillis();
-                            if (mScrollListener != null) {
-                                mScrollListener.onScrollStateChanged(this,
-                                        SCROLL_STATE_DRAGGING);
-                            }
-                        }
-
-                        if (!mHoverHandler.hasMessages(MSG_HOVERSCROLL_MOVE)) {
-                            mHoverRecognitionStartTime = System.currentTimeMillis();
-                            mHoverScrollDirection = HOVERSCROLL_UP;
-                            mHoverHandler.sendEmptyMessage(MSG_HOVERSCROLL_MOVE);
-                        }
-                    } else {
-                        if (mHoverAreaEnter) {
-                            if (mScrollListener != null) {
-                                mScrollListener.onScrollStateChanged(this,
-                                        SCROLL_STATE_IDLE);
-                            }
-                        }
+        /**
+         * Stops scrolling and, if the pointer was in the hover area, tells the scroll listener
+         * it left.
+         */
+        void stop() {
+            pause();
+            if (mHoverAreaEnter) {
+                mHoverAreaEnter = false;
+                if (mScrollListener != null) {
+                    mScrollListener.onScrollStateChanged(RecyclerView.this, SCROLL_STATE_IDLE);
+                }
+            }
+            mHoverScrollStartTime = 0;
+            mIsHoverOverscrolled = false;
+            mVelocity = 0;
+        }
 
-                        mHoverScrollStartTime = 0;
-                        mHoverRecognitionStartTime = 0;
-                        mHoverAreaEnter = false;
-                        if (mHoverHandler.hasMessages(MSG_HOVERSCROLL_MOVE)) {
-                            mHoverHandler.removeMessages(MSG_HOVERSCROLL_MOVE);
-                            if (mScrollState == SCROLL_STATE_DRAGGING) {
-                                setScrollState(SCROLL_STATE_IDLE);
-                            }
-                        }
+        // Stops the frame loop only, the next pointer move in the area starts it again.
+        private void pause() {
+            if (!mRunning) {
+                return;
+            }
+            mRunning = false;
+            removeCallbacks(this);
+            stopNestedScroll(TYPE_NON_TOUCH);
+            if (mScrollState == SCROLL_STATE_DRAGGING) {
+                setScrollState(SCROLL_STATE_IDLE);
+            }
+        }
 
-                        mIsHoverOverscrolled = false;
+        @Override
+        public void run() {
+            if (!mRunning) {
+                return;
+            }
+            if (mAdapter == null || mLayout == null) {
+                stop();
+                return;
+            }
+            final long now = System.nanoTime();
+            if (mIsPenPressed && System.currentTimeMillis() - mHoverScrollStartTime
+                    < mPenDragScrollTimeInterval) {
+                // the pen has to dwell in the area before it scrolls
+                mLastFrameTimeNs = now;
+                ViewCompat.postOnAnimation(RecyclerView.this, this);
+                return;
+            }
+            final float seconds = Math.min(now - mLastFrameTimeNs, MAX_FRAME_NS) / 1e9f;
+            mLastFrameTimeNs = now;
+            final float distance = mVelocity * seconds + mRemainder;
+            final int offset = (int) distance;
+            mRemainder = distance - offset;
+
+            if (offset != 0) {
+                final boolean canScrollHorizontally = mLayout.canScrollHorizontally();
+                final boolean isRtl = mLayout.getLayoutDirection() == View.LAYOUT_DIRECTION_RTL;
+                final int dx = canScrollHorizontally ? (isRtl ? -offset : offset) : 0;
+                final int dy = mLayout.canScrollVertically() ? offset : 0;
+                if (dispatchNestedPreScroll(dx, dy, null, null, TYPE_NON_TOUCH)) {
+                    adjustNestedScrollRangeBy(offset);
+                } else if (scrollByInternal(dx, dy, null, TYPE_TOUCH)) {
+                    setScrollState(SCROLL_STATE_DRAGGING);
+                    if (mIsLongPressMultiSelection) {
+                        updateLongPressMultiSelection(mPenDragEndX, mPenDragEndY, false);
+                    } else {
+                        invalidate();
                     }
                 } else {
-                    if (!mHoverAreaEnter) {
-                        mHoverAreaEnter = true;
-                        mHoverScrollStartTime = System.currentTimeMillis();
-                        if (mScrollListener != null) {
-                            mScrollListener.onScrollStateChanged(this,
-                                    SCROLL_STATE_DRAGGING);
-                        }
-                    }
+                    // reached the end of the list
+                    absorbAtEdge(canScrollHorizontally, canScrollHorizontally ? dx : dy);
+                    pause();
+                    return;
+                }
+            }
+            ViewCompat.postOnAnimation(RecyclerView.this, this);
+        }
 
-                    if (!mHoverHandler.hasMessages(MSG_HOVERSCROLL_MOVE)) {
-                        mHoverRecognitionStartTime = System.currentTimeMillis();
-                        mHoverScrollDirection = HOVERSCROLL_DOWN;
-                        mHoverHandler.sendEmptyMessage(MSG_HOVERSCROLL_MOVE);
+        // Shows the glow of the edge the list stopped at, once until the pointer turns around
+        // or leaves the area.
+        private void absorbAtEdge(boolean horizontal, int delta) {
+            if (mIsHoverOverscrolled) {
+                return;
+            }
+            mIsHoverOverscrolled = true;
+            final int overScrollMode = getOverScrollMode();
+            final boolean canOverScroll = overScrollMode == OVER_SCROLL_ALWAYS
+                    || (overScrollMode == OVER_SCROLL_IF_CONTENT_SCROLLS && !contentFits());
+            if (!canOverScroll) {
+                return;
+            }
+            if (horizontal) {
+                ensureLeftGlow();
+                ensureRightGlow();
+                final EdgeEffect absorbing = delta < 0 ? mLeftGlow : mRightGlow;
+                final EdgeEffect releasing = delta < 0 ? mRightGlow : mLeftGlow;
+                absorbing.onAbsorb(ON_ABSORB_VELOCITY);
+                if (!releasing.isFinished()) {
+                    releasing.onRelease();
+                }
+            } else {
+                ensureTopGlow();
+                ensureBottomGlow();
+                if (delta < 0) {
+                    mTopGlow.onAbsorb(ON_ABSORB_VELOCITY);
+                    if (!mBottomGlow.isFinished()) {
+                        mBottomGlow.onRelease();
+                    }
+                } else {
+                    mBottomGlow.onAbsorb(ON_ABSORB_VELOCITY);
+                    setupGoToTop(GTP_STATE_SHOWN);
+                    autoHide(GTP_STATE_SHOWN);
+                    if (!mTopGlow.isFinished()) {
+                        mTopGlow.onRelease();
                     }
                 }
             }
+            invalidate();
         }
-
-        invalidate();
     }
 
     private void multiSelection(int x, int y, int contentTop, int contentBottom,
@@ -16251,16 +17208,13 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
                 mPenDragStartY = y;
                 mIsPenPressed = true;
 
-                mPenTrackedChild = findChildViewUnder(x, y);
+                mPenTrackedChild = mMultiSelectionEngine.findChildNear(x, y);
                 if (mPenTrackedChild == null) {
-                    mPenTrackedChild = seslFindNearChildViewUnder(x, y);
-                    if (mPenTrackedChild == null) {
-                        Log.e("SeslRecyclerView",
-                                "multiSelection, mPenTrackedChild is NULL");
-                        mIsPenPressed = false;
-                        mIsFirstPenMoveEvent = false;
-                        return;
-                    }
+                    Log.e("SeslRecyclerView",
+                            "multiSelection, mPenTrackedChild is NULL");
+                    mIsPenPressed = false;
+                    mIsFirstPenMoveEvent = false;
+                    return;
                 }
 
                 if (mOnMultiSelectedListener != null) {
@@ -16320,58 +17274,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         }
 
         if (needToScroll) {
-            if (y > contentTop + mHoverTopAreaHeight) {
-                if (y < contentBottom - mHoverBottomAreaHeight - mRemainNestedScrollRange) {
-                    if (mHoverAreaEnter) {
-                        if (mScrollListener != null) {
-                            mScrollListener.onScrollStateChanged(this,
-                                    SCROLL_STATE_IDLE);
-                        }
-                    }
-
-                    mHoverScrollStartTime = 0;
-                    mHoverRecognitionStartTime = 0;
-                    mHoverAreaEnter = false;
-                    if (mHoverHandler.hasMessages(MSG_HOVERSCROLL_MOVE)) {
-                        mHoverHandler.removeMessages(MSG_HOVERSCROLL_MOVE);
-                        if (mScrollState == SCROLL_STATE_DRAGGING) {
-                            setScrollState(SCROLL_STATE_IDLE);
-                        }
-                    }
-
-                    mIsHoverOverscrolled = false;
-                } else {
-                    if (!mHoverAreaEnter) {
-                        mHoverAreaEnter = true;
-                        mHoverScrollStartTime = System.currentTimeMillis();
-                        if (mScrollListener != null) {
-                            mScrollListener.onScrollStateChanged(this,
-                                    SCROLL_STATE_DRAGGING);
-                        }
-                    }
-
-                    if (!mHoverHandler.hasMessages(MSG_HOVERSCROLL_MOVE)) {
-                        mHoverRecognitionStartTime = System.currentTimeMillis();
-                        mHoverScrollDirection = HOVERSCROLL_UP;
-                        mHoverHandler.sendEmptyMessage(MSG_HOVERSCROLL_MOVE);
-                    }
-                }
-            } else {
-                if (!mHoverAreaEnter) {
-                    mHoverAreaEnter = true;
-                    mHoverScrollStartTime = System.currentTimeMillis();
-                    if (mScrollListener != null) {
-                        mScrollListener.onScrollStateChanged(this,
-                                SCROLL_STATE_DRAGGING);
-                    }
-                }
-
-                if (!mHoverHandler.hasMessages(MSG_HOVERSCROLL_MOVE)) {
-                    mHoverRecognitionStartTime = System.currentTimeMillis();
-                    mHoverScrollDirection = HOVERSCROLL_DOWN;
-                    mHoverHandler.sendEmptyMessage(MSG_HOVERSCROLL_MOVE);
-                }
-            }
+            mSelectionAutoScroller.update(y, contentTop, contentBottom);
 
             if (mIsPenDragBlockEnabled) {
                 invalidate();
@@ -16387,7 +17290,8 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         mIsPenPressed = false;
         mIsFirstPenMoveEvent = true;
         mPenDragSelectedViewPosition = NO_POSITION;
-        mPenDragSelectedItemArray.clear();
+        mMultiSelectionEngine.reset();
+        mSelectionAutoScroller.stop();
         mPenDragStartX = 0;
         mPenDragStartY = 0;
         mPenDragEndX = 0;
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.recyclerview.widget;
+
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+
+import java.io.PrintWriter;
+
+/**
+ * Frame cost counters of a {@link RecyclerView}, see
+ * {@link RecyclerView#setMetricsEnabled(boolean)}.
+ * <p>
+ * Everything is kept in primitive counters and fixed size buffers, so recording doesn't allocate
+ * after the first sample of each view type, and metrics can be left enabled in production builds.
+ * Create and bind times are kept per view type in log-scale histograms in which older samples
+ * fade out. Layout pass and item animation durations are kept in ring buffers of the last
+ * {@link #RECENT_SAMPLE_COUNT} samples. Counts are totals since the metrics were enabled or
+ * {@link #reset() reset}.
+ * <p>
+ * Only accessed on the main thread.
+ */
+public final class RecyclerViewMetrics {
+    /**
+     * Number of layout pass and item animation durations kept.
+     */
+    public static final int RECENT_SAMPLE_COUNT = 64;
+
+    private static final class TypeStats {
+        final CostHistogram mCreateTimes = new CostHistogram();
+        final CostHistogram mBindTimes = new CostHistogram();
+        int mCreateCount;
+        int mBindCount;
+    }
+
+    /**
+     * The last {@link #RECENT_SAMPLE_COUNT} durations, and the number of durations ever recorded.
+     */
+    private static final class DurationRing {
+        final long[] mSamplesNs = new long[RECENT_SAMPLE_COUNT];
+        int mNext;
+        int mTotalCount;
+
+        void record(long durationNs) {
+            mSamplesNs[mNext] = durationNs;
+            mNext = (mNext + 1) % RECENT_SAMPLE_COUNT;
+            mTotalCount++;
+        }
+
+        int getRecentCount() {
+            return Math.min(mTotalCount, RECENT_SAMPLE_COUNT);
+        }
+
+        int copyRecent(long[] out) {
+            final int count = Math.min(getRecentCount(), out.length);
+            for (int i = 0; i < count; i++) {
+                out[i] = mSamplesNs[(mNext - 1 - i + RECENT_SAMPLE_COUNT) % RECENT_SAMPLE_COUNT];
+            }
+            return count;
+        }
+
+        long getMeanNs() {
+            final int count = getRecentCount();
+            if (count == 0) {
+                return 0;
+            }
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += mSamplesNs[i];
+            }
+            return sum / count;
+        }
+
+        long getMaxNs() {
+            long max = 0;
+            final int count = getRecentCount();
+            for (int i = 0; i < count; i++) {
+                max = Math.max(max, mSamplesNs[i]);
+            }
+            return max;
+        }
+
+        void clear() {
+            mNext = 0;
+            mTotalCount = 0;
+        }
+    }
+
+    private final SparseArray<TypeStats> mTypeStats = new SparseArray<>();
+    private final DurationRing mLayoutDurations = new DurationRing();
+    private final DurationRing mAnimationDurations = new DurationRing();
+    private int mPrefetchHitCount;
+    private int mPrefetchMissCount;
+    private int mPrefetchUnusedCount;
+    private int mPoolHitCount;
+    private int mPoolMissCount;
+
+    RecyclerViewMetrics() {
+    }
+
+    /**
+     * Returns the number of view types that were created or bound.
+     */
+    public int getViewTypeCount() {
+        return mTypeStats.size();
+    }
+
+    /**
+     * Returns the view type at the given index, from 0 to {@link #getViewTypeCount()} - 1.
+     */
+    public int getViewTypeAt(int index) {
+        return mTypeStats.keyAt(index);
+    }
+
+    /**
+     * Returns how many ViewHolders of the given type were created.
+     */
+    public int getCreateCount(int viewType) {
+        final TypeStats stats = mTypeStats.get(viewType);
+        return stats == null ? 0 : stats.mCreateCount;
+    }
+
+    /**
+     * Returns how many ViewHolders of the given type were bound.
+     */
+    public int getBindCount(int viewType) {
+        final TypeStats stats = mTypeStats.get(viewType);
+        return stats == null ? 0 : stats.mBindCount;
+    }
+
+    /**
+     * Returns the estimated time below which the given fraction of the recent creations of the
+     * view type took, or 0 if none was recorded.
+     *
+     * @param percentile Fraction of samples, in {@code [0, 1]}.
+     */
+    public long getCreateTimePercentileNs(int viewType, float percentile) {
+        final TypeStats stats = mTypeStats.get(viewType);
+        return stats == null ? 0 : stats.mCreateTimes.getPercentileNs(percentile);
+    }
+
+    /**
+     * Returns the estimated time below which the given fraction of the recent binds of the view
+     * type took, or 0 if none was recorded.
+     *
+     * @param percentile Fraction of samples, in {@code [0, 1]}.
+     */
+    public long getBindTimePercentileNs(int viewType, float percentile) {
+        final TypeStats stats = mTypeStats.get(viewType);
+        return stats == null ? 0 : stats.mBindTimes.getPercentileNs(percentile);
+    }
+
+    /**
+     * Returns the number of layout passes.
+     */
+    public int getLayoutPassCount() {
+        return mLayoutDurations.mTotalCount;
+    }
+
+    /**
+     * Copies the durations of the most recent layout passes into the given array, most recent
+     * first.
+     *
+     * @return The number of durations copied, at most {@link #RECENT_SAMPLE_COUNT}.
+     */
+    public int getRecentLayoutDurationsNs(@NonNull long[] out) {
+        return mLayoutDurations.copyRecent(out);
+    }
+
+    /**
+     * Returns the number of item animations that finished.
+     */
+    public int getItemAnimationCount() {
+        return mAnimationDurations.mTotalCount;
+    }
+
+    /**
+     * Copies the durations of the most recent item animations into the given array, most recent
+     * first. An item animation lasts from its start to its end as dispatched by the
+     * {@link RecyclerView.ItemAnimator}.
+     *
+     * @return The number of durations copied, at most {@link #RECENT_SAMPLE_COUNT}.
+     */
+    public int getRecentItemAnimationDurationsNs(@NonNull long[] out) {
+        return mAnimationDurations.copyRecent(out);
+    }
+
+    /**
+     * Returns how many ViewHolders prefetched by {@link GapWorker} were used by a layout.
+     */
+    public int getPrefetchHitCount() {
+        return mPrefetchHitCount;
+    }
+
+    /**
+     * Returns how many ViewHolders had to be bound on the UI thread while scrolling, for positions
+     * {@link GapWorker} had requested but not prefetched in time.
+     */
+    public int getPrefetchMissCount() {
+        return mPrefetchMissCount;
+    }
+
+    /**
+     * Returns how many prefetched ViewHolders were evicted from the view cache without being
+     * used.
+     */
+    public int getPrefetchUnusedCount() {
+        return mPrefetchUnusedCount;
+    }
+
+    /**
+     * Returns how many ViewHolders were found in the {@link RecyclerView.RecycledViewPool}.
+     */
+    public int getPoolHitCount() {
+        return mPoolHitCount;
+    }
+
+    /**
+     * Returns how many times the {@link RecyclerView.RecycledViewPool} had no ViewHolder of the
+     * requested type, so a new one had to be created.
+     */
+    public int getPoolMissCount() {
+        return mPoolMissCount;
+    }
+
+    /**
+     * Returns the fraction of pool lookups that found a ViewHolder, or 0 if there were none.
+     */
+    public float getPoolHitRate() {
+        final int lookups = mPoolHitCount + mPoolMissCount;
+        return lookups == 0 ? 0f : (float) mPoolHitCount / lookups;
+    }
+
+    /**
+     * Clears all counters and samples.
+     */
+    public void reset() {
+        mTypeStats.clear();
+        mLayoutDurations.clear();
+        mAnimationDurations.clear();
+        mPrefetchHitCount = 0;
+        mPrefetchMissCount = 0;
+        mPrefetchUnusedCount = 0;
+        mPoolHitCount = 0;
+        mPoolMissCount = 0;
+    }
+
+    /**
+     * Writes a human readable summary of the metrics.
+     */
+    public void dump(@NonNull PrintWriter writer) {
+        writer.println("RecyclerViewMetrics:");
+        writer.println("  layout passes=" + mLayoutDurations.mTotalCount
+                + " recentMeanUs=" + mLayoutDurations.getMeanNs() / 1000
+                + " recentMaxUs=" + mLayoutDurations.getMaxNs() / 1000);
+        writer.println("  item animations=" + mAnimationDurations.mTotalCount
+                + " recentMeanMs=" + mAnimationDurations.getMeanNs() / 1000000
+                + " recentMaxMs=" + mAnimationDurations.getMaxNs() / 1000000);
+        writer.println("  prefetch hits=" + mPrefetchHitCount + " misses=" + mPrefetchMissCount
+                + " unused=" + mPrefetchUnusedCount);
+        writer.println("  pool hits=" + mPoolHitCount + " misses=" + mPoolMissCount);
+        for (int i = 0; i < mTypeStats.size(); i++) {
+            final TypeStats stats = mTypeStats.valueAt(i);
+            writer.println("  viewType=" + mTypeStats.keyAt(i)
+                    + " creates=" + stats.mCreateCount
+                    + " createP50Us=" + stats.mCreateTimes.getPercentileNs(0.5f) / 1000
+                    + " createP90Us=" + stats.mCreateTimes.getPercentileNs(0.9f) / 1000
+                    + " binds=" + stats.mBindCount
+                    + " bindP50Us=" + stats.mBindTimes.getPercentileNs(0.5f) / 1000
+                    + " bindP90Us=" + stats.mBindTimes.getPercentileNs(0.9f) / 1000);
+        }
+    }
+
+    void recordCreate(int viewType, long durationNs) {
+        final TypeStats stats = getTypeStats(viewType);
+        stats.mCreateTimes.record(durationNs);
+        stats.mCreateCount++;
+    }
+
+    void recordBind(int viewType, long durationNs) {
+        final TypeStats stats = getTypeStats(viewType);
+        stats.mBindTimes.record(durationNs);
+        stats.mBindCount++;
+    }
+
+    void recordLayout(long durationNs) {
+        mLayoutDurations.record(durationNs);
+    }
+
+    void recordItemAnimation(long durationNs) {
+        mAnimationDurations.record(durationNs);
+    }
+
+    void onPoolLookup(boolean hit) {
+        if (hit) {
+            mPoolHitCount++;
+        } else {
+            mPoolMissCount++;
+        }
+    }
+
+    void onPrefetchHit() {
+        mPrefetchHitCount++;
+    }
+
+    void onPrefetchMiss() {
+        mPrefetchMissCount++;
+    }
+
+    void onPrefetchUnused() {
+        mPrefetchUnusedCount++;
+    }
+
+    private TypeStats getTypeStats(int viewType) {
+        TypeStats stats = mTypeStats.get(viewType);
+        if (stats == null) {
+            stats = new TypeStats();
+            mTypeStats.put(viewType, stats);
+        }
+        return stats;
+    }
+}
@@ -39,6 +39,7 @@ import android.text.TextUtils.TruncateAt;
 import android.util.IntProperty;
 import android.util.Log;
 import android.util.Property;
+import android.util.SparseIntArray;
 import android.util.TypedValue;
 import android.view.Gravity;
 import android.view.MotionEvent;
@@ -62,6 +63,8 @@ import androidx.recyclerview.R;
 import androidx.reflect.content.res.SeslConfigurationReflector;
 import androidx.reflect.view.SeslHapticFeedbackConstantsReflector;
 
+import java.util.Arrays;
+
 /*
  * Original code by Samsung, all rights reserved to the original author.
  */
@@ -218,6 +221,12 @@ class SeslRecyclerViewFastScroller {
 
     private Object[] mSections;
 
+    /** Section boundaries of {@link #mSectionIndexer}, null if it has no sections. */
+    private SectionTable mSectionTable;
+
+    /** Estimated content height, used to place the thumb when there are no sections. */
+    private final HeightEstimator mHeightEstimator = new HeightEstimator();
+
     /** Whether this view is currently performing layout. */
     private boolean mUpdatingLayout;
 
@@ -578,6 +587,7 @@ class SeslRecyclerViewFastScroller {
         if (mOldItemCount != itemCount || mOldChildCount != childCount) {
             mOldItemCount = itemCount;
             mOldChildCount = childCount;
+            recordVisibleItemHeights();
 
             final boolean hasMoreItems = itemCount - childCount > 0;
             if (hasMoreItems && mState != STATE_DRAGGING) {
@@ -1035,6 +1045,8 @@ class SeslRecyclerViewFastScroller {
             return;
         }
 
+        recordVisibleItemHeights();
+
         final boolean canScrollList = (canScrollList(1) || canScrollList(-1));
         if (canScrollList && mState != STATE_DRAGGING) {
             if (mOldThumbPosition != -1f) {
@@ -1062,14 +1074,143 @@ class SeslRecyclerViewFastScroller {
             mListAdapter = adapter;
             mSectionIndexer = (SectionIndexer) adapter;
             mSections = mSectionIndexer.getSections();
+            mSectionTable = mSections != null && mSections.length > 0
+                    ? new SectionTable(mSectionIndexer, mSections) : null;
         } else {
             mListAdapter = adapter;
             mSections = null;
+            mSectionTable = null;
         }
     }
 
+    /**
+     * Called when the adapter data changed, the sections are queried again the next time they
+     * are needed.
+     */
     public void onSectionsChanged() {
         mListAdapter = null;
+        mSectionTable = null;
+    }
+
+    // Adapter updates, applied to the item height estimate. The sections are updated
+    // separately through onSectionsChanged().
+
+    void onDataSetChanged() {
+        mHeightEstimator.reset();
+    }
+
+    void onItemRangeChanged(int positionStart, int itemCount) {
+        mHeightEstimator.onItemRangeChanged(positionStart, itemCount);
+    }
+
+    void onItemRangeInserted(int positionStart, int itemCount) {
+        mHeightEstimator.onItemRangeInserted(positionStart, itemCount);
+    }
+
+    void onItemRangeRemoved(int positionStart, int itemCount) {
+        mHeightEstimator.onItemRangeRemoved(positionStart, itemCount);
+    }
+
+    void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        mHeightEstimator.onItemRangeMoved(fromPosition, toPosition, itemCount);
+    }
+
+    /**
+     * Returns true if item heights can be estimated for the current layout, which is the case for
+     * vertical layouts that aren't reversed.
+     */
+    private boolean canEstimateHeights() {
+        final RecyclerView.LayoutManager layout = mRecyclerView.mLayout;
+        if (layout instanceof LinearLayoutManager) {
+            final LinearLayoutManager llm = (LinearLayoutManager) layout;
+            return llm.getOrientation() == RecyclerView.VERTICAL && !llm.getReverseLayout();
+        } else if (layout instanceof StaggeredGridLayoutManager) {
+            final StaggeredGridLayoutManager sglm = (StaggeredGridLayoutManager) layout;
+            return sglm.getOrientation() == RecyclerView.VERTICAL && !sglm.getReverseLayout();
+        }
+        return false;
+    }
+
+    /**
+     * Records the heights of the laid out children. In grids, each height is scaled by the share
+     * of its row the item takes, so that the estimate adds up to the height of the content.
+     */
+    private void recordVisibleItemHeights() {
+        if (!canEstimateHeights() || !mHeightEstimator.ensureIndexed(mRecyclerView.getAdapter())) {
+            return;
+        }
+        final RecyclerView.LayoutManager layout = mRecyclerView.mLayout;
+        final int childCount = mRecyclerView.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            final View child = mRecyclerView.getChildAt(i);
+            final int position = mRecyclerView.getChildLayoutPosition(child);
+            final RecyclerView.LayoutParams lp = (RecyclerView.LayoutParams) child.getLayoutParams();
+            if (position == RecyclerView.NO_POSITION || lp.isItemRemoved()) {
+                continue;
+            }
+            int height = layout.getDecoratedMeasuredHeight(child) + lp.topMargin
+                    + lp.bottomMargin;
+            if (layout instanceof GridLayoutManager) {
+                final GridLayoutManager glm = (GridLayoutManager) layout;
+                height = height * glm.getSpanSizeLookup().getSpanSize(position)
+                        / glm.getSpanCount();
+            } else if (layout instanceof StaggeredGridLayoutManager
+                    && !((StaggeredGridLayoutManager.LayoutParams) lp).isFullSpan()) {
+                height /= ((StaggeredGridLayoutManager) layout).getSpanCount();
+            }
+            mHeightEstimator.record(position, height);
+        }
+    }
+
+    /**
+     * Returns the scrollable range of the estimated content, or 0 if there isn't enough to
+     * estimate it from.
+     */
+    private double getEstimatedScrollRange() {
+        if (!canEstimateHeights() || !mHeightEstimator.ensureIndexed(mRecyclerView.getAdapter())
+                || !mHeightEstimator.hasMeasurements()) {
+            return 0;
+        }
+        final int viewport = mRecyclerView.getHeight() - mRecyclerView.getPaddingTop()
+                - mRecyclerView.getPaddingBottom();
+        return Math.max(0, mHeightEstimator.getTotalHeight() - viewport);
+    }
+
+    /**
+     * Returns the thumb position matching the estimated scroll offset of the list, or -1 if it
+     * can't be estimated.
+     */
+    private float getEstimatedThumbPos() {
+        final double range = getEstimatedScrollRange();
+        if (range <= 0) {
+            return -1f;
+        }
+        if (!mRecyclerView.canScrollVertically(-1)) {
+            return 0f;
+        }
+        if (!mRecyclerView.canScrollVertically(1)) {
+            return 1f;
+        }
+        // the first laid out position, in staggered grids not necessarily the first child
+        View first = null;
+        int firstPosition = Integer.MAX_VALUE;
+        final int childCount = mRecyclerView.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            final View child = mRecyclerView.getChildAt(i);
+            final int position = mRecyclerView.getChildLayoutPosition(child);
+            if (position != RecyclerView.NO_POSITION && position < firstPosition) {
+                first = child;
+                firstPosition = position;
+            }
+        }
+        if (first == null) {
+            return -1f;
+        }
+        final RecyclerView.LayoutParams lp = (RecyclerView.LayoutParams) first.getLayoutParams();
+        final int firstTop = mRecyclerView.mLayout.getDecoratedTop(first) - lp.topMargin;
+        final double offset = mHeightEstimator.getOffsetOf(firstPosition)
+                + mRecyclerView.getPaddingTop() - firstTop;
+        return (float) Math.min(1, Math.max(0, offset / range));
     }
 
     /**
@@ -1079,15 +1220,19 @@ class SeslRecyclerViewFastScroller {
     private void scrollTo(float position) {
         mScrollCompleted = false;
 
+        if (mListAdapter == null) {
+            getSectionsFromIndexer();
+        }
+
         final int count = mRecyclerView.getAdapter().getItemCount();
-        final Object[] sections = mSections;
-        final int sectionCount = sections == null ? 0 : sections.length;
+        final SectionTable sections = mSectionTable;
+        final int sectionCount = sections == null ? 0 : sections.getSectionCount();
         int sectionIndex;
         if (sections != null && sectionCount > 0) {
             final int exactSection = MathUtils.constrain(
                     (int) (position * sectionCount), 0, sectionCount - 1);
             int targetSection = exactSection;
-            int targetIndex = mSectionIndexer.getPositionForSection(targetSection);
+            int targetIndex = sections.getPositionForSection(targetSection);
             sectionIndex = targetSection;
 
             // Given the expected section and index, the following code will
@@ -1103,7 +1248,7 @@ class SeslRecyclerViewFastScroller {
 
             // Assume the next section is unique
             if (targetSection < sectionCount - 1) {
-                nextIndex = mSectionIndexer.getPositionForSection(targetSection + 1);
+                nextIndex = sections.getPositionForSection(targetSection + 1);
             }
 
             // Find the previous index if we're slicing the previous section
@@ -1111,7 +1256,7 @@ class SeslRecyclerViewFastScroller {
                 // Non-existent letter
                 while (targetSection > 0) {
                     targetSection--;
-                    prevIndex = mSectionIndexer.getPositionForSection(targetSection);
+                    prevIndex = sections.getPositionForSection(targetSection);
                     if (prevIndex != targetIndex) {
                         prevSection = targetSection;
                         sectionIndex = targetSection;
@@ -1132,7 +1277,7 @@ class SeslRecyclerViewFastScroller {
             // further down...
             int nextNextSection = nextSection + 1;
             while (nextNextSection < sectionCount &&
-                    mSectionIndexer.getPositionForSection(nextNextSection) == nextIndex) {
+                    sections.getPositionForSection(nextNextSection) == nextIndex) {
                 nextNextSection++;
                 nextSection++;
             }
@@ -1162,16 +1307,27 @@ class SeslRecyclerViewFastScroller {
                         .scrollToPositionWithOffset(targetIndex, 0, true);
             }
         } else {
-            final int index = MathUtils.constrain((int) (position * count), 0, count - 1);
+            final double range = getEstimatedScrollRange();
+            final int index;
+            int offset = 0;
+            if (range > 0) {
+                // scroll to the estimated offset, so the list follows the thumb linearly even if
+                // its items differ in height
+                final double target = position * range;
+                index = mHeightEstimator.getPositionAt(target);
+                offset = (int) -(target - mHeightEstimator.getOffsetOf(index));
+            } else {
+                index = MathUtils.constrain((int) (position * count), 0, count - 1);
+            }
 
             sectionIndex = -1;
 
             if (mRecyclerView.mLayout instanceof LinearLayoutManager) {
                 ((LinearLayoutManager) mRecyclerView.mLayout)
-                        .scrollToPositionWithOffset(index, 0);
+                        .scrollToPositionWithOffset(index, offset);
             } else {
                 ((StaggeredGridLayoutManager) mRecyclerView.mLayout)
-                        .scrollToPositionWithOffset(index, 0, true);
+                        .scrollToPositionWithOffset(index, offset, true);
             }
         }
 
@@ -1199,13 +1355,10 @@ class SeslRecyclerViewFastScroller {
      * @return False if the new preview text is empty.
      */
     private boolean transitionPreviewLayout(int sectionIndex) {
-        final Object[] sections = mSections;
+        final SectionTable sections = mSectionTable;
         String text = null;
-        if (sections != null && sectionIndex >= 0 && sectionIndex < sections.length) {
-            final Object section = sections[sectionIndex];
-            if (section != null) {
-                text = section.toString();
-            }
+        if (sections != null && sectionIndex >= 0 && sectionIndex < sections.getSectionCount()) {
+            text = sections.getSectionText(sectionIndex);
         }
 
         final Rect bounds = mTempBounds;
@@ -1220,6 +1373,11 @@ class SeslRecyclerViewFastScroller {
             target = mPrimaryText;
         }
 
+        // Still dragging within the same section, the preview is already measured and showing.
+        if (mState == STATE_DRAGGING && showing.getText().equals(text)) {
+            return !TextUtils.isEmpty(text);
+        }
+
         // Set and layout target immediately.
         target.setText(text);
         measurePreview(target, bounds);
@@ -1227,8 +1385,6 @@ class SeslRecyclerViewFastScroller {
 
         if (mState == STATE_VISIBLE) {
             showing.setText("");
-        } else if (mState == STATE_DRAGGING && showing.getText().equals(text)) {
-            return !TextUtils.isEmpty(text);
         }
 
         if (mPreviewAnimation != null) {
@@ -1384,31 +1540,21 @@ class SeslRecyclerViewFastScroller {
                 var10 = 0.0F;
             }
 
-            boolean var13;
-            label103: {
-                if (var5 != null) {
-                    Object[] var15 = this.mSections;
-                    if (var15 != null && var15.length > 0) {
-                        var13 = true;
-                        break label103;
-                    }
-                }
-
-                var13 = false;
-            }
+            final SectionTable var15 = this.mSectionTable;
+            final boolean var13 = var5 != null && var15 != null;
 
             if (var13 && this.mMatchDragPosition) {
                 if (var7 < 0) {
                     return 0.0F;
                 }
 
-                int var11 = var5.getSectionForPosition(var7);
-                int var12 = var5.getPositionForSection(var11);
-                var6 = this.mSections.length;
+                int var11 = var15.getSectionForPosition(var7);
+                int var12 = var15.getPositionForSection(var11);
+                var6 = var15.getSectionCount();
                 if (var11 < var6 - 1) {
                     var1 = var11 + 1;
                     if (var1 < var6) {
-                        var1 = var5.getPositionForSection(var1);
+                        var1 = var15.getPositionForSection(var1);
                     } else {
                         var1 = var3 - 1;
                     }
@@ -1435,6 +1581,11 @@ class SeslRecyclerViewFastScroller {
                     return 0.0F;
                 }
 
+                final float estimatedPos = getEstimatedThumbPos();
+                if (estimatedPos >= 0.0F) {
+                    return estimatedPos;
+                }
+
                 if (this.mRecyclerView.mLayout instanceof GridLayoutManager) {
                     var1 = ((GridLayoutManager)this.mRecyclerView.mLayout).getSpanCount() / ((GridLayoutManager)this.mRecyclerView.mLayout).getSpanSizeLookup().getSpanSize(var7);
                 } else if (this.mRecyclerView.mLayout instanceof StaggeredGridLayoutManager) {
@@ -1841,4 +1992,427 @@ class SeslRecyclerViewFastScroller {
         final PropertyValuesHolder bottom = PropertyValuesHolder.ofInt(BOTTOM, bounds.bottom);
         return ObjectAnimator.ofPropertyValuesHolder(v, left, top, right, bottom);
     }
+
+    /**
+     * Section boundaries of a {@link SectionIndexer}, queried once when the sections change so
+     * that dragging the thumb doesn't call back into the adapter on every move event. The section
+     * of a position is found with a binary search over the section start positions.
+     */
+    private static final class SectionTable {
+        private final SectionIndexer mIndexer;
+        private final Object[] mSections;
+        private final String[] mTexts;
+        // first adapter position of each section
+        private final int[] mStarts;
+        // the binary search needs the starts in order, which every sane indexer returns
+        private final boolean mSorted;
+
+        SectionTable(SectionIndexer indexer, Object[] sections) {
+            mIndexer = indexer;
+            mSections = sections;
+            mTexts = new String[sections.length];
+            mStarts = new int[sections.length];
+            boolean sorted = true;
+            for (int i = 0; i < sections.length; i++) {
+                mStarts[i] = indexer.getPositionForSection(i);
+                if (i > 0 && mStarts[i] < mStarts[i - 1]) {
+                    sorted = false;
+                }
+            }
+            mSorted = sorted;
+        }
+
+        int getSectionCount() {
+            return mStarts.length;
+        }
+
+        int getPositionForSection(int section) {
+            return mStarts[section];
+        }
+
+        int getSectionForPosition(int position) {
+            if (!mSorted) {
+                return mIndexer.getSectionForPosition(position);
+            }
+            // last section starting at or before the position, which skips empty sections
+            int low = 0;
+            int high = mStarts.length - 1;
+            while (low < high) {
+                final int mid = (low + high + 1) >>> 1;
+                if (mStarts[mid] <= position) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        String getSectionText(int section) {
+            String text = mTexts[section];
+            if (text == null && mSections[section] != null) {
+                text = mSections[section].toString();
+                mTexts[section] = text;
+            }
+            return text;
+        }
+    }
+
+    /**
+     * Estimates the height of the content from the items laid out so far, so the thumb follows the
+     * content linearly when items differ in height.
+     * <p>
+     * Measured items count with their measured height, and every other item with the running
+     * average height of its view type (or of all measured items if none of its type was measured
+     * yet). Measured heights and the per-type counts of unmeasured items are kept in Fenwick
+     * trees, so the estimated offset of a position, and the position at an offset, take
+     * O(log n) per view type.
+     * <p>
+     * Adapter range updates shift the per-position arrays and invalidate the trees, which are
+     * rebuilt in linear time on the next query. Only the view types of the inserted and changed
+     * positions are queried again then, and the measured heights of the other positions are kept.
+     * A data set change drops all positions, while the per-type averages are kept.
+     */
+    private static final class HeightEstimator {
+        // view types beyond this many share the last bucket
+        private static final int MAX_BUCKETS = 8;
+        // type averages are decayed past this many samples, to follow changing content
+        private static final int MAX_TYPE_SAMPLES = 512;
+        // bucket of a position whose view type is queried on the next rebuild
+        private static final int BUCKET_UNKNOWN = -1;
+
+        private RecyclerView.Adapter mAdapter;
+        private final SparseIntArray mBucketForType = new SparseIntArray();
+        private int mBucketCount;
+        private final long[] mTypeHeightSums = new long[MAX_BUCKETS];
+        private final int[] mTypeHeightCounts = new int[MAX_BUCKETS];
+        private final double[] mAverages = new double[MAX_BUCKETS];
+
+        // -1 until the positions are indexed for the current data set
+        private int mItemCount = -1;
+        private int[] mBuckets;
+        // measured height of each position, -1 if not measured
+        private int[] mHeights;
+        private long[] mMeasuredTree;
+        private final int[][] mUnmeasuredTrees = new int[MAX_BUCKETS][];
+        private int mMeasuredCount;
+        private boolean mTreesValid;
+
+        /**
+         * Drops all positions, for a data set change.
+         */
+        void reset() {
+            mItemCount = -1;
+        }
+
+        void onItemRangeChanged(int positionStart, int itemCount) {
+            if (mItemCount < 0) {
+                return;
+            }
+            final int end = Math.min(positionStart + itemCount, mItemCount);
+            if (positionStart < 0 || positionStart >= end) {
+                return;
+            }
+            // the view type and height may have changed with the content
+            Arrays.fill(mBuckets, positionStart, end, BUCKET_UNKNOWN);
+            Arrays.fill(mHeights, positionStart, end, -1);
+            mTreesValid = false;
+        }
+
+        void onItemRangeInserted(int positionStart, int itemCount) {
+            if (mItemCount < 0) {
+                return;
+            }
+            if (positionStart < 0 || positionStart > mItemCount) {
+                reset();
+                return;
+            }
+            ensureCapacity(mItemCount + itemCount);
+            final int tail = mItemCount - positionStart;
+            System.arraycopy(mBuckets, positionStart, mBuckets, positionStart + itemCount, tail);
+            System.arraycopy(mHeights, positionStart, mHeights, positionStart + itemCount, tail);
+            Arrays.fill(mBuckets, positionStart, positionStart + itemCount, BUCKET_UNKNOWN);
+            Arrays.fill(mHeights, positionStart, positionStart + itemCount, -1);
+            mItemCount += itemCount;
+            mTreesValid = false;
+        }
+
+        void onItemRangeRemoved(int positionStart, int itemCount) {
+            if (mItemCount < 0) {
+                return;
+            }
+            if (positionStart < 0 || positionStart + itemCount > mItemCount) {
+                reset();
+                return;
+            }
+            final int tail = mItemCount - positionStart - itemCount;
+            System.arraycopy(mBuckets, positionStart + itemCount, mBuckets, positionStart, tail);
+            System.arraycopy(mHeights, positionStart + itemCount, mHeights, positionStart, tail);
+            mItemCount -= itemCount;
+            mTreesValid = false;
+        }
+
+        void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            if (mItemCount < 0) {
+                return;
+            }
+            if (itemCount != 1 || fromPosition < 0 || fromPosition >= mItemCount
+                    || toPosition < 0 || toPosition >= mItemCount) {
+                // RecyclerView only moves single items
+                reset();
+                return;
+            }
+            final int bucket = mBuckets[fromPosition];
+            final int height = mHeights[fromPosition];
+            if (fromPosition < toPosition) {
+                final int count = toPosition - fromPosition;
+                System.arraycopy(mBuckets, fromPosition + 1, mBuckets, fromPosition, count);
+                System.arraycopy(mHeights, fromPosition + 1, mHeights, fromPosition, count);
+            } else {
+                final int count = fromPosition - toPosition;
+                System.arraycopy(mBuckets, toPosition, mBuckets, toPosition + 1, count);
+                System.arraycopy(mHeights, toPosition, mHeights, toPosition + 1, count);
+            }
+            mBuckets[toPosition] = bucket;
+            mHeights[toPosition] = height;
+            mTreesValid = false;
+        }
+
+        /**
+         * Indexes the positions of the adapter if needed. Returns false if there is nothing to
+         * estimate from yet.
+         */
+        boolean ensureIndexed(RecyclerView.Adapter adapter) {
+            if (adapter != mAdapter) {
+                mAdapter = adapter;
+                mBucketForType.clear();
+                mBucketCount = 0;
+                for (int i = 0; i < MAX_BUCKETS; i++) {
+                    mTypeHeightSums[i] = 0;
+                    mTypeHeightCounts[i] = 0;
+                }
+                mItemCount = -1;
+            }
+            if (adapter == null) {
+                return false;
+            }
+            final int itemCount = adapter.getItemCount();
+            if (mItemCount != itemCount) {
+                // a data set change, or updates that weren't dispatched to us
+                ensureCapacity(itemCount);
+                mItemCount = itemCount;
+                Arrays.fill(mBuckets, 0, itemCount, BUCKET_UNKNOWN);
+                Arrays.fill(mHeights, 0, itemCount, -1);
+                mTreesValid = false;
+            }
+            if (!mTreesValid) {
+                rebuildTrees(adapter);
+            }
+            return itemCount > 0;
+        }
+
+        private void ensureCapacity(int itemCount) {
+            if (mHeights != null && mHeights.length >= itemCount) {
+                return;
+            }
+            final int capacity = mHeights == null ? itemCount
+                    : Math.max(itemCount, mHeights.length * 2);
+            final int[] buckets = new int[capacity];
+            final int[] heights = new int[capacity];
+            if (mHeights != null && mItemCount > 0) {
+                System.arraycopy(mBuckets, 0, buckets, 0, mItemCount);
+                System.arraycopy(mHeights, 0, heights, 0, mItemCount);
+            }
+            mBuckets = buckets;
+            mHeights = heights;
+            // the trees are reallocated by the next rebuild
+            mTreesValid = false;
+        }
+
+        /**
+         * Rebuilds the trees from the per-position arrays in linear time, querying the view types
+         * of the positions that don't have one.
+         */
+        private void rebuildTrees(RecyclerView.Adapter adapter) {
+            mTreesValid = true;
+            final int itemCount = mItemCount;
+            final int treeSize = mHeights.length + 1;
+            if (mMeasuredTree == null || mMeasuredTree.length < treeSize) {
+                mMeasuredTree = new long[treeSize];
+            } else {
+                Arrays.fill(mMeasuredTree, 0, itemCount + 1, 0);
+            }
+            for (int b = 0; b < MAX_BUCKETS; b++) {
+                final int[] tree = mUnmeasuredTrees[b];
+                if (tree != null) {
+                    if (tree.length < treeSize) {
+                        mUnmeasuredTrees[b] = new int[treeSize];
+                    } else {
+                        Arrays.fill(tree, 0, itemCount + 1, 0);
+                    }
+                }
+            }
+            mMeasuredCount = 0;
+            for (int i = 1; i <= itemCount; i++) {
+                int b = mBuckets[i - 1];
+                if (b == BUCKET_UNKNOWN) {
+                    b = bucketFor(adapter.getItemViewType(i - 1));
+                    mBuckets[i - 1] = b;
+                }
+                final int height = mHeights[i - 1];
+                if (height >= 0) {
+                    mMeasuredTree[i] += height;
+                    mMeasuredCount++;
+                } else {
+                    int[] tree = mUnmeasuredTrees[b];
+                    if (tree == null) {
+                        tree = new int[treeSize];
+                        mUnmeasuredTrees[b] = tree;
+                    }
+                    tree[i]++;
+                }
+            }
+            // linear time Fenwick construction
+            for (int i = 1; i <= itemCount; i++) {
+                final int parent = i + (i & -i);
+                if (parent <= itemCount) {
+                    mMeasuredTree[parent] += mMeasuredTree[i];
+                }
+            }
+            for (int b = 0; b < MAX_BUCKETS; b++) {
+                final int[] tree = mUnmeasuredTrees[b];
+                if (tree == null) {
+                    continue;
+                }
+                for (int i = 1; i <= itemCount; i++) {
+                    final int parent = i + (i & -i);
+                    if (parent <= itemCount) {
+                        tree[parent] += tree[i];
+                    }
+                }
+            }
+            updateAverages();
+        }
+
+        private int bucketFor(int viewType) {
+            int bucket = mBucketForType.get(viewType, -1);
+            if (bucket == -1) {
+                bucket = mBucketCount < MAX_BUCKETS ? mBucketCount++ : MAX_BUCKETS - 1;
+                mBucketForType.put(viewType, bucket);
+            }
+            return bucket;
+        }
+
+        /**
+         * Records the measured height of a laid out position.
+         */
+        void record(int position, int height) {
+            if (position < 0 || position >= mItemCount || height < 0) {
+                return;
+            }
+            final int old = mHeights[position];
+            if (old == height) {
+                return;
+            }
+            final int bucket = mBuckets[position];
+            if (old == -1) {
+                add(mUnmeasuredTrees[bucket], position, -1);
+                addMeasured(position, height);
+                mMeasuredCount++;
+                mTypeHeightSums[bucket] += height;
+                mTypeHeightCounts[bucket]++;
+                if (mTypeHeightCounts[bucket] > MAX_TYPE_SAMPLES) {
+                    mTypeHeightSums[bucket] /= 2;
+                    mTypeHeightCounts[bucket] /= 2;
+                }
+            } else {
+                addMeasured(position, height - old);
+                mTypeHeightSums[bucket] += height - old;
+            }
+            mHeights[position] = height;
+            updateAverages();
+        }
+
+        boolean hasMeasurements() {
+            return mMeasuredCount > 0;
+        }
+
+        /**
+         * Returns the estimated distance from the top of the content to the top of the position.
+         */
+        double getOffsetOf(int position) {
+            position = Math.min(position, mItemCount);
+            double offset = 0;
+            for (int i = position; i > 0; i -= i & -i) {
+                offset += mMeasuredTree[i];
+            }
+            for (int b = 0; b < mBucketCount; b++) {
+                final int[] tree = mUnmeasuredTrees[b];
+                if (tree == null) {
+                    continue;
+                }
+                int count = 0;
+                for (int i = position; i > 0; i -= i & -i) {
+                    count += tree[i];
+                }
+                offset += count * mAverages[b];
+            }
+            return offset;
+        }
+
+        double getTotalHeight() {
+            return getOffsetOf(mItemCount);
+        }
+
+        /**
+         * Returns the position covering the given estimated offset from the top of the content.
+         */
+        int getPositionAt(double offset) {
+            int position = 0;
+            for (int step = Integer.highestOneBit(mItemCount); step > 0; step >>= 1) {
+                final int next = position + step;
+                if (next > mItemCount) {
+                    continue;
+                }
+                double weight = mMeasuredTree[next];
+                for (int b = 0; b < mBucketCount; b++) {
+                    final int[] tree = mUnmeasuredTrees[b];
+                    if (tree != null) {
+                        weight += tree[next] * mAverages[b];
+                    }
+                }
+                if (weight <= offset) {
+                    position = next;
+                    offset -= weight;
+                }
+            }
+            return Math.min(position, mItemCount - 1);
+        }
+
+        private void updateAverages() {
+            long totalSum = 0;
+            int totalCount = 0;
+            for (int b = 0; b < mBucketCount; b++) {
+                totalSum += mTypeHeightSums[b];
+                totalCount += mTypeHeightCounts[b];
+            }
+            final double overall = totalCount == 0 ? 0 : (double) totalSum / totalCount;
+            for (int b = 0; b < mBucketCount; b++) {
+                mAverages[b] = mTypeHeightCounts[b] == 0 ? overall
+                        : (double) mTypeHeightSums[b] / mTypeHeightCounts[b];
+            }
+        }
+
+        private void addMeasured(int position, long delta) {
+            for (int i = position + 1; i <= mItemCount; i += i & -i) {
+                mMeasuredTree[i] += delta;
+            }
+        }
+
+        private void add(int[] tree, int position, int delta) {
+            for (int i = position + 1; i <= mItemCount; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+    }
 }
@@ -56,10 +56,22 @@ public class SeslSwipeListAnimator {
     private BitmapDrawable mDrawSwipeBitmapDrawable = null;
     private RecyclerView mRecyclerView;
     private Bitmap mSwipeBitmap = null;
+    private Canvas mSwipeCanvas = null;
     private SwipeConfiguration mSwipeConfiguration;
-    private Rect mSwipeRect = null;
+    private final Rect mSwipeRect = new Rect();
+    private final int[] mListLocation = new int[2];
+    private final int[] mViewLocation = new int[2];
+    private final Rect mTextBounds = new Rect();
+    // Bounds of the swipe drawable and of the background, reused by drawSwipeBackground.
+    private final Rect mSwipeDrawableBounds = new Rect();
+    private final Rect mSwipeBgBounds = new Rect();
     private TextPaint mTextPaint = null;
 
+    private boolean mHardwareAccelerationEnabled = true;
+    // The foreground view given a hardware layer for the current swipe, and its previous type.
+    private View mLayerView = null;
+    private int mLayerViewPreviousType = View.LAYER_TYPE_NONE;
+
     public static class SwipeConfiguration {
         public int UNSET_VALUE = -1;
 
@@ -128,30 +140,92 @@ public class SeslSwipeListAnimator {
         return Math.round(dip * density);
     }
 
+    /**
+     * Sets whether swipes are rendered with the hardware path when the canvas is hardware
+     * accelerated. Enabled by default.
+     * <p>
+     * On the hardware path the swipe background is recorded straight into the list's display
+     * list, and the foreground view is given a hardware layer for the duration of the swipe, so
+     * moving and fading it only updates its layer properties. Otherwise the background is drawn
+     * into a bitmap buffer that is reused across frames and swipes.
+     */
+    public void setHardwareAccelerationEnabled(boolean enabled) {
+        mHardwareAccelerationEnabled = enabled;
+    }
+
     public void doMoveAction(Canvas c, View viewForeground, float deltaX,
                              boolean isCurrentlyActive) {
-        Log.i(TAG, "doMoveAction: viewForeground = " + viewForeground +
-                " deltaX = " + deltaX + ", isCurrentlyActive = " + isCurrentlyActive);
-
         if (deltaX != 0f || isCurrentlyActive) {
-            Log.i(TAG, "doMoveAction: #1 drawRectToBitmapCanvas");
+            final int width = viewForeground.getWidth();
+            final int height = viewForeground.getHeight();
+            if (width <= 0 || height <= 0) {
+                return;
+            }
+            final boolean hardware = mHardwareAccelerationEnabled && c.isHardwareAccelerated();
 
-            drawRectToBitmapCanvas(viewForeground, deltaX, deltaX / viewForeground.getWidth());
+            viewForeground.setTranslationX(0f);
+            updateSwipeRect(viewForeground);
+            if (hardware) {
+                ensureHardwareLayer(viewForeground);
+            } else {
+                drawRectToBitmapCanvas(viewForeground, deltaX, deltaX / width);
+            }
             viewForeground.setTranslationX(deltaX);
-            viewForeground.setAlpha(1f - (Math.abs(deltaX) / viewForeground.getWidth()));
-
-            mDrawSwipeBitmapDrawable = getBitmapDrawableToSwipeBitmap();
-            if (mDrawSwipeBitmapDrawable != null) {
-                mRecyclerView.invalidate(mDrawSwipeBitmapDrawable.getBounds());
-                Log.i(TAG, "doMoveAction: draw");
-                mDrawSwipeBitmapDrawable.draw(c);
+            viewForeground.setAlpha(1f - (Math.abs(deltaX) / width));
+
+            mRecyclerView.invalidate(mSwipeRect);
+            if (hardware) {
+                c.save();
+                c.clipRect(mSwipeRect);
+                c.translate(mSwipeRect.left, mSwipeRect.top);
+                // the bitmap path stretches the full width of the view over the rect
+                c.scale((float) mSwipeRect.width() / width, 1f);
+                drawSwipeBackground(c, width, height, deltaX, deltaX / width);
+                c.restore();
+            } else {
+                mDrawSwipeBitmapDrawable = getBitmapDrawableToSwipeBitmap();
+                if (mDrawSwipeBitmapDrawable != null) {
+                    mDrawSwipeBitmapDrawable.draw(c);
+                }
             }
         } else {
-            Log.i(TAG, "doMoveAction: #2 reutrn");
             clearSwipeAnimation(viewForeground);
         }
     }
 
+    private void ensureHardwareLayer(View view) {
+        if (mLayerView == view) {
+            return;
+        }
+        restoreLayerType();
+        mLayerView = view;
+        mLayerViewPreviousType = view.getLayerType();
+        if (mLayerViewPreviousType != View.LAYER_TYPE_HARDWARE) {
+            view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        }
+    }
+
+    private void restoreLayerType() {
+        if (mLayerView != null) {
+            if (mLayerView.getLayerType() != mLayerViewPreviousType) {
+                mLayerView.setLayerType(mLayerViewPreviousType, null);
+            }
+            mLayerView = null;
+        }
+    }
+
+    /**
+     * Sets {@link #mSwipeRect} to the bounds of the view in the list, ignoring its translation.
+     */
+    private void updateSwipeRect(View view) {
+        mRecyclerView.getLocationInWindow(mListLocation);
+        view.getLocationInWindow(mViewLocation);
+        final int left = mViewLocation[0] - mListLocation[0];
+        final int top = calculateTopOfList(view);
+        mSwipeRect.set(left + view.getPaddingLeft(), top,
+                left + view.getWidth() - view.getPaddingRight(), top + view.getHeight());
+    }
+
     private int calculateTopOfList(View view) {
         final int top = view.getTop();
         View parent = (View) view.getParent();
@@ -159,33 +233,39 @@ public class SeslSwipeListAnimator {
                 top + calculateTopOfList(parent) : top;
     }
 
-    // TODO rework this method
-    // kang
-    private Canvas drawRectToBitmapCanvas(View var1, float var2, float var3) {
-        /* var1 = view; var2 = deltaX; var3 = swipeProgress; */
-        int[] var4 = new int[2];
-        this.mRecyclerView.getLocationInWindow(var4);
-        int[] var5 = new int[2];
-        var1.setTranslationX(0.0F);
-        var1.getLocationInWindow(var5);
-        var5[0] -= var4[0];
-        int var6 = this.calculateTopOfList(var1);
-        int var7 = var1.getWidth();
-        int var8 = var1.getHeight();
-        this.mSwipeRect = new Rect(var5[0] + var1.getPaddingLeft(), var6, var5[0] + var1.getWidth() - var1.getPaddingRight(), var6 + var8);
-        if (this.mSwipeBitmap == null) {
-            this.mSwipeBitmap = Bitmap.createBitmap(var7, var8, Bitmap.Config.ARGB_8888);
+    /**
+     * Draws the swipe background into the reused bitmap buffer, which is only reallocated when
+     * the size of the swiped view changes.
+     */
+    private Canvas drawRectToBitmapCanvas(View view, float deltaX, float swipeProgress) {
+        final int width = view.getWidth();
+        final int height = view.getHeight();
+        if (mSwipeBitmap == null || mSwipeBitmap.getWidth() != width
+                || mSwipeBitmap.getHeight() != height) {
+            if (mSwipeBitmap != null) {
+                mSwipeBitmap.recycle();
+            }
+            mSwipeBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mSwipeCanvas = new Canvas(mSwipeBitmap);
+            mDrawSwipeBitmapDrawable = null;
         }
 
-        Canvas var19 = new Canvas(this.mSwipeBitmap);
-        var19.drawColor(0, PorterDuff.Mode.CLEAR);
+        mSwipeCanvas.drawColor(0, PorterDuff.Mode.CLEAR);
+        drawSwipeBackground(mSwipeCanvas, width, height, deltaX, swipeProgress);
+        return mSwipeCanvas;
+    }
+
+    // TODO rework this method
+    // kang
+    private void drawSwipeBackground(Canvas var19, int var7, int var8, float var2, float var3) {
+        /* var19 = canvas; var7 = width; var8 = height; var2 = deltaX; var3 = swipeProgress; */
+        int var6;
         float var9 = Math.abs(var2);
-        float var10 = var9 / (float)var1.getWidth() * 255.0F;
+        float var10 = var9 / (float)var7 * 255.0F;
         int var11;
         int var12;
         androidx.recyclerview.widget.SeslSwipeListAnimator.SwipeConfiguration var15;
         Rect var17;
-        StringBuilder var18;
         Rect var23;
         if (var3 > 0.0F) {
             Drawable var20 = this.mSwipeConfiguration.drawableLeftToRight;
@@ -193,26 +273,23 @@ public class SeslSwipeListAnimator {
                 var17 = var20.getBounds();
                 var6 = var17.width();
                 var11 = var17.height();
-                var18 = new StringBuilder();
-                var18.append("#1 draw LtoR, d = ");
-                var18.append(var20);
-                var18.append(", d.getBounds()=");
-                var18.append(var20.getBounds());
-                Log.i("SeslSwipeListAnimator", var18.toString());
                 var12 = this.mSwipeConfiguration.drawablePadding;
-                var17 = new Rect(var12, 0, var6 + var12, var11);
+                var17 = this.mSwipeDrawableBounds;
+                var17.set(var12, 0, var6 + var12, var11);
                 var17.offset(0, (var8 - var11) / 2);
             } else {
-                Log.i("SeslSwipeListAnimator", "#2 draw LtoR, d = null");
-                var17 = new Rect(0, 0, 0, 0);
+                var17 = this.mSwipeDrawableBounds;
+                var17.setEmpty();
             }
 
             var6 = (int)var2;
-            Rect var13 = new Rect(0, 0, var6, var8);
+            Rect var13 = this.mSwipeBgBounds;
+            var13.set(0, 0, var6, var8);
             Paint var14 = this.mBgLeftToRight;
             var15 = this.mSwipeConfiguration;
             this.drawRectInto(var19, var13, var17, var20, var14, 255, var15.textLeftToRight, (float)var15.textSize, 0, var7);
-            var23 = new Rect(var6, 0, var7, var8);
+            var23 = this.mSwipeBgBounds;
+            var23.set(var6, 0, var7, var8);
             Paint var21 = this.mBgLeftToRight;
             var8 = (int)var10;
             var15 = this.mSwipeConfiguration;
@@ -224,32 +301,26 @@ public class SeslSwipeListAnimator {
                 var12 = var17.width();
                 var11 = var17.height();
                 var6 = var7 - this.mSwipeConfiguration.drawablePadding;
-                var18 = new StringBuilder();
-                var18.append("#3 draw RtoL, d = ");
-                var18.append(var22);
-                var18.append(", d.getBounds()=");
-                var18.append(var22.getBounds());
-                Log.i("SeslSwipeListAnimator", var18.toString());
-                var17 = new Rect(var6 - var12, 0, var6, var11);
+                var17 = this.mSwipeDrawableBounds;
+                var17.set(var6 - var12, 0, var6, var11);
                 var17.offset(0, (var8 - var11) / 2);
             } else {
-                Log.i("SeslSwipeListAnimator", "#4 draw RtoL, d = null");
-                var17 = new Rect(var7, 0, var7, 0);
+                var17 = this.mSwipeDrawableBounds;
+                var17.set(var7, 0, var7, 0);
             }
 
             var6 = var7 - (int)var9;
-            var23 = new Rect(var6, 0, var7, var8);
+            var23 = this.mSwipeBgBounds;
+            var23.set(var6, 0, var7, var8);
             Paint var16 = this.mBgRightToLeft;
             var15 = this.mSwipeConfiguration;
             this.drawRectInto(var19, var23, var17, var22, var16, 255, var15.textRightToLeft, (float)var15.textSize, 1, var7);
-            var23 = new Rect(0, 0, var6, var8);
+            var23.set(0, 0, var6, var8);
             var16 = this.mBgRightToLeft;
             var8 = (int)var10;
             var15 = this.mSwipeConfiguration;
             this.drawRectInto(var19, var23, var17, var22, var16, var8, var15.textRightToLeft, (float)var15.textSize, 1, var7);
         }
-
-        return var19;
     }
     // kang
 
@@ -266,20 +337,21 @@ public class SeslSwipeListAnimator {
             var4.draw(var1);
         }
 
-        this.drawSwipeText(var1, this.mTextPaint, var7, var9, var3, var10);
+        this.drawSwipeText(var1, this.mTextPaint, var7, var9, var3, var10, var2.height());
         var1.restore();
     }
     // kang
 
     // TODO rework this method
     // kang
-    private void drawSwipeText(Canvas var1, TextPaint var2, String var3, int var4, Rect var5, int var6) {
-        Rect var7 = new Rect();
+    private void drawSwipeText(Canvas var1, TextPaint var2, String var3, int var4, Rect var5, int var6, int var15) {
+        /* var15 = height of the swiped view, the canvas may be larger on the hardware path */
+        Rect var7 = this.mTextBounds;
         var2.setTextAlign(Paint.Align.LEFT);
         var2.getTextBounds(var3, 0, var3.length(), var7);
         Paint.FontMetrics var8 = var2.getFontMetrics();
         float var9 = Math.abs(var8.top - var8.bottom);
-        float var10 = (float)var1.getHeight() / 2.0F;
+        float var10 = (float)var15 / 2.0F;
         float var11 = var9 / 2.0F;
         float var12 = var8.bottom;
         if (var4 == 0) {
@@ -303,7 +375,10 @@ public class SeslSwipeListAnimator {
             return null;
         }
 
-        BitmapDrawable d = new BitmapDrawable(mRecyclerView.getResources(), mSwipeBitmap);
+        BitmapDrawable d = mDrawSwipeBitmapDrawable;
+        if (d == null || d.getBitmap() != mSwipeBitmap) {
+            d = new BitmapDrawable(mRecyclerView.getResources(), mSwipeBitmap);
+        }
         d.setBounds(mSwipeRect);
         return d;
     }
@@ -312,7 +387,7 @@ public class SeslSwipeListAnimator {
         final int height = canvas.getHeight();
         final int width = canvas.getWidth();
 
-        Rect rect = new Rect();
+        final Rect rect = mTextBounds;
         paint.setTextAlign(Paint.Align.LEFT);
         paint.getTextBounds(text, 0, text.length(), rect);
 
@@ -322,14 +397,10 @@ public class SeslSwipeListAnimator {
     }
 
     public void clearSwipeAnimation(View view) {
-        Log.i(TAG, "clearSwipeAnimation: view = " + view +
-                " mDrawSwipeBitmapDrawable = " + mDrawSwipeBitmapDrawable);
+        Log.i(TAG, "clearSwipeAnimation: view = " + view);
 
-        if (mDrawSwipeBitmapDrawable != null) {
-            mDrawSwipeBitmapDrawable.getBitmap().recycle();
-            mDrawSwipeBitmapDrawable = null;
-            mSwipeBitmap = null;
-        }
+        // the bitmap buffer is kept for the next swipe
+        restoreLayerType();
 
         if (view != null) {
             Log.i(TAG, "clearSwipeAnimation: view.getTranslationX() = "
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.recyclerview.widget;
+
+import android.view.ViewConfiguration;
+
+/**
+ * Fling prediction for {@link SnapHelper}s.
+ * <p>
+ * The distance of a fling is computed in closed form with the spline model used by
+ * {@link android.widget.Scroller} and {@link android.widget.OverScroller}, so predicting a fling
+ * target doesn't start a scroller. The distance per item is a rolling average of samples taken
+ * when scrolling settles, so it doesn't need a scan of the children when a fling starts.
+ */
+final class SnapEngine {
+    // Spline constants of android.widget.OverScroller
+    private static final double DECELERATION_RATE = Math.log(0.78) / Math.log(0.9);
+    private static final float INFLEXION = 0.35f;
+    private static final float GRAVITY_EARTH = 9.80665f;
+    private static final float INCHES_PER_METER = 39.37f;
+    private static final float DECELERATION_TUNING = 0.84f;
+
+    // Weight of a new sample in the rolling average
+    private static final float SAMPLE_WEIGHT = 0.25f;
+
+    // Friction times the deceleration of the display, in pixels per second squared
+    private final float mFlingCoefficient;
+
+    private float mAverageExtent;
+
+    SnapEngine(float density) {
+        final float ppi = density * 160f;
+        mFlingCoefficient = ViewConfiguration.getScrollFriction() * GRAVITY_EARTH
+                * INCHES_PER_METER * ppi * DECELERATION_TUNING;
+    }
+
+    /**
+     * Returns the distance a fling with the given velocity scrolls, with the sign of the
+     * velocity. This is the final position an OverScroller fling from 0 along a single axis ends
+     * at.
+     */
+    int getFlingDistance(int velocity) {
+        if (velocity == 0) {
+            return 0;
+        }
+        final double l = Math.log(INFLEXION * Math.abs(velocity) / mFlingCoefficient);
+        final double distance = mFlingCoefficient
+                * Math.exp(DECELERATION_RATE / (DECELERATION_RATE - 1.0) * l);
+        return (int) (velocity < 0 ? -distance : distance);
+    }
+
+    void recordExtent(float extent) {
+        if (extent <= 0) {
+            return;
+        }
+        mAverageExtent = mAverageExtent == 0
+                ? extent : mAverageExtent + (extent - mAverageExtent) * SAMPLE_WEIGHT;
+    }
+
+    /**
+     * Returns the rolling average of the recorded extents, or 0 if none was recorded.
+     */
+    float getAverageExtent() {
+        return mAverageExtent;
+    }
+
+    void clear() {
+        mAverageExtent = 0;
+    }
+}
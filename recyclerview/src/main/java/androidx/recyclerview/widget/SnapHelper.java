@@ -16,11 +16,13 @@
 
 package androidx.recyclerview.widget;
 
+import android.graphics.PointF;
 import android.util.DisplayMetrics;
 import android.view.View;
 import android.view.animation.DecelerateInterpolator;
 import android.widget.OverScroller;
 import android.widget.Scroller;
+import android.widget.SectionIndexer;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -35,6 +37,10 @@ import androidx.annotation.Nullable;
  * SnapHelper tries to handle fling as well but for this to work properly, the
  * {@link RecyclerView.LayoutManager} must implement the {@link RecyclerView.SmoothScroller.ScrollVectorProvider} interface or
  * you should override {@link #onFling(int, int)} and handle fling manually.
+ * <p>
+ * With {@link #setSectionSnapEnabled(boolean)}, flings and scrolls of an adapter implementing
+ * {@link SectionIndexer} snap to the first item of a section, for example to page through a
+ * carousel a section at a time.
  */
 public abstract class SnapHelper extends RecyclerView.OnFlingListener {
 
@@ -43,6 +49,8 @@ public abstract class SnapHelper extends RecyclerView.OnFlingListener {
     RecyclerView mRecyclerView;
     private Scroller mGravityScroller;
     private OverScroller mOverScroller;
+    SnapEngine mSnapEngine;
+    private boolean mSectionSnapEnabled = false;
 
     // Handles the snap on scroll case.
     private final RecyclerView.OnScrollListener mScrollListener =
@@ -54,6 +62,11 @@ public abstract class SnapHelper extends RecyclerView.OnFlingListener {
                     super.onScrollStateChanged(recyclerView, newState);
                     if (newState == RecyclerView.SCROLL_STATE_IDLE && mScrolled) {
                         mScrolled = false;
+                        final RecyclerView.LayoutManager layoutManager =
+                                recyclerView.getLayoutManager();
+                        if (layoutManager != null) {
+                            onScrollSettled(layoutManager);
+                        }
                         snapToTargetExistingView();
                     }
                 }
@@ -108,10 +121,44 @@ public abstract class SnapHelper extends RecyclerView.OnFlingListener {
             mGravityScroller = new Scroller(mRecyclerView.getContext(),
                     new DecelerateInterpolator());
             mOverScroller = new OverScroller(mRecyclerView.getContext());
+            mSnapEngine = new SnapEngine(
+                    mRecyclerView.getResources().getDisplayMetrics().density);
             snapToTargetExistingView();
         }
     }
 
+    /**
+     * Sets whether to snap to the first item of a section instead of to any item, if the adapter
+     * implements {@link SectionIndexer}.
+     * <p>
+     * A fling moves on to the start of the section its predicted target is in, or of the next
+     * section when flinging forward from within that section. When a scroll settles, the nearest
+     * section start is snapped to. Section starts are read from the indexer when needed, so they
+     * follow changes to the adapter.
+     *
+     * @param enabled True to snap to section starts.
+     * @see #isSectionSnapEnabled()
+     */
+    public void setSectionSnapEnabled(boolean enabled) {
+        mSectionSnapEnabled = enabled;
+    }
+
+    /**
+     * Returns whether flings and scrolls snap to section starts.
+     *
+     * @see #setSectionSnapEnabled(boolean)
+     */
+    public boolean isSectionSnapEnabled() {
+        return mSectionSnapEnabled;
+    }
+
+    /**
+     * Called when a scroll settles, before snapping. Subclasses measure the children here for
+     * their next fling prediction, rather than when the fling starts.
+     */
+    void onScrollSettled(@NonNull RecyclerView.LayoutManager layoutManager) {
+    }
+
     /**
      * Called when an instance of a {@link RecyclerView} is attached.
      */
@@ -184,6 +231,10 @@ public abstract class SnapHelper extends RecyclerView.OnFlingListener {
         if (targetPosition == RecyclerView.NO_POSITION) {
             return false;
         }
+        if (mSectionSnapEnabled) {
+            targetPosition = findSectionTargetPosition(layoutManager, targetPosition, velocityX,
+                    velocityY);
+        }
 
         smoothScroller.setTargetPosition(targetPosition);
         layoutManager.startSmoothScroll(smoothScroller);
@@ -207,12 +258,86 @@ public abstract class SnapHelper extends RecyclerView.OnFlingListener {
         if (snapView == null) {
             return;
         }
+        if (mSectionSnapEnabled && mRecyclerView.getAdapter() instanceof SectionIndexer) {
+            final int position = layoutManager.getPosition(snapView);
+            final int anchor = findNearestSectionStart(
+                    (SectionIndexer) mRecyclerView.getAdapter(), position);
+            if (anchor != RecyclerView.NO_POSITION && anchor != position) {
+                final View anchorView = layoutManager.findViewByPosition(anchor);
+                if (anchorView == null) {
+                    final RecyclerView.SmoothScroller smoothScroller =
+                            createScroller(layoutManager);
+                    if (smoothScroller != null) {
+                        smoothScroller.setTargetPosition(anchor);
+                        layoutManager.startSmoothScroll(smoothScroller);
+                    }
+                    return;
+                }
+                snapView = anchorView;
+            }
+        }
         int[] snapDistance = calculateDistanceToFinalSnap(layoutManager, snapView);
         if (snapDistance[0] != 0 || snapDistance[1] != 0) {
             mRecyclerView.smoothScrollBy(snapDistance[0], snapDistance[1]);
         }
     }
 
+    /**
+     * Moves a fling target to a section start, see {@link #setSectionSnapEnabled(boolean)}.
+     */
+    private int findSectionTargetPosition(@NonNull RecyclerView.LayoutManager layoutManager,
+            int targetPosition, int velocityX, int velocityY) {
+        final RecyclerView.Adapter<?> adapter = mRecyclerView.getAdapter();
+        if (!(adapter instanceof SectionIndexer)) {
+            return targetPosition;
+        }
+        final int itemCount = layoutManager.getItemCount();
+        final PointF vectorForEnd = ((RecyclerView.SmoothScroller.ScrollVectorProvider)
+                layoutManager).computeScrollVectorForPosition(itemCount - 1);
+        if (vectorForEnd == null) {
+            return targetPosition;
+        }
+        final boolean forward = vectorForEnd.x * velocityX + vectorForEnd.y * velocityY > 0;
+        final SectionIndexer indexer = (SectionIndexer) adapter;
+        final int section = indexer.getSectionForPosition(targetPosition);
+        final int start = indexer.getPositionForSection(section);
+        if (!forward || start >= targetPosition) {
+            return start;
+        }
+        final int next = getSectionStart(indexer, section + 1, itemCount);
+        return next == RecyclerView.NO_POSITION ? targetPosition : next;
+    }
+
+    /**
+     * Returns the start of the section the position is in, or of the next section if that is
+     * closer.
+     */
+    private int findNearestSectionStart(@NonNull SectionIndexer indexer, int position) {
+        if (position == RecyclerView.NO_POSITION) {
+            return RecyclerView.NO_POSITION;
+        }
+        final int section = indexer.getSectionForPosition(position);
+        final int start = indexer.getPositionForSection(section);
+        final int next = getSectionStart(indexer, section + 1,
+                mRecyclerView.getLayoutManager().getItemCount());
+        return next != RecyclerView.NO_POSITION && next - position < position - start
+                ? next : start;
+    }
+
+    /**
+     * Returns the first position of the given section, or {@link RecyclerView#NO_POSITION} if
+     * there is no such section.
+     */
+    private static int getSectionStart(@NonNull SectionIndexer indexer, int section,
+            int itemCount) {
+        final Object[] sections = indexer.getSections();
+        if (sections == null || section >= sections.length) {
+            return RecyclerView.NO_POSITION;
+        }
+        final int start = indexer.getPositionForSection(section);
+        return start >= 0 && start < itemCount ? start : RecyclerView.NO_POSITION;
+    }
+
     /**
      * Creates a scroller to be used in the snapping implementation.
      *
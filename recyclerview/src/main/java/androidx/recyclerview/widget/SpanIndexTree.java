@@ -0,0 +1,304 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.recyclerview.widget;
+
+import java.util.Arrays;
+
+/**
+ * Span index and span group index of every position of a grid, following the default
+ * {@link GridLayoutManager.SpanSizeLookup#getSpanIndex(int, int)} and
+ * {@link GridLayoutManager.SpanSizeLookup#getSpanGroupIndex(int, int)} rules.
+ * <p>
+ * For each position computed so far, this keeps its span size and the state of the row before it
+ * (the span it would start at, and whether the previous item completed its row). Span indices
+ * follow from those in O(1). Group indices are the prefix sum of the per-position group
+ * increments, kept in a Fenwick tree for O(log n) lookups.
+ * <p>
+ * Adapter changes don't clear the tree. The arrays are shifted and the changed positions marked
+ * dirty, and the next query recomputes from the first dirty position onwards, stopping as soon as
+ * the row state before a clean position equals the one it was last computed with, since nothing
+ * after it can have moved. Span sizes are only read from the lookup for dirty positions, and only
+ * when queried, so they always come from the adapter's current data.
+ */
+final class SpanIndexTree {
+    private static final int UNKNOWN = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final GridLayoutManager.SpanSizeLookup mLookup;
+    private int mSpanCount;
+
+    // Span size of each position, UNKNOWN if it has to be read from the lookup again.
+    private int[] mSpanSizes = new int[INITIAL_CAPACITY];
+    // Row state before each position, encoded as span * 2 + (previous completed its row ? 1 : 0).
+    private int[] mStatesBefore = new int[INITIAL_CAPACITY];
+    // Fenwick tree over the group increment of each position, 1-based.
+    private int[] mGroupTree = new int[INITIAL_CAPACITY + 1];
+    private boolean mGroupTreeValid = true;
+
+    // Positions [0, mComputedCount) have been computed.
+    private int mComputedCount;
+    // Positions from mFirstDirty must be recomputed. Resyncing with the previous computation is
+    // only possible from mDirtyEnd on, which equals mFirstDirty after a removal.
+    private boolean mHasDirtyPositions;
+    private int mFirstDirty;
+    private int mDirtyEnd;
+
+    SpanIndexTree(GridLayoutManager.SpanSizeLookup lookup) {
+        mLookup = lookup;
+    }
+
+    int getSpanIndex(int position, int spanCount) {
+        ensureComputed(position, spanCount);
+        final int span = mStatesBefore[position] >> 1;
+        return span + mSpanSizes[position] <= spanCount ? span : 0;
+    }
+
+    int getSpanGroupIndex(int position, int spanCount) {
+        ensureComputed(position, spanCount);
+        if (!mGroupTreeValid) {
+            rebuildGroupTree();
+        }
+        int group = 0;
+        for (int i = position + 1; i > 0; i -= i & -i) {
+            group += mGroupTree[i];
+        }
+        return group;
+    }
+
+    void clear() {
+        mComputedCount = 0;
+        mHasDirtyPositions = false;
+        mFirstDirty = mDirtyEnd = 0;
+        Arrays.fill(mGroupTree, 0);
+        mGroupTreeValid = true;
+    }
+
+    void onItemsAdded(int positionStart, int itemCount) {
+        if (positionStart >= mComputedCount || itemCount <= 0) {
+            return;
+        }
+        ensureCapacity(mComputedCount + itemCount);
+        final int moved = mComputedCount - positionStart;
+        System.arraycopy(mSpanSizes, positionStart, mSpanSizes, positionStart + itemCount, moved);
+        System.arraycopy(mStatesBefore, positionStart, mStatesBefore, positionStart + itemCount,
+                moved);
+        Arrays.fill(mSpanSizes, positionStart, positionStart + itemCount, UNKNOWN);
+        Arrays.fill(mStatesBefore, positionStart, positionStart + itemCount, UNKNOWN);
+        mComputedCount += itemCount;
+        mGroupTreeValid = false;
+        if (mHasDirtyPositions) {
+            if (mFirstDirty >= positionStart) {
+                mFirstDirty += itemCount;
+            }
+            if (mDirtyEnd > positionStart) {
+                mDirtyEnd += itemCount;
+            }
+        }
+        markDirty(positionStart, positionStart + itemCount);
+    }
+
+    void onItemsRemoved(int positionStart, int itemCount) {
+        if (positionStart >= mComputedCount || itemCount <= 0) {
+            return;
+        }
+        if (positionStart + itemCount >= mComputedCount) {
+            // everything after the removed range was not computed yet
+            truncate(positionStart);
+            return;
+        }
+        final int moved = mComputedCount - positionStart - itemCount;
+        System.arraycopy(mSpanSizes, positionStart + itemCount, mSpanSizes, positionStart, moved);
+        System.arraycopy(mStatesBefore, positionStart + itemCount, mStatesBefore, positionStart,
+                moved);
+        mComputedCount -= itemCount;
+        mGroupTreeValid = false;
+        if (mHasDirtyPositions) {
+            mFirstDirty = shiftForRemoval(mFirstDirty, positionStart, itemCount);
+            mDirtyEnd = shiftForRemoval(mDirtyEnd, positionStart, itemCount);
+        }
+        // the item now at positionStart may start at a different span
+        markDirty(positionStart, positionStart);
+    }
+
+    void onItemsChanged(int positionStart, int itemCount) {
+        if (positionStart >= mComputedCount || itemCount <= 0) {
+            return;
+        }
+        final int end = Math.min(positionStart + itemCount, mComputedCount);
+        Arrays.fill(mSpanSizes, positionStart, end, UNKNOWN);
+        markDirty(positionStart, end);
+    }
+
+    void onItemsMoved(int from, int to, int itemCount) {
+        // a move only reorders the items between the two positions
+        final int start = Math.min(from, to);
+        final int end = Math.max(from, to) + itemCount;
+        onItemsChanged(start, end - start);
+    }
+
+    private static int shiftForRemoval(int position, int positionStart, int itemCount) {
+        if (position >= positionStart + itemCount) {
+            return position - itemCount;
+        }
+        return Math.min(position, positionStart);
+    }
+
+    private void markDirty(int start, int end) {
+        if (mHasDirtyPositions) {
+            mFirstDirty = Math.min(mFirstDirty, start);
+            mDirtyEnd = Math.max(mDirtyEnd, end);
+        } else {
+            mHasDirtyPositions = true;
+            mFirstDirty = start;
+            mDirtyEnd = end;
+        }
+    }
+
+    private void truncate(int count) {
+        mComputedCount = count;
+        if (mHasDirtyPositions) {
+            mDirtyEnd = Math.min(mDirtyEnd, count);
+            if (mFirstDirty >= count) {
+                mHasDirtyPositions = false;
+                mFirstDirty = mDirtyEnd = 0;
+            }
+        }
+        mGroupTreeValid = false;
+    }
+
+    private void ensureComputed(int position, int spanCount) {
+        if (spanCount != mSpanCount) {
+            mSpanCount = spanCount;
+            clear();
+        }
+        if (mHasDirtyPositions) {
+            recomputeDirtyPositions();
+        }
+        if (position < mComputedCount) {
+            return;
+        }
+        ensureCapacity(position + 1);
+        int state = mComputedCount == 0 ? 0 : stateAfter(mComputedCount - 1);
+        for (int i = mComputedCount; i <= position; i++) {
+            final int spanSize = mLookup.getSpanSize(i);
+            mSpanSizes[i] = spanSize;
+            mStatesBefore[i] = state;
+            if (mGroupTreeValid) {
+                addToGroupTree(i, groupIncrement(state, spanSize));
+            }
+            state = nextState(state, spanSize);
+        }
+        mComputedCount = position + 1;
+    }
+
+    private void recomputeDirtyPositions() {
+        mHasDirtyPositions = false;
+        final int dirtyEnd = mDirtyEnd;
+        int i = mFirstDirty;
+        mFirstDirty = mDirtyEnd = 0;
+        int state = i == 0 ? 0 : stateAfter(i - 1);
+        for (; i < mComputedCount; i++) {
+            if (i >= dirtyEnd && mStatesBefore[i] == state && mSpanSizes[i] != UNKNOWN) {
+                // same row state as last time and clean from here on
+                break;
+            }
+            int spanSize = mSpanSizes[i];
+            if (spanSize == UNKNOWN) {
+                spanSize = mLookup.getSpanSize(i);
+            }
+            if (mGroupTreeValid) {
+                final int oldIncrement = mStatesBefore[i] == UNKNOWN || mSpanSizes[i] == UNKNOWN
+                        ? groupIncrementAt(i) : groupIncrement(mStatesBefore[i], mSpanSizes[i]);
+                addToGroupTree(i, groupIncrement(state, spanSize) - oldIncrement);
+            }
+            mSpanSizes[i] = spanSize;
+            mStatesBefore[i] = state;
+            state = nextState(state, spanSize);
+        }
+    }
+
+    private int stateAfter(int position) {
+        return nextState(mStatesBefore[position], mSpanSizes[position]);
+    }
+
+    private int nextState(int stateBefore, int spanSize) {
+        final int span = stateBefore >> 1;
+        final int start = span + spanSize <= mSpanCount ? span : 0;
+        final int end = start + spanSize;
+        if (end == mSpanCount) {
+            return 1; // span 0, row completed
+        }
+        return end << 1;
+    }
+
+    private int groupIncrement(int stateBefore, int spanSize) {
+        final int rowCompleted = stateBefore & 1;
+        final boolean fits = (stateBefore >> 1) + spanSize <= mSpanCount;
+        return rowCompleted + (fits ? 0 : 1);
+    }
+
+    private int groupIncrementAt(int position) {
+        int value = 0;
+        for (int i = position + 1; i > 0; i -= i & -i) {
+            value += mGroupTree[i];
+        }
+        for (int i = position; i > 0; i -= i & -i) {
+            value -= mGroupTree[i];
+        }
+        return value;
+    }
+
+    private void addToGroupTree(int position, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        for (int i = position + 1; i < mGroupTree.length; i += i & -i) {
+            mGroupTree[i] += delta;
+        }
+    }
+
+    private void rebuildGroupTree() {
+        Arrays.fill(mGroupTree, 0);
+        final int size = mGroupTree.length;
+        // nodes past mComputedCount are propagated too, so that positions computed later can be
+        // added to the tree with point updates
+        for (int i = 1; i < size; i++) {
+            if (i <= mComputedCount) {
+                mGroupTree[i] += groupIncrement(mStatesBefore[i - 1], mSpanSizes[i - 1]);
+            }
+            final int parent = i + (i & -i);
+            if (parent < size) {
+                mGroupTree[parent] += mGroupTree[i];
+            }
+        }
+        mGroupTreeValid = true;
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= mSpanSizes.length) {
+            return;
+        }
+        int capacity = mSpanSizes.length;
+        while (capacity < count) {
+            capacity *= 2;
+        }
+        mSpanSizes = Arrays.copyOf(mSpanSizes, capacity);
+        mStatesBefore = Arrays.copyOf(mStatesBefore, capacity);
+        mGroupTree = new int[capacity + 1];
+        mGroupTreeValid = false;
+    }
+}
@@ -822,7 +822,7 @@ public class StaggeredGridLayoutManager extends RecyclerView.LayoutManager imple
             anchorInfo.mLayoutFromEnd = mShouldReverseLayout;
         }
         if (mPendingSavedState.mSpanLookupSize > 1) {
-            mLazySpanLookup.mData = mPendingSavedState.mSpanLookup;
+            mLazySpanLookup.restoreSpans(mPendingSavedState.mSpanLookup);
             mLazySpanLookup.mFullSpanItems = mPendingSavedState.mFullSpanItems;
         }
     }
@@ -1250,8 +1250,8 @@ public class StaggeredGridLayoutManager extends RecyclerView.LayoutManager imple
         state.mAnchorLayoutFromEnd = mLastLayoutFromEnd;
         state.mLastLayoutRTL = mLastLayoutRTL;
 
-        if (mLazySpanLookup != null && mLazySpanLookup.mData != null) {
-            state.mSpanLookup = mLazySpanLookup.mData;
+        if (mLazySpanLookup != null && mLazySpanLookup.mSize > 0) {
+            state.mSpanLookup = mLazySpanLookup.saveSpans();
             state.mSpanLookupSize = state.mSpanLookup.length;
             state.mFullSpanItems = mLazySpanLookup.mFullSpanItems;
         } else {
@@ -2867,27 +2867,46 @@ public class StaggeredGridLayoutManager extends RecyclerView.LayoutManager imple
     }
 
     /**
-     * An array of mappings from adapter position to span.
-     * This only grows when a write happens and it grows up to the size of the adapter.
+     * A mapping from adapter position to span.
+     * <p>
+     * Spans are kept in chunks of consecutive positions, each holding up to
+     * {@link #MAX_CHUNK_SIZE} positions. A chunk whose positions are all unassigned has no
+     * backing array, so jumping deep into a long list doesn't allocate for the positions that
+     * were skipped. Chunks don't store where they start; the start offsets are recomputed lazily
+     * after an adapter change, so adding or removing items only moves the spans of the chunk the
+     * change falls in instead of every span after it.
+     * <p>
+     * Full span items are kept sorted by position and found with a binary search.
      */
     static class LazySpanLookup {
 
-        private static final int MIN_SIZE = 10;
-        int[] mData;
+        private static final int CHUNK_SIZE = 256;
+        private static final int MAX_CHUNK_SIZE = CHUNK_SIZE * 2;
+
+        final ArrayList<Chunk> mChunks = new ArrayList<>();
+        // Number of positions covered by mChunks.
+        int mSize;
+        private int[] mChunkStarts = new int[16];
+        private boolean mChunkStartsValid = true;
         List<FullSpanItem> mFullSpanItems;
 
+        static final class Chunk {
+            int mLength;
+            // null while every position in the chunk is unassigned
+            int[] mSpans;
+
+            Chunk(int length) {
+                mLength = length;
+            }
+        }
 
         /**
          * Invalidates everything after this position, including full span information
          */
         int forceInvalidateAfter(int position) {
             if (mFullSpanItems != null) {
-                for (int i = mFullSpanItems.size() - 1; i >= 0; i--) {
-                    FullSpanItem fsi = mFullSpanItems.get(i);
-                    if (fsi.mPosition >= position) {
-                        mFullSpanItems.remove(i);
-                    }
-                }
+                final int index = findFullSpanIndex(position);
+                mFullSpanItems.subList(index, mFullSpanItems.size()).clear();
             }
             return invalidateAfter(position);
         }
@@ -2896,74 +2915,119 @@ public class StaggeredGridLayoutManager extends RecyclerView.LayoutManager imple
          * returns end position for invalidation.
          */
         int invalidateAfter(int position) {
-            if (mData == null) {
-                return RecyclerView.NO_POSITION;
-            }
-            if (position >= mData.length) {
+            if (position >= mSize) {
                 return RecyclerView.NO_POSITION;
             }
             int endPosition = invalidateFullSpansAfter(position);
             if (endPosition == RecyclerView.NO_POSITION) {
-                Arrays.fill(mData, position, mData.length, LayoutParams.INVALID_SPAN_ID);
-                return mData.length;
+                final int size = mSize;
+                truncate(Math.max(position, 0));
+                return size;
             } else {
                 // Just invalidate items in between `position` and the next full span item, or the
-                // end of the tracked spans in mData if it's not been lengthened yet.
-                final int invalidateToIndex = Math.min(endPosition + 1, mData.length);
-                Arrays.fill(mData, position, invalidateToIndex, LayoutParams.INVALID_SPAN_ID);
+                // end of the tracked spans if they've not been lengthened yet.
+                final int invalidateToIndex = Math.min(endPosition + 1, mSize);
+                invalidateRange(position, invalidateToIndex);
                 return invalidateToIndex;
             }
         }
 
         int getSpan(int position) {
-            if (mData == null || position >= mData.length) {
+            if (position < 0 || position >= mSize) {
                 return LayoutParams.INVALID_SPAN_ID;
-            } else {
-                return mData[position];
             }
+            final int index = findChunk(position);
+            final int[] spans = mChunks.get(index).mSpans;
+            return spans == null ? LayoutParams.INVALID_SPAN_ID
+                    : spans[position - mChunkStarts[index]];
         }
 
         void setSpan(int position, Span span) {
-            ensureSize(position);
-            mData[position] = span.mIndex;
+            setSpanIndex(position, span.mIndex);
         }
 
-        int sizeForPosition(int position) {
-            int len = mData.length;
-            while (len <= position) {
-                len *= 2;
+        private void setSpanIndex(int position, int spanIndex) {
+            ensureSize(position);
+            final int index = findChunk(position);
+            final Chunk chunk = mChunks.get(index);
+            if (chunk.mSpans == null) {
+                if (spanIndex == LayoutParams.INVALID_SPAN_ID) {
+                    return;
+                }
+                chunk.mSpans = new int[chunk.mLength];
+                Arrays.fill(chunk.mSpans, LayoutParams.INVALID_SPAN_ID);
             }
-            return len;
+            chunk.mSpans[position - mChunkStarts[index]] = spanIndex;
         }
 
+        /**
+         * Makes sure the given position is covered by a chunk. Positions are only ever appended
+         * here, which doesn't move the start of existing chunks.
+         */
         void ensureSize(int position) {
-            if (mData == null) {
-                mData = new int[Math.max(position, MIN_SIZE) + 1];
-                Arrays.fill(mData, LayoutParams.INVALID_SPAN_ID);
-            } else if (position >= mData.length) {
-                int[] old = mData;
-                mData = new int[sizeForPosition(position)];
-                System.arraycopy(old, 0, mData, 0, old.length);
-                Arrays.fill(mData, old.length, mData.length, LayoutParams.INVALID_SPAN_ID);
+            while (mSize <= position) {
+                final int lastIndex = mChunks.size() - 1;
+                final Chunk last = lastIndex < 0 ? null : mChunks.get(lastIndex);
+                if (last != null && last.mLength < CHUNK_SIZE) {
+                    final int added = Math.min(CHUNK_SIZE - last.mLength, position + 1 - mSize);
+                    if (last.mSpans != null) {
+                        last.mSpans = Arrays.copyOf(last.mSpans, last.mLength + added);
+                        Arrays.fill(last.mSpans, last.mLength, last.mLength + added,
+                                LayoutParams.INVALID_SPAN_ID);
+                    }
+                    last.mLength += added;
+                    mSize += added;
+                } else {
+                    final Chunk chunk = new Chunk(Math.min(CHUNK_SIZE, position + 1 - mSize));
+                    if (mChunkStartsValid) {
+                        ensureChunkStartsCapacity(lastIndex + 2);
+                        mChunkStarts[lastIndex + 1] = mSize;
+                    }
+                    mChunks.add(chunk);
+                    mSize += chunk.mLength;
+                }
             }
         }
 
         void clear() {
-            if (mData != null) {
-                Arrays.fill(mData, LayoutParams.INVALID_SPAN_ID);
-            }
+            mChunks.clear();
+            mSize = 0;
+            mChunkStartsValid = true;
             mFullSpanItems = null;
         }
 
         void offsetForRemoval(int positionStart, int itemCount) {
-            if (mData == null || positionStart >= mData.length) {
+            if (positionStart >= mSize || itemCount <= 0) {
                 return;
             }
-            ensureSize(positionStart + itemCount);
-            System.arraycopy(mData, positionStart + itemCount, mData, positionStart,
-                    mData.length - positionStart - itemCount);
-            Arrays.fill(mData, mData.length - itemCount, mData.length,
-                    LayoutParams.INVALID_SPAN_ID);
+            int toRemove = Math.min(itemCount, mSize - positionStart);
+            mSize -= toRemove;
+            int index = findChunk(positionStart);
+            final int offset = positionStart - mChunkStarts[index];
+            mChunkStartsValid = false;
+            if (offset > 0) {
+                final Chunk first = mChunks.get(index);
+                final int removed = Math.min(first.mLength - offset, toRemove);
+                removeFromChunk(first, offset, removed);
+                toRemove -= removed;
+                index++;
+            }
+            int end = index;
+            while (toRemove > 0 && toRemove >= mChunks.get(end).mLength) {
+                toRemove -= mChunks.get(end).mLength;
+                end++;
+            }
+            mChunks.subList(index, end).clear();
+            if (toRemove > 0) {
+                removeFromChunk(mChunks.get(index), 0, toRemove);
+            }
+            // avoid leaving small chunks behind around the removed range
+            if (index < mChunks.size()) {
+                mergeWithNextIfSmall(index);
+            }
+            if (index > 0) {
+                mergeWithNextIfSmall(index - 1);
+            }
             offsetFullSpansForRemoval(positionStart, itemCount);
         }
 
@@ -2971,29 +3035,44 @@ public class StaggeredGridLayoutManager extends RecyclerView.LayoutManager imple
             if (mFullSpanItems == null) {
                 return;
             }
-            final int end = positionStart + itemCount;
-            for (int i = mFullSpanItems.size() - 1; i >= 0; i--) {
-                FullSpanItem fsi = mFullSpanItems.get(i);
-                if (fsi.mPosition < positionStart) {
-                    continue;
-                }
-                if (fsi.mPosition < end) {
-                    mFullSpanItems.remove(i);
-                } else {
-                    fsi.mPosition -= itemCount;
-                }
+            final int start = findFullSpanIndex(positionStart);
+            final int end = findFullSpanIndex(positionStart + itemCount);
+            mFullSpanItems.subList(start, end).clear();
+            for (int i = mFullSpanItems.size() - 1; i >= start; i--) {
+                mFullSpanItems.get(i).mPosition -= itemCount;
             }
         }
 
         void offsetForAddition(int positionStart, int itemCount) {
-            if (mData == null || positionStart >= mData.length) {
+            if (positionStart >= mSize || itemCount <= 0) {
                 return;
             }
-            ensureSize(positionStart + itemCount);
-            System.arraycopy(mData, positionStart, mData, positionStart + itemCount,
-                    mData.length - positionStart - itemCount);
-            Arrays.fill(mData, positionStart, positionStart + itemCount,
-                    LayoutParams.INVALID_SPAN_ID);
+            final int index = findChunk(positionStart);
+            final Chunk chunk = mChunks.get(index);
+            final int offset = positionStart - mChunkStarts[index];
+            if (chunk.mLength + itemCount <= MAX_CHUNK_SIZE) {
+                final int[] spans = chunk.mSpans;
+                if (spans != null) {
+                    final int[] target = spans.length >= chunk.mLength + itemCount ? spans
+                            : Arrays.copyOf(spans, chunk.mLength + itemCount);
+                    System.arraycopy(spans, offset, target, offset + itemCount,
+                            chunk.mLength - offset);
+                    Arrays.fill(target, offset, offset + itemCount, LayoutParams.INVALID_SPAN_ID);
+                    chunk.mSpans = target;
+                }
+                chunk.mLength += itemCount;
+            } else {
+                int insertIndex = index;
+                if (offset > 0) {
+                    splitChunk(index, offset);
+                    insertIndex++;
+                }
+                for (int remaining = itemCount; remaining > 0; remaining -= CHUNK_SIZE) {
+                    mChunks.add(insertIndex++, new Chunk(Math.min(CHUNK_SIZE, remaining)));
+                }
+            }
+            mSize += itemCount;
+            mChunkStartsValid = false;
             offsetFullSpansForAddition(positionStart, itemCount);
         }
 
@@ -3004,12 +3083,194 @@ public class StaggeredGridLayoutManager extends RecyclerView.LayoutManager imple
             for (int i = mFullSpanItems.size() - 1; i >= 0; i--) {
                 FullSpanItem fsi = mFullSpanItems.get(i);
                 if (fsi.mPosition < positionStart) {
-                    continue;
+                    break;
                 }
                 fsi.mPosition += itemCount;
             }
         }
 
+        /**
+         * Returns the assigned spans in a compact form for {@link SavedState}: consecutive runs of
+         * assigned positions, each written as its start, its length and then its spans.
+         * Unassigned positions aren't written at all.
+         */
+        int[] saveSpans() {
+            int[] runs = new int[16];
+            int length = 0;
+            int runHeader = -1;
+            int position = 0;
+            for (int i = 0; i < mChunks.size(); i++) {
+                final Chunk chunk = mChunks.get(i);
+                if (chunk.mSpans == null) {
+                    runHeader = -1;
+                    position += chunk.mLength;
+                    continue;
+                }
+                for (int j = 0; j < chunk.mLength; j++, position++) {
+                    final int span = chunk.mSpans[j];
+                    if (span == LayoutParams.INVALID_SPAN_ID) {
+                        runHeader = -1;
+                        continue;
+                    }
+                    if (length + 3 > runs.length) {
+                        runs = Arrays.copyOf(runs, runs.length * 2);
+                    }
+                    if (runHeader == -1) {
+                        runHeader = length;
+                        runs[length++] = position;
+                        runs[length++] = 0;
+                    }
+                    runs[runHeader + 1]++;
+                    runs[length++] = span;
+                }
+            }
+            return Arrays.copyOf(runs, length);
+        }
+
+        /**
+         * Restores spans written by {@link #saveSpans()}.
+         */
+        void restoreSpans(int[] runs) {
+            mChunks.clear();
+            mSize = 0;
+            mChunkStartsValid = true;
+            int i = 0;
+            while (i + 1 < runs.length) {
+                final int start = runs[i++];
+                final int count = Math.min(runs[i++], runs.length - i);
+                for (int j = 0; j < count; j++) {
+                    setSpanIndex(start + j, runs[i++]);
+                }
+            }
+        }
+
+        private int findChunk(int position) {
+            if (!mChunkStartsValid) {
+                final int count = mChunks.size();
+                ensureChunkStartsCapacity(count);
+                int start = 0;
+                for (int i = 0; i < count; i++) {
+                    mChunkStarts[i] = start;
+                    start += mChunks.get(i).mLength;
+                }
+                mChunkStartsValid = true;
+            }
+            int low = 0;
+            int high = mChunks.size() - 1;
+            while (low < high) {
+                final int mid = (low + high + 1) >>> 1;
+                if (mChunkStarts[mid] <= position) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        private void ensureChunkStartsCapacity(int count) {
+            if (mChunkStarts.length < count) {
+                mChunkStarts = Arrays.copyOf(mChunkStarts, Math.max(count, mChunkStarts.length * 2));
+            }
+        }
+
+        private void truncate(int size) {
+            if (size == 0) {
+                mChunks.clear();
+                mSize = 0;
+                mChunkStartsValid = true;
+                return;
+            }
+            final int index = findChunk(size - 1);
+            final Chunk last = mChunks.get(index);
+            last.mLength = size - mChunkStarts[index];
+            mChunks.subList(index + 1, mChunks.size()).clear();
+            mSize = size;
+        }
+
+        private void invalidateRange(int from, int to) {
+            if (from >= to) {
+                return;
+            }
+            int index = findChunk(from);
+            int chunkStart = mChunkStarts[index];
+            while (chunkStart < to) {
+                final Chunk chunk = mChunks.get(index);
+                if (chunk.mSpans != null) {
+                    final int start = Math.max(from - chunkStart, 0);
+                    final int end = Math.min(to - chunkStart, chunk.mLength);
+                    if (start == 0 && end == chunk.mLength) {
+                        chunk.mSpans = null;
+                    } else {
+                        Arrays.fill(chunk.mSpans, start, end, LayoutParams.INVALID_SPAN_ID);
+                    }
+                }
+                chunkStart += chunk.mLength;
+                index++;
+            }
+        }
+
+        private static void removeFromChunk(Chunk chunk, int offset, int count) {
+            if (chunk.mSpans != null) {
+                System.arraycopy(chunk.mSpans, offset + count, chunk.mSpans, offset,
+                        chunk.mLength - offset - count);
+            }
+            chunk.mLength -= count;
+        }
+
+        private void splitChunk(int index, int offset) {
+            final Chunk chunk = mChunks.get(index);
+            final Chunk tail = new Chunk(chunk.mLength - offset);
+            if (chunk.mSpans != null) {
+                tail.mSpans = Arrays.copyOfRange(chunk.mSpans, offset, chunk.mLength);
+            }
+            chunk.mLength = offset;
+            mChunks.add(index + 1, tail);
+        }
+
+        private void mergeWithNextIfSmall(int index) {
+            if (index + 1 >= mChunks.size()) {
+                return;
+            }
+            final Chunk chunk = mChunks.get(index);
+            final Chunk next = mChunks.get(index + 1);
+            final int length = chunk.mLength + next.mLength;
+            if (length > CHUNK_SIZE) {
+                return;
+            }
+            if (chunk.mSpans != null || next.mSpans != null) {
+                final int[] spans = new int[length];
+                Arrays.fill(spans, LayoutParams.INVALID_SPAN_ID);
+                if (chunk.mSpans != null) {
+                    System.arraycopy(chunk.mSpans, 0, spans, 0, chunk.mLength);
+                }
+                if (next.mSpans != null) {
+                    System.arraycopy(next.mSpans, 0, spans, chunk.mLength, next.mLength);
+                }
+                chunk.mSpans = spans;
+            }
+            chunk.mLength = length;
+            mChunks.remove(index + 1);
+            mChunkStartsValid = false;
+        }
+
+        /**
+         * Returns the index of the first full span item at or after the given position.
+         */
+        private int findFullSpanIndex(int position) {
+            int low = 0;
+            int high = mFullSpanItems.size();
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (mFullSpanItems.get(mid).mPosition < position) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
         /**
          * Returns when invalidation should end. e.g. hitting a full span position.
          * Returned position SHOULD BE invalidated.
@@ -3018,24 +3279,14 @@ public class StaggeredGridLayoutManager extends RecyclerView.LayoutManager imple
             if (mFullSpanItems == null) {
                 return RecyclerView.NO_POSITION;
             }
-            final FullSpanItem item = getFullSpanItem(position);
+            int index = findFullSpanIndex(position);
             // if there is an fsi at this position, get rid of it.
-            if (item != null) {
-                mFullSpanItems.remove(item);
+            if (index < mFullSpanItems.size()
+                    && mFullSpanItems.get(index).mPosition == position) {
+                mFullSpanItems.remove(index);
             }
-            int nextFsiIndex = -1;
-            final int count = mFullSpanItems.size();
-            for (int i = 0; i < count; i++) {
-                FullSpanItem fsi = mFullSpanItems.get(i);
-                if (fsi.mPosition >= position) {
-                    nextFsiIndex = i;
-                    break;
-                }
-            }
-            if (nextFsiIndex != -1) {
-                FullSpanItem fsi = mFullSpanItems.get(nextFsiIndex);
-                mFullSpanItems.remove(nextFsiIndex);
-                return fsi.mPosition;
+            if (index < mFullSpanItems.size()) {
+                return mFullSpanItems.remove(index).mPosition;
             }
             return RecyclerView.NO_POSITION;
         }
@@ -3044,31 +3295,25 @@ public class StaggeredGridLayoutManager extends RecyclerView.LayoutManager imple
             if (mFullSpanItems == null) {
                 mFullSpanItems = new ArrayList<>();
             }
-            final int size = mFullSpanItems.size();
-            for (int i = 0; i < size; i++) {
-                FullSpanItem other = mFullSpanItems.get(i);
-                if (other.mPosition == fullSpanItem.mPosition) {
-                    if (DEBUG) {
-                        throw new IllegalStateException("two fsis for same position");
-                    } else {
-                        mFullSpanItems.remove(i);
-                    }
-                }
-                if (other.mPosition >= fullSpanItem.mPosition) {
-                    mFullSpanItems.add(i, fullSpanItem);
-                    return;
+            final int index = findFullSpanIndex(fullSpanItem.mPosition);
+            if (index < mFullSpanItems.size()
+                    && mFullSpanItems.get(index).mPosition == fullSpanItem.mPosition) {
+                if (DEBUG) {
+                    throw new IllegalStateException("two fsis for same position");
                 }
+                mFullSpanItems.set(index, fullSpanItem);
+            } else {
+                mFullSpanItems.add(index, fullSpanItem);
             }
-            // if it is not added to a position.
-            mFullSpanItems.add(fullSpanItem);
         }
 
         public FullSpanItem getFullSpanItem(int position) {
             if (mFullSpanItems == null) {
                 return null;
             }
-            for (int i = mFullSpanItems.size() - 1; i >= 0; i--) {
-                final FullSpanItem fsi = mFullSpanItems.get(i);
+            final int index = findFullSpanIndex(position);
+            if (index < mFullSpanItems.size()) {
+                final FullSpanItem fsi = mFullSpanItems.get(index);
                 if (fsi.mPosition == position) {
                     return fsi;
                 }
@@ -3092,14 +3337,13 @@ public class StaggeredGridLayoutManager extends RecyclerView.LayoutManager imple
                 minPos = 0;
             }
             final int limit = mFullSpanItems.size();
-            for (int i = 0; i < limit; i++) {
+            for (int i = findFullSpanIndex(minPos); i < limit; i++) {
                 FullSpanItem fsi = mFullSpanItems.get(i);
                 if (fsi.mPosition >= maxPos) {
                     return null;
                 }
-                if (fsi.mPosition >= minPos
-                        && (gapDir == 0 || fsi.mGapDir == gapDir
-                        || (hasUnwantedGapAfter && fsi.mHasUnwantedGapAfter))) {
+                if (gapDir == 0 || fsi.mGapDir == gapDir
+                        || (hasUnwantedGapAfter && fsi.mHasUnwantedGapAfter)) {
                     return fsi;
                 }
             }
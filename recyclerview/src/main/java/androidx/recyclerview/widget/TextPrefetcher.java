@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.recyclerview.widget;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LruCache;
+import androidx.core.text.PrecomputedTextCompat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Computes the {@link PrecomputedTextCompat} declared by
+ * {@link RecyclerView.Adapter#onPrefetchText(int, RecyclerView.TextPrefetchRegistry)} on the bind
+ * preparation worker pool, and keeps the results in a bounded LRU cache keyed by the text and its
+ * {@link PrecomputedTextCompat.Params}.
+ * <p>
+ * Only accessed on the main thread. The cache is cleared on configuration changes, since the
+ * params used to measure the cached text usually change with them.
+ */
+final class TextPrefetcher implements RecyclerView.TextPrefetchRegistry {
+    static final int DEFAULT_CACHE_SIZE = 64;
+
+    private final LruCache<Key, Future<PrecomputedTextCompat>> mCache;
+
+    private static final class Key {
+        final CharSequence mText;
+        final PrecomputedTextCompat.Params mParams;
+        private final int mHashCode;
+
+        Key(CharSequence text, PrecomputedTextCompat.Params params) {
+            mText = text;
+            mParams = params;
+            mHashCode = 31 * text.hashCode() + params.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return mHashCode == other.mHashCode && mText.equals(other.mText)
+                    && mParams.equals(other.mParams);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
+    TextPrefetcher(int cacheSize) {
+        mCache = new LruCache<Key, Future<PrecomputedTextCompat>>(cacheSize) {
+            @Override
+            protected void entryRemoved(boolean evicted, @NonNull Key key,
+                    @NonNull Future<PrecomputedTextCompat> oldValue,
+                    @Nullable Future<PrecomputedTextCompat> newValue) {
+                oldValue.cancel(false);
+            }
+        };
+    }
+
+    @Override
+    public void addText(@NonNull CharSequence text, @NonNull PrecomputedTextCompat.Params params) {
+        final Key key = new Key(text, params);
+        if (mCache.get(key) != null) {
+            return;
+        }
+        mCache.put(key, BindPreparer.getExecutor().submit(
+                new Callable<PrecomputedTextCompat>() {
+                    @Override
+                    public PrecomputedTextCompat call() {
+                        return PrecomputedTextCompat.create(key.mText, key.mParams);
+                    }
+                }));
+    }
+
+    /**
+     * Returns the precomputed text if it is ready, or null if it wasn't declared or is still
+     * being computed.
+     */
+    @Nullable
+    PrecomputedTextCompat get(@NonNull CharSequence text,
+            @NonNull PrecomputedTextCompat.Params params) {
+        final Key key = new Key(text, params);
+        final Future<PrecomputedTextCompat> future = mCache.get(key);
+        if (future == null || !future.isDone() || future.isCancelled()) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException | InterruptedException e) {
+            mCache.remove(key);
+            return null;
+        }
+    }
+
+    void resize(int cacheSize) {
+        mCache.resize(cacheSize);
+    }
+
+    void clear() {
+        mCache.evictAll();
+    }
+}
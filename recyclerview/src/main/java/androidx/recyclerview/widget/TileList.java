@@ -37,6 +37,14 @@ class TileList<T> {
     }
 
     public T getItemAt(int pos) {
+        final Tile<T> tile = getTileAt(pos);
+        return tile == null ? null : tile.getByPosition(pos);
+    }
+
+    /**
+     * Returns the {@link Tile} containing the given position, or {@code null} if it isn't loaded.
+     */
+    public Tile<T> getTileAt(int pos) {
         if (mLastAccessedTile == null || !mLastAccessedTile.containsPosition(pos)) {
             final int startPosition = pos - (pos % mTileSize);
             final int index = mTiles.indexOfKey(startPosition);
@@ -45,7 +53,7 @@ class TileList<T> {
             }
             mLastAccessedTile = mTiles.valueAt(index);
         }
-        return mLastAccessedTile.getByPosition(pos);
+        return mLastAccessedTile;
     }
 
     public int size() {
@@ -94,6 +102,10 @@ class TileList<T> {
         public final T[] mItems;
         public int mStartPosition;
         public int mItemCount;
+        // Rows instead of mItems, for an AsyncListUtil.RowDataCallback.
+        AsyncListUtil.RowBuffer mRows;
+        // As reported by the DataCallback, or the capacity of mRows.
+        int mSizeInBytes;
         Tile<T> mNext;  // Used only for pooling recycled tiles.
 
         public Tile(Class<T> klass, int size) {
@@ -0,0 +1,440 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.recyclerview.widget;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * {@link RecyclerView.Adapter RecyclerView.Adapter} base class for presenting a tree, such as a
+ * settings screen or an expandable list, as a flat list of the nodes whose ancestors are all
+ * expanded.
+ * <p>
+ * Unlike flattening the tree into a list and submitting it to a {@link ListAdapter}, the tree is
+ * kept as is, and each node knows how many rows its subtree takes. Adding, removing, expanding,
+ * collapsing or changing a node updates the sizes on the path to the root, and dispatches the one
+ * range of rows that changed, without flattening or diffing anything. Each node keeps the row
+ * counts of its children in a Fenwick tree, so the position of a node and the node at a position
+ * take {@code O(depth * log(children))}, however many nodes the tree has.
+ * <pre>
+ * class SettingsAdapter extends TreeListAdapter&lt;Setting, SettingViewHolder> {
+ *     {@literal @}Override
+ *     public void onBindViewHolder(SettingViewHolder holder, int position) {
+ *         final Node&lt;Setting> node = getNode(position);
+ *         holder.bindTo(node.getValue(), node.getDepth(), node.isExpanded());
+ *     }
+ * }
+ *
+ * Node&lt;Setting> display = adapter.addNode(null, displaySetting);
+ * adapter.addNode(display, brightnessSetting);
+ * adapter.setExpanded(display, true);
+ * </pre>
+ * Nodes are only created and modified through the adapter, on the main thread.
+ *
+ * @param <T> Type of the values of the nodes.
+ * @param <VH> A class that extends ViewHolder that will be used by the adapter.
+ */
+public abstract class TreeListAdapter<T, VH extends RecyclerView.ViewHolder>
+        extends RecyclerView.Adapter<VH> {
+
+    /**
+     * A node of the tree of a {@link TreeListAdapter}.
+     *
+     * @param <T> Type of the value of the node.
+     */
+    public static final class Node<T> {
+        private static final int INITIAL_CAPACITY = 4;
+
+        T mValue;
+        final Node<T> mParent;
+        final int mDepth;
+        ArrayList<Node<T>> mChildren;
+        int mIndexInParent;
+        boolean mExpanded;
+
+        // Rows of the subtree, 1 for the node itself plus mChildrenSize if expanded.
+        int mSize = 1;
+        // Rows of the subtrees of the children, expanded or not.
+        int mChildrenSize;
+
+        // Fenwick tree over the mSize of the children, 1-based.
+        int[] mChildTree;
+        boolean mChildTreeValid;
+
+        Node(@Nullable T value, @Nullable Node<T> parent) {
+            mValue = value;
+            mParent = parent;
+            mDepth = parent == null ? -1 : parent.mDepth + 1;
+        }
+
+        public T getValue() {
+            return mValue;
+        }
+
+        /**
+         * Returns the parent of this node, or null for a top level node.
+         */
+        @Nullable
+        public Node<T> getParent() {
+            return mParent == null || mParent.mParent == null ? null : mParent;
+        }
+
+        /**
+         * Returns the number of ancestors of this node, 0 for a top level node.
+         */
+        public int getDepth() {
+            return mDepth;
+        }
+
+        public int getChildCount() {
+            return mChildren == null ? 0 : mChildren.size();
+        }
+
+        @NonNull
+        public Node<T> getChildAt(int index) {
+            if (mChildren == null) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
+            }
+            return mChildren.get(index);
+        }
+
+        public boolean isExpanded() {
+            return mExpanded;
+        }
+
+        /**
+         * Returns the number of rows before the given child, among the rows of the children.
+         */
+        int getChildOffset(int index) {
+            ensureChildTree();
+            int offset = 0;
+            for (int i = index; i > 0; i -= i & -i) {
+                offset += mChildTree[i];
+            }
+            return offset;
+        }
+
+        /**
+         * Returns the index of the child whose rows contain the given row of the children.
+         */
+        int findChildIndex(int row) {
+            ensureChildTree();
+            final int count = mChildren.size();
+            int index = 0;
+            int remaining = row;
+            for (int step = Integer.highestOneBit(count); step > 0; step >>= 1) {
+                final int next = index + step;
+                if (next <= count && mChildTree[next] <= remaining) {
+                    index = next;
+                    remaining -= mChildTree[next];
+                }
+            }
+            return index;
+        }
+
+        /**
+         * Returns whether this node is still a child of its parent, false once it was removed.
+         */
+        boolean isAttached() {
+            final ArrayList<Node<T>> siblings = mParent.mChildren;
+            return siblings != null && mIndexInParent < siblings.size()
+                    && siblings.get(mIndexInParent) == this;
+        }
+
+        void onChildSizeChanged(int index, int delta) {
+            mChildrenSize += delta;
+            if (!mChildTreeValid) {
+                return;
+            }
+            final int count = mChildren.size();
+            for (int i = index + 1; i <= count; i += i & -i) {
+                mChildTree[i] += delta;
+            }
+        }
+
+        void addChild(int index, Node<T> child) {
+            if (mChildren == null) {
+                mChildren = new ArrayList<>(INITIAL_CAPACITY);
+            }
+            final int count = mChildren.size();
+            mChildren.add(index, child);
+            if (index == count && mChildTreeValid) {
+                // appending keeps the tree valid: the new entry covers (count + 1 - lowbit, count]
+                // and itself
+                ensureChildTreeCapacity(count + 1);
+                final int next = count + 1;
+                mChildTree[next] = child.mSize + getChildOffset(count)
+                        - getChildOffset(next - (next & -next));
+            } else {
+                mChildTreeValid = false;
+                for (int i = index + 1; i <= count; i++) {
+                    mChildren.get(i).mIndexInParent = i;
+                }
+            }
+            child.mIndexInParent = index;
+            mChildrenSize += child.mSize;
+        }
+
+        void removeChild(int index) {
+            final Node<T> child = mChildren.remove(index);
+            mChildrenSize -= child.mSize;
+            mChildTreeValid = false;
+            for (int i = index; i < mChildren.size(); i++) {
+                mChildren.get(i).mIndexInParent = i;
+            }
+        }
+
+        private void ensureChildTree() {
+            if (mChildTreeValid) {
+                return;
+            }
+            mChildTreeValid = true;
+            final int count = mChildren == null ? 0 : mChildren.size();
+            ensureChildTreeCapacity(count);
+            Arrays.fill(mChildTree, 0, count + 1, 0);
+            for (int i = 1; i <= count; i++) {
+                mChildTree[i] += mChildren.get(i - 1).mSize;
+                final int parent = i + (i & -i);
+                if (parent <= count) {
+                    mChildTree[parent] += mChildTree[i];
+                }
+            }
+        }
+
+        private void ensureChildTreeCapacity(int count) {
+            if (mChildTree == null) {
+                mChildTree = new int[Math.max(count, INITIAL_CAPACITY) + 1];
+            } else if (count + 1 > mChildTree.length) {
+                mChildTree = Arrays.copyOf(mChildTree,
+                        Math.max(count + 1, mChildTree.length * 2));
+            }
+        }
+    }
+
+    private final ListUpdateCallback mUpdateCallback = new AdapterListUpdateCallback(this);
+
+    // Holds the top level nodes, always expanded and never shown.
+    private final Node<T> mRoot = new Node<>(null, null);
+
+    public TreeListAdapter() {
+        mRoot.mExpanded = true;
+        mRoot.mChildTreeValid = true;
+    }
+
+    @Override
+    public int getItemCount() {
+        return mRoot.mChildrenSize;
+    }
+
+    /**
+     * Returns the node shown at the given position.
+     */
+    @NonNull
+    public Node<T> getNode(int position) {
+        if (position < 0 || position >= getItemCount()) {
+            throw new IndexOutOfBoundsException(
+                    "Position: " + position + ", item count: " + getItemCount());
+        }
+        Node<T> node = mRoot;
+        int row = position;
+        while (true) {
+            final int index = node.findChildIndex(row);
+            row -= node.getChildOffset(index);
+            node = node.mChildren.get(index);
+            if (row == 0) {
+                return node;
+            }
+            // skip the row of the node itself
+            row--;
+        }
+    }
+
+    /**
+     * Returns the value of the node shown at the given position.
+     */
+    public T getItem(int position) {
+        return getNode(position).mValue;
+    }
+
+    /**
+     * Returns the position at which the given node is shown, or {@link RecyclerView#NO_POSITION}
+     * if one of its ancestors is collapsed, or it was removed.
+     */
+    public int getPosition(@NonNull Node<T> node) {
+        int position = 0;
+        Node<T> current = node;
+        while (current.mParent != null) {
+            final Node<T> parent = current.mParent;
+            if (!parent.mExpanded || !current.isAttached()) {
+                return RecyclerView.NO_POSITION;
+            }
+            position += parent.getChildOffset(current.mIndexInParent);
+            if (parent != mRoot) {
+                position++;
+            }
+            current = parent;
+        }
+        return current == mRoot ? position : RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Adds a node with the given value as the last child of the given parent.
+     *
+     * @param parent The parent of the new node, or null to add a top level node.
+     * @param value The value of the new node.
+     * @return The new node, which is collapsed.
+     */
+    @NonNull
+    public Node<T> addNode(@Nullable Node<T> parent, @Nullable T value) {
+        return addNode(parent, parent == null ? mRoot.getChildCount() : parent.getChildCount(),
+                value);
+    }
+
+    /**
+     * Adds a node with the given value as a child of the given parent.
+     *
+     * @param parent The parent of the new node, or null to add a top level node.
+     * @param index The index of the new node among the children of the parent.
+     * @param value The value of the new node.
+     * @return The new node, which is collapsed.
+     */
+    @NonNull
+    public Node<T> addNode(@Nullable Node<T> parent, int index, @Nullable T value) {
+        final Node<T> actualParent = parent == null ? mRoot : parent;
+        if (index < 0 || index > actualParent.getChildCount()) {
+            throw new IndexOutOfBoundsException(
+                    "Index: " + index + ", child count: " + actualParent.getChildCount());
+        }
+        final Node<T> node = new Node<>(value, actualParent);
+        actualParent.addChild(index, node);
+        if (actualParent.mExpanded) {
+            propagateSizeChange(actualParent, 1);
+        }
+        final int position = getPosition(node);
+        if (position != RecyclerView.NO_POSITION) {
+            mUpdateCallback.onInserted(position, 1);
+        }
+        return node;
+    }
+
+    /**
+     * Removes the given node and its subtree.
+     */
+    public void removeNode(@NonNull Node<T> node) {
+        final Node<T> parent = node.mParent;
+        if (parent == null) {
+            throw new IllegalArgumentException("The root cannot be removed");
+        }
+        if (!node.isAttached()) {
+            // already removed
+            return;
+        }
+        final int position = getPosition(node);
+        parent.removeChild(node.mIndexInParent);
+        if (parent.mExpanded) {
+            propagateSizeChange(parent, -node.mSize);
+        }
+        if (position != RecyclerView.NO_POSITION) {
+            mUpdateCallback.onRemoved(position, node.mSize);
+        }
+    }
+
+    /**
+     * Removes all nodes.
+     */
+    public void clear() {
+        final int count = getItemCount();
+        if (mRoot.mChildren != null) {
+            mRoot.mChildren.clear();
+        }
+        mRoot.mChildrenSize = 0;
+        mRoot.mSize = 1;
+        mRoot.mChildTreeValid = false;
+        if (count > 0) {
+            mUpdateCallback.onRemoved(0, count);
+        }
+    }
+
+    /**
+     * Expands or collapses the given node, showing or hiding its subtree.
+     * <p>
+     * Only the rows of the subtree are inserted or removed. The row of the node itself is not
+     * changed, call {@link #changeNode(Node, Object, Object)} to rebind it, for example to update
+     * an expand indicator.
+     */
+    public void setExpanded(@NonNull Node<T> node, boolean expanded) {
+        if (node.mExpanded == expanded || node.mParent == null) {
+            return;
+        }
+        final int position = getPosition(node);
+        node.mExpanded = expanded;
+        final int delta = expanded ? node.mChildrenSize : -node.mChildrenSize;
+        if (delta == 0) {
+            return;
+        }
+        propagateSizeChange(node, delta);
+        if (position != RecyclerView.NO_POSITION) {
+            if (expanded) {
+                mUpdateCallback.onInserted(position + 1, delta);
+            } else {
+                mUpdateCallback.onRemoved(position + 1, -delta);
+            }
+        }
+    }
+
+    /**
+     * Sets the value of the given node, and rebinds its row if it is shown.
+     *
+     * @param payload Optional payload passed to
+     *                {@link RecyclerView.Adapter#onBindViewHolder(RecyclerView.ViewHolder, int,
+     *                java.util.List)}.
+     */
+    public void changeNode(@NonNull Node<T> node, @Nullable T value, @Nullable Object payload) {
+        node.mValue = value;
+        final int position = getPosition(node);
+        if (position != RecyclerView.NO_POSITION) {
+            mUpdateCallback.onChanged(position, 1, payload);
+        }
+    }
+
+    /**
+     * Applies a change of the given number of rows to the size of the given node, and to its
+     * ancestors for as long as they are expanded.
+     */
+    private void propagateSizeChange(@NonNull Node<T> node, int delta) {
+        if (node != mRoot) {
+            // the node's own children size was already updated by the caller, or is unchanged
+            node.mSize += delta;
+        }
+        Node<T> current = node;
+        // a removed subtree stops at the removed node
+        while (current.mParent != null && current.isAttached()) {
+            final Node<T> parent = current.mParent;
+            parent.onChildSizeChanged(current.mIndexInParent, delta);
+            if (!parent.mExpanded) {
+                return;
+            }
+            if (parent != mRoot) {
+                parent.mSize += delta;
+            }
+            current = parent;
+        }
+    }
+}
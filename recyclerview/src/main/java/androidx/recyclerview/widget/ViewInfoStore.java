@@ -27,22 +27,33 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.collection.LongSparseArray;
-import androidx.collection.SimpleArrayMap;
-import androidx.core.util.Pools;
+
+import java.util.Arrays;
 
 /**
  * This class abstracts all tracking for Views to run animations.
+ * <p>
+ * Records are kept in a dense array, addressed by an index stored in the ViewHolder, and are
+ * owned by the store and reused across layouts. Once the array has grown to the number of
+ * tracked children, recording a layout neither hashes nor allocates, and
+ * {@link #process(ProcessCallback)} is a single pass over the array.
  */
 class ViewInfoStore {
 
     private static final boolean DEBUG = false;
 
+    private static final int INITIAL_CAPACITY = 16;
+
     /**
-     * View data records for pre-layout
+     * View data records for pre-layout, the first {@link #mRecordCount} entries are in use.
+     * mHolders[i] is the ViewHolder of mRecords[i], and its mInfoRecordIndex is i.
      */
     @VisibleForTesting
-    final SimpleArrayMap<RecyclerView.ViewHolder, InfoRecord> mLayoutHolderMap =
-            new SimpleArrayMap<>();
+    RecyclerView.ViewHolder[] mHolders = new RecyclerView.ViewHolder[INITIAL_CAPACITY];
+    @VisibleForTesting
+    InfoRecord[] mRecords = new InfoRecord[INITIAL_CAPACITY];
+    @VisibleForTesting
+    int mRecordCount;
 
     @VisibleForTesting
     final LongSparseArray<RecyclerView.ViewHolder> mOldChangedHolders = new LongSparseArray<>();
@@ -51,27 +62,93 @@ class ViewInfoStore {
      * Clears the state and all existing tracking data
      */
     void clear() {
-        mLayoutHolderMap.clear();
+        for (int i = 0; i < mRecordCount; i++) {
+            mHolders[i].mInfoRecordIndex = RecyclerView.NO_POSITION;
+            mHolders[i] = null;
+            mRecords[i].clear();
+        }
+        mRecordCount = 0;
         mOldChangedHolders.clear();
     }
 
+    /**
+     * Grows the record array to hold the given number of ViewHolders, so that recording a layout
+     * of that many children doesn't grow it again.
+     */
+    void ensureCapacity(int count) {
+        if (count <= mRecords.length) {
+            return;
+        }
+        final int capacity = Math.max(count, mRecords.length * 2);
+        final RecyclerView.ViewHolder[] holders = new RecyclerView.ViewHolder[capacity];
+        final InfoRecord[] records = new InfoRecord[capacity];
+        System.arraycopy(mHolders, 0, holders, 0, mRecordCount);
+        System.arraycopy(mRecords, 0, records, 0, mRecords.length);
+        mHolders = holders;
+        mRecords = records;
+    }
+
+    @Nullable
+    private InfoRecord getRecord(RecyclerView.ViewHolder holder) {
+        final int index = indexOf(holder);
+        return index < 0 ? null : mRecords[index];
+    }
+
+    private int indexOf(RecyclerView.ViewHolder holder) {
+        final int index = holder.mInfoRecordIndex;
+        // a holder moved to another RecyclerView may still carry an index into another store
+        return index >= 0 && index < mRecordCount && mHolders[index] == holder ? index : -1;
+    }
+
+    private InfoRecord getOrAddRecord(RecyclerView.ViewHolder holder) {
+        final int index = indexOf(holder);
+        if (index >= 0) {
+            return mRecords[index];
+        }
+        ensureCapacity(mRecordCount + 1);
+        InfoRecord record = mRecords[mRecordCount];
+        if (record == null) {
+            record = new InfoRecord();
+            mRecords[mRecordCount] = record;
+        }
+        mHolders[mRecordCount] = holder;
+        holder.mInfoRecordIndex = mRecordCount;
+        mRecordCount++;
+        return record;
+    }
+
+    /**
+     * Stops tracking the ViewHolder at the given index, moving the last record into its place.
+     * The removed record is cleared and kept for reuse.
+     */
+    private void removeAt(int index) {
+        final int last = mRecordCount - 1;
+        final InfoRecord removed = mRecords[index];
+        mHolders[index].mInfoRecordIndex = RecyclerView.NO_POSITION;
+        if (index != last) {
+            mHolders[index] = mHolders[last];
+            mHolders[index].mInfoRecordIndex = index;
+            mRecords[index] = mRecords[last];
+            mRecords[last] = removed;
+        }
+        mHolders[last] = null;
+        removed.clear();
+        mRecordCount = last;
+    }
+
     /**
      * Adds the item information to the prelayout tracking
      * @param holder The ViewHolder whose information is being saved
      * @param info The information to save
      */
     void addToPreLayout(RecyclerView.ViewHolder holder, RecyclerView.ItemAnimator.ItemHolderInfo info) {
-        InfoRecord record = mLayoutHolderMap.get(holder);
-        if (record == null) {
-            record = InfoRecord.obtain();
-            mLayoutHolderMap.put(holder, record);
-        }
+        final InfoRecord record = getOrAddRecord(holder);
         record.preInfo = info;
         record.flags |= FLAG_PRE;
     }
 
     boolean isDisappearing(RecyclerView.ViewHolder holder) {
-        final InfoRecord record = mLayoutHolderMap.get(holder);
+        final InfoRecord record = getRecord(holder);
         return record != null && ((record.flags & FLAG_DISAPPEARED) != 0);
     }
 
@@ -98,12 +175,12 @@ class ViewInfoStore {
     }
 
     private RecyclerView.ItemAnimator.ItemHolderInfo popFromLayoutStep(RecyclerView.ViewHolder vh, int flag) {
-        int index = mLayoutHolderMap.indexOfKey(vh);
+        final int index = indexOf(vh);
         if (index < 0) {
             return null;
         }
-        final InfoRecord record = mLayoutHolderMap.valueAt(index);
-        if (record != null && (record.flags & flag) != 0) {
+        final InfoRecord record = mRecords[index];
+        if ((record.flags & flag) != 0) {
             record.flags &= ~flag;
             final RecyclerView.ItemAnimator.ItemHolderInfo info;
             if (flag == FLAG_PRE) {
@@ -115,8 +192,7 @@ class ViewInfoStore {
             }
             // if not pre-post flag is left, clear.
             if ((record.flags & (FLAG_PRE | FLAG_POST)) == 0) {
-                mLayoutHolderMap.removeAt(index);
-                InfoRecord.recycle(record);
+                removeAt(index);
             }
             return info;
         }
@@ -142,11 +218,7 @@ class ViewInfoStore {
      * @param info The information to save
      */
     void addToAppearedInPreLayoutHolders(RecyclerView.ViewHolder holder, RecyclerView.ItemAnimator.ItemHolderInfo info) {
-        InfoRecord record = mLayoutHolderMap.get(holder);
-        if (record == null) {
-            record = InfoRecord.obtain();
-            mLayoutHolderMap.put(holder, record);
-        }
+        final InfoRecord record = getOrAddRecord(holder);
         record.flags |= FLAG_APPEAR;
         record.preInfo = info;
     }
@@ -158,7 +230,7 @@ class ViewInfoStore {
      * @return True if the ViewHolder is present in preLayout, false otherwise
      */
     boolean isInPreLayout(RecyclerView.ViewHolder viewHolder) {
-        final InfoRecord record = mLayoutHolderMap.get(viewHolder);
+        final InfoRecord record = getRecord(viewHolder);
         return record != null && (record.flags & FLAG_PRE) != 0;
     }
 
@@ -179,11 +251,7 @@ class ViewInfoStore {
      * @param info The information to save
      */
     void addToPostLayout(RecyclerView.ViewHolder holder, RecyclerView.ItemAnimator.ItemHolderInfo info) {
-        InfoRecord record = mLayoutHolderMap.get(holder);
-        if (record == null) {
-            record = InfoRecord.obtain();
-            mLayoutHolderMap.put(holder, record);
-        }
+        final InfoRecord record = getOrAddRecord(holder);
         record.postInfo = info;
         record.flags |= FLAG_POST;
     }
@@ -195,11 +263,7 @@ class ViewInfoStore {
      * @param holder The ViewHolder which disappeared during a layout.
      */
     void addToDisappearedInLayout(RecyclerView.ViewHolder holder) {
-        InfoRecord record = mLayoutHolderMap.get(holder);
-        if (record == null) {
-            record = InfoRecord.obtain();
-            mLayoutHolderMap.put(holder, record);
-        }
+        final InfoRecord record = getOrAddRecord(holder);
         record.flags |= FLAG_DISAPPEARED;
     }
 
@@ -208,7 +272,7 @@ class ViewInfoStore {
      * @param holder The ViewHolder to be removed from the disappearing list.
      */
     void removeFromDisappearedInLayout(RecyclerView.ViewHolder holder) {
-        InfoRecord record = mLayoutHolderMap.get(holder);
+        final InfoRecord record = getRecord(holder);
         if (record == null) {
             return;
         }
@@ -216,39 +280,45 @@ class ViewInfoStore {
     }
 
     void process(ProcessCallback callback) {
-        for (int index = mLayoutHolderMap.size() - 1; index >= 0; index--) {
-            final RecyclerView.ViewHolder viewHolder = mLayoutHolderMap.keyAt(index);
-            final InfoRecord record = mLayoutHolderMap.removeAt(index);
-            if ((record.flags & FLAG_APPEAR_AND_DISAPPEAR) == FLAG_APPEAR_AND_DISAPPEAR) {
+        // Records are taken from the end, before calling back, as the callback may recycle
+        // ViewHolders and so remove other records, or add new ones that reuse this record.
+        while (mRecordCount > 0) {
+            final int index = mRecordCount - 1;
+            final RecyclerView.ViewHolder viewHolder = mHolders[index];
+            final InfoRecord record = mRecords[index];
+            final int flags = record.flags;
+            final RecyclerView.ItemAnimator.ItemHolderInfo preInfo = record.preInfo;
+            final RecyclerView.ItemAnimator.ItemHolderInfo postInfo = record.postInfo;
+            removeAt(index);
+            if ((flags & FLAG_APPEAR_AND_DISAPPEAR) == FLAG_APPEAR_AND_DISAPPEAR) {
                 // Appeared then disappeared. Not useful for animations.
                 callback.unused(viewHolder);
-            } else if ((record.flags & FLAG_DISAPPEARED) != 0) {
+            } else if ((flags & FLAG_DISAPPEARED) != 0) {
                 // Set as "disappeared" by the LayoutManager (addDisappearingView)
-                if (record.preInfo == null) {
+                if (preInfo == null) {
                     // similar to appear disappear but happened between different layout passes.
                     // this can happen when the layout manager is using auto-measure
                     callback.unused(viewHolder);
                 } else {
-                    callback.processDisappeared(viewHolder, record.preInfo, record.postInfo);
+                    callback.processDisappeared(viewHolder, preInfo, postInfo);
                 }
-            } else if ((record.flags & FLAG_APPEAR_PRE_AND_POST) == FLAG_APPEAR_PRE_AND_POST) {
+            } else if ((flags & FLAG_APPEAR_PRE_AND_POST) == FLAG_APPEAR_PRE_AND_POST) {
                 // Appeared in the layout but not in the adapter (e.g. entered the viewport)
-                callback.processAppeared(viewHolder, record.preInfo, record.postInfo);
-            } else if ((record.flags & FLAG_PRE_AND_POST) == FLAG_PRE_AND_POST) {
+                callback.processAppeared(viewHolder, preInfo, postInfo);
+            } else if ((flags & FLAG_PRE_AND_POST) == FLAG_PRE_AND_POST) {
                 // Persistent in both passes. Animate persistence
-                callback.processPersistent(viewHolder, record.preInfo, record.postInfo);
-            } else if ((record.flags & FLAG_PRE) != 0) {
+                callback.processPersistent(viewHolder, preInfo, postInfo);
+            } else if ((flags & FLAG_PRE) != 0) {
                 // Was in pre-layout, never been added to post layout
-                callback.processDisappeared(viewHolder, record.preInfo, null);
-            } else if ((record.flags & FLAG_POST) != 0) {
+                callback.processDisappeared(viewHolder, preInfo, null);
+            } else if ((flags & FLAG_POST) != 0) {
                 // Was not in pre-layout, been added to post layout
-                callback.processAppeared(viewHolder, record.preInfo, record.postInfo);
-            } else if ((record.flags & FLAG_APPEAR) != 0) {
+                callback.processAppeared(viewHolder, preInfo, postInfo);
+            } else if ((flags & FLAG_APPEAR) != 0) {
                 // Scrap view. RecyclerView will handle removing/recycling this.
             } else if (DEBUG) {
                 throw new IllegalStateException("record without any reasonable flag combination:/");
             }
-            InfoRecord.recycle(record);
         }
     }
 
@@ -263,14 +333,21 @@ class ViewInfoStore {
                 break;
             }
         }
-        final InfoRecord info = mLayoutHolderMap.remove(holder);
-        if (info != null) {
-            InfoRecord.recycle(info);
+        final int index = indexOf(holder);
+        if (index >= 0) {
+            removeAt(index);
         }
     }
 
     void onDetach() {
-        InfoRecord.drainCache();
+        // release the records kept for reuse
+        clear();
+        if (mRecords.length > INITIAL_CAPACITY) {
+            mHolders = new RecyclerView.ViewHolder[INITIAL_CAPACITY];
+            mRecords = new InfoRecord[INITIAL_CAPACITY];
+        } else {
+            Arrays.fill(mRecords, null);
+        }
     }
 
     public void onViewDetached(RecyclerView.ViewHolder viewHolder) {
@@ -304,26 +381,14 @@ class ViewInfoStore {
         RecyclerView.ItemAnimator.ItemHolderInfo preInfo;
         @Nullable
         RecyclerView.ItemAnimator.ItemHolderInfo postInfo;
-        static Pools.Pool<InfoRecord> sPool = new Pools.SimplePool<>(20);
-
-        private InfoRecord() {
-        }
-
-        static InfoRecord obtain() {
-            InfoRecord record = sPool.acquire();
-            return record == null ? new InfoRecord() : record;
-        }
 
-        static void recycle(InfoRecord record) {
-            record.flags = 0;
-            record.preInfo = null;
-            record.postInfo = null;
-            sPool.release(record);
+        InfoRecord() {
         }
 
-        static void drainCache() {
-            //noinspection StatementWithEmptyBody
-            while (sPool.acquire() != null);
+        void clear() {
+            flags = 0;
+            preInfo = null;
+            postInfo = null;
         }
     }
 }